@@ -4,7 +4,8 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Reducer.Context;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import sizzle.io.EmitKey;
 import sizzle.io.EmitValue;
@@ -18,9 +19,17 @@ import sizzle.io.EmitValue;
 public abstract class Aggregator {
 	private long arg;
 	@SuppressWarnings("rawtypes")
-	private Context context;
+	private TaskInputOutputContext context;
 	private EmitKey key;
 	private boolean combining;
+	private boolean sorted;
+	private long buffer;
+	private boolean binary;
+	private String format;
+	@SuppressWarnings("rawtypes")
+	private MultipleOutputs outputs;
+	private String path;
+	private TableMetrics metrics;
 
 	/**
 	 * Construct an Aggregator.
@@ -76,48 +85,122 @@ public abstract class Aggregator {
 		this.aggregate(data, null);
 	}
 
-	@SuppressWarnings("unchecked")
+	// given a datum with an integral weight, which is passed on as metadata
+	// unless the aggregator takes it as a number
+	public void aggregateWeighted(final String data, final long weight) throws IOException, InterruptedException, FinishedException {
+		this.aggregate(data, Long.toString(weight));
+	}
+
+	public void aggregateWeighted(final long data, final long weight) throws IOException, InterruptedException, FinishedException {
+		this.aggregate(data, Long.toString(weight));
+	}
+
+	public void aggregateWeighted(final double data, final long weight) throws IOException, InterruptedException, FinishedException {
+		this.aggregate(data, Long.toString(weight));
+	}
+
+	// told how many values will follow in sorted order, by a sortable
+	// aggregator in the mapper
+	public void aggregateCount(final long count) throws IOException, InterruptedException, FinishedException {
+		throw new UnsupportedOperationException(this.getClass().getName() + " cannot take its values in sorted order");
+	}
+
+	// given the serialized state of the same aggregator upstream, to merge
+	// with its own
+	public void aggregateSketch(final byte[] sketch) throws IOException, InterruptedException, FinishedException {
+		throw new UnsupportedOperationException(this.getClass().getName() + " cannot merge sketches");
+	}
+
 	protected void collect(final String data, final String metadata) throws IOException, InterruptedException {
-		if (this.combining)
-			this.getContext().write(this.getKey(), new EmitValue(data, metadata));
-		else if (metadata != null)
-			this.getContext().write(new Text(this.getKey() + " = " + data + " weight " + metadata), NullWritable.get());
+		if (this.combining || this.binary)
+			this.write(this.getKey(), new EmitValue(data, metadata));
 		else
-			this.getContext().write(new Text(this.getKey() + " = " + data), NullWritable.get());
+			this.write(this.format(data, metadata), NullWritable.get());
 	}
 
 	protected void collect(final String data) throws IOException, InterruptedException {
 		this.collect(data, null);
 	}
 
-	@SuppressWarnings("unchecked")
 	protected void collect(final long data, final String metadata) throws IOException, InterruptedException {
-		if (this.combining)
-			this.getContext().write(this.getKey(), new EmitValue(data, metadata));
-		else if (metadata != null)
-			this.getContext().write(new Text(this.getKey() + " = " + data + " weight " + metadata), NullWritable.get());
+		if (this.combining || this.binary)
+			this.write(this.getKey(), new EmitValue(data, metadata));
 		else
-			this.getContext().write(new Text(this.getKey() + " = " + data), NullWritable.get());
+			this.write(this.format(Long.toString(data), metadata), NullWritable.get());
 	}
 
 	protected void collect(final long data) throws IOException, InterruptedException {
 		this.collect(data, null);
 	}
 
-	@SuppressWarnings("unchecked")
+	protected void collect(final long data, final long weight) throws IOException, InterruptedException {
+		if (this.combining || this.binary)
+			this.write(this.getKey(), new EmitValue(data, weight));
+		else
+			this.write(this.format(Long.toString(data), Long.toString(weight)), NullWritable.get());
+	}
+
 	protected void collect(final double data, final String metadata) throws IOException, InterruptedException {
-		if (this.combining)
-			this.getContext().write(this.getKey(), new EmitValue(data, metadata));
-		else if (metadata != null)
-			this.getContext().write(new Text(this.getKey() + " = " + data + " weight " + metadata), NullWritable.get());
+		if (this.combining || this.binary)
+			this.write(this.getKey(), new EmitValue(data, metadata));
 		else
-			this.getContext().write(new Text(this.getKey() + " = " + data), NullWritable.get());
+			this.write(this.format(Double.toString(data), metadata), NullWritable.get());
 	}
 
 	protected void collect(final double data) throws IOException, InterruptedException {
 		this.collect(data, null);
 	}
 
+	protected void collect(final double data, final long weight) throws IOException, InterruptedException {
+		if (this.combining || this.binary)
+			this.write(this.getKey(), new EmitValue(data, weight));
+		else
+			this.write(this.format(Double.toString(data), Long.toString(weight)), NullWritable.get());
+	}
+
+	/**
+	 * Render a final result as a line of text.
+	 * 
+	 * @param data
+	 *            A {@link String} containing the result
+	 * 
+	 * @param metadata
+	 *            A {@link String} containing the weight of the result, or null
+	 * 
+	 * @return A {@link Text} containing the line
+	 */
+	protected Text format(final String data, final String metadata) {
+		if (this.format != null)
+			return new Text(String.format(this.format, this.getKey().getName(), this.getKey().getIndex(), data, metadata));
+		else if (metadata != null)
+			return new Text(this.getKey() + " = " + data + " weight " + metadata);
+		else
+			return new Text(this.getKey() + " = " + data);
+	}
+
+	/**
+	 * Write a key and value to the table's output.
+	 * 
+	 * @param key
+	 *            The key to write
+	 * 
+	 * @param value
+	 *            The value to write
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@SuppressWarnings("unchecked")
+	protected void write(final Object key, final Object value) throws IOException, InterruptedException {
+		if (this.metrics != null)
+			this.metrics.written();
+
+		if (this.outputs != null)
+			this.outputs.write(key, value, this.path);
+		else
+			this.context.write(key, value);
+	}
+
 	public void finish() throws IOException, InterruptedException {
 		// do nothing by default
 	}
@@ -126,10 +209,15 @@ public abstract class Aggregator {
 		return this.arg;
 	}
 
-	public void setContext(@SuppressWarnings("rawtypes") final Context context) {
+	public void setContext(@SuppressWarnings("rawtypes") final TaskInputOutputContext context) {
 		this.context = context;
 	}
 
+	// when set, the results written are counted
+	public void setMetrics(final TableMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public boolean isCombining() {
 		return this.combining;
 	}
@@ -138,6 +226,64 @@ public abstract class Aggregator {
 		this.combining = combining;
 	}
 
+	public boolean isSorted() {
+		return this.sorted;
+	}
+
+	// when set, the job sorts the values of each key for a sortable
+	// aggregator, which writes them with their sort values when combining
+	public void setSorted(final boolean sorted) {
+		this.sorted = sorted;
+	}
+
+	// whether this can aggregate its values in a single pass when they
+	// arrive in sorted order
+	public boolean isSortable() {
+		return false;
+	}
+
+	// the estimated size, in bytes, of the memory this holds however few
+	// values it is given, such as a summary allocated up front
+	public long getFootprint() {
+		return 0;
+	}
+
+	public long getBuffer() {
+		return this.buffer;
+	}
+
+	// the estimated size, in bytes, of the state kept in memory for a key
+	// before it is spilled to disk, or 0 to keep it all in memory
+	public void setBuffer(final long buffer) {
+		this.buffer = buffer;
+	}
+
+	public String getFormat() {
+		return this.format;
+	}
+
+	// a java.util.Formatter pattern, given the table name, index, datum and
+	// weight of each final result
+	public void setFormat(final String format) {
+		this.format = format;
+	}
+
+	// when set, final results are written to the given path of the outputs
+	// instead of to the context
+	public void setOutputs(@SuppressWarnings("rawtypes") final MultipleOutputs outputs, final String path) {
+		this.outputs = outputs;
+		this.path = path;
+	}
+
+	public boolean isBinary() {
+		return this.binary;
+	}
+
+	// when binary, final results are written as EmitKey and EmitValue pairs
+	public void setBinary(final boolean binary) {
+		this.binary = binary;
+	}
+
 	// these are checked at runtime by the combiner
 	public boolean isAssociative() {
 		return false;
@@ -148,7 +294,7 @@ public abstract class Aggregator {
 	}
 
 	@SuppressWarnings("rawtypes")
-	public Context getContext() {
+	public TaskInputOutputContext getContext() {
 		return this.context;
 	}
 
@@ -35,4 +35,10 @@ public @interface AggregatorSpec {
 	 * "none", meaning that it accepts no weights.
 	 */
 	String weightType() default "none";
+
+	/**
+	 * Whether each value emitted to this aggregator is written out as it is,
+	 * so that tables using it never need a reduce. Defaults to false.
+	 */
+	boolean passThrough() default false;
 }
@@ -0,0 +1,167 @@
+package sizzle.aggregators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bloom filter of strings that is cleared in place, so that one may be used
+ * for key after key without allocating anything.
+ *
+ * Like {@link org.apache.hadoop.util.bloom.DynamicBloomFilter}, it is a row of
+ * filters each sized for a number of strings, and a new one is started once
+ * the last is full, so that its false positive rate holds however many
+ * strings it is given. The rows are kept when it is cleared, and only the
+ * words of them that were set are zeroed, so that clearing a filter that saw
+ * a few strings costs only as much as they did. Each string is hashed once,
+ * and its bits picked from the two halves of the hash, after A. Kirsch and M.
+ * Mitzenmacher, Less hashing, same performance: building a better bloom
+ * filter, Proc 14th European Symp. on Algorithms, 2006.
+ *
+ * @author anthonyu
+ *
+ */
+class BloomFilter {
+	private final int bits;
+	private final int hashes;
+	private final int strings;
+
+	private final List<Row> rows;
+	// the number of rows in use, and of strings in the last of them
+	private int used;
+	private int added;
+
+	/**
+	 * Construct a BloomFilter.
+	 *
+	 * @param bits
+	 *            An int representing the number of bits in each row
+	 *
+	 * @param hashes
+	 *            An int representing the number of bits set for each string
+	 *
+	 * @param strings
+	 *            An int representing the number of strings each row is sized
+	 *            for
+	 */
+	public BloomFilter(final int bits, final int hashes, final int strings) {
+		this.bits = bits;
+		this.hashes = hashes;
+		this.strings = strings;
+
+		this.rows = new ArrayList<Row>();
+		this.rows.add(new Row(bits));
+		this.used = 1;
+	}
+
+	/**
+	 * Add a string to the filter, unless it may have been added already.
+	 *
+	 * @param s
+	 *            A {@link CharSequence} containing the string
+	 *
+	 * @return true iff the string was certainly not in the filter before
+	 */
+	public boolean add(final CharSequence s) {
+		final long hash = MurmurHash.hash64(s);
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+
+		for (int r = 0; r < this.used; r++)
+			if (this.rows.get(r).contains(h1, h2))
+				return false;
+
+		if (this.added == this.strings) {
+			// start the next row, reusing it if we have it
+			if (this.used == this.rows.size())
+				this.rows.add(new Row(this.bits));
+			this.used++;
+			this.added = 0;
+		}
+
+		this.rows.get(this.used - 1).add(h1, h2);
+		this.added++;
+
+		return true;
+	}
+
+	/**
+	 * Get the size of the rows the filter has allocated.
+	 *
+	 * @return A long representing the number of bytes in the rows
+	 */
+	public long size() {
+		long size = 0;
+
+		for (final Row row : this.rows)
+			size += row.words.length * 8L + row.dirty.length * 4L;
+
+		return size;
+	}
+
+	/**
+	 * Empty the filter, so that it may be reused.
+	 */
+	public void clear() {
+		for (int r = 0; r < this.used; r++)
+			this.rows.get(r).clear();
+
+		this.used = 1;
+		this.added = 0;
+	}
+
+	// a plain bloom filter, remembering the words it has set
+	private class Row {
+		private final long[] words;
+		private final int[] dirty;
+		private int touched;
+
+		public Row(final int bits) {
+			this.words = new long[(bits + 63) / 64];
+			// past a sixteenth of the words, clear them all
+			this.dirty = new int[this.words.length / 16];
+		}
+
+		boolean contains(final int h1, final int h2) {
+			for (int i = 0; i < BloomFilter.this.hashes; i++) {
+				final int bit = this.bit(h1, h2, i);
+
+				if ((this.words[bit >>> 6] & 1L << bit) == 0)
+					return false;
+			}
+
+			return true;
+		}
+
+		void add(final int h1, final int h2) {
+			for (int i = 0; i < BloomFilter.this.hashes; i++) {
+				final int bit = this.bit(h1, h2, i);
+				final int word = bit >>> 6;
+
+				if (this.words[word] == 0 && this.touched <= this.dirty.length) {
+					if (this.touched < this.dirty.length)
+						this.dirty[this.touched] = word;
+					this.touched++;
+				}
+
+				this.words[word] |= 1L << bit;
+			}
+		}
+
+		void clear() {
+			if (this.touched > this.dirty.length)
+				Arrays.fill(this.words, 0);
+			else
+				for (int i = 0; i < this.touched; i++)
+					this.words[this.dirty[i]] = 0;
+
+			this.touched = 0;
+		}
+
+		private int bit(final int h1, final int h2, final int i) {
+			final int combined = h1 + i * h2;
+
+			return (combined & Integer.MAX_VALUE) % BloomFilter.this.bits;
+		}
+	}
+}
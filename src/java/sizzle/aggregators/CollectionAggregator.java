@@ -8,7 +8,7 @@ import java.io.IOException;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "collection")
+@AggregatorSpec(name = "collection", passThrough = true)
 public class CollectionAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
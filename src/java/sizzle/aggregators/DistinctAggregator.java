@@ -2,18 +2,17 @@ package sizzle.aggregators;
 
 import java.io.IOException;
 
-
-import org.apache.hadoop.util.bloom.DynamicBloomFilter;
-import org.apache.hadoop.util.bloom.Filter;
-import org.apache.hadoop.util.bloom.Key;
-import org.apache.hadoop.util.hash.Hash;
-
 import sizzle.io.EmitKey;
 
 /**
  * A Sizzle aggregator to estimate the set of the unique values in a dataset.
  * Roughly equivalent to a distinct(*).
  * 
+ * The values already seen are remembered in a {@link BloomFilter}, which is
+ * cleared and reused from key to key by the combiners and reducers. The mapper
+ * keeps a filter for each key it holds, so it counts the filter against its
+ * combining buffer.
+ * 
  * @author anthonyu
  * 
  */
@@ -25,7 +24,7 @@ public class DistinctAggregator extends Aggregator {
 	private final int vectorSize;
 	private final float errorRate;
 
-	private Filter filter;
+	private final BloomFilter filter;
 
 	/**
 	 * Construct a DistinctAggregator.
@@ -47,6 +46,8 @@ public class DistinctAggregator extends Aggregator {
 		// Our desired error rate is by default 0.005, i.e. 0.5%
 		this.errorRate = 0.005f;
 		this.vectorSize = (int) Math.ceil(-DistinctAggregator.HASH_COUNT * arg / Math.log(1.0 - Math.pow(this.errorRate, 1.0 / DistinctAggregator.HASH_COUNT)));
+
+		this.filter = new BloomFilter(this.vectorSize, DistinctAggregator.HASH_COUNT, (int) arg);
 	}
 
 	/** {@inheritDoc} */
@@ -54,26 +55,23 @@ public class DistinctAggregator extends Aggregator {
 	public void start(EmitKey key) {
 		super.start(key);
 
-		// TODO: add a clear function to the bloom filter in Hadoop and use it
-		// here instead of instantiating a new one for every key
-		this.filter = new DynamicBloomFilter(this.vectorSize, DistinctAggregator.HASH_COUNT, Hash.MURMUR_HASH, (int) this.getArg());
+		// forget the last key's values
+		this.filter.clear();
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(String data, String metadata) throws IOException, InterruptedException {
-		// instantiate a bloom filter input key initialized by the data
-		Key key = new Key(data.getBytes());
-
-		// if the key is already in the filter, forget it
-		if (this.filter.membershipTest(key))
-			return;
-
-		// add the key to the bloom filter
-		this.filter.add(key);
+		// add the data to the bloom filter, and if it wasn't already there
+		if (this.filter.add(data))
+			// collect it
+			this.collect(data);
+	}
 
-		// and collect it
-		this.collect(data);
+	/** {@inheritDoc} */
+	@Override
+	public long getFootprint() {
+		return this.filter.size();
 	}
 
 	/** {@inheritDoc} */
@@ -87,8 +85,4 @@ public class DistinctAggregator extends Aggregator {
 	public boolean isCommutative() {
 		return true;
 	}
-
-	protected Filter getFilter() {
-		return this.filter;
-	}
 }
\ No newline at end of file
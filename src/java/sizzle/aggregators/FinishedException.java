@@ -1,5 +1,27 @@
 package sizzle.aggregators;
 
+/**
+ * Thrown by an aggregator that has seen enough of the values for a key, so
+ * that the rest can be dropped.
+ * 
+ * It is thrown for every finished key, so it carries no stack trace, and
+ * {@link #FINISHED} can be thrown instead of a new one.
+ * 
+ * @author anthonyu
+ * 
+ */
 public class FinishedException extends Exception {
 	private static final long serialVersionUID = -8053063262150341018L;
+
+	/**
+	 * A FinishedException that can be thrown over and over.
+	 */
+	public static final FinishedException FINISHED = new FinishedException();
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		// where it was thrown from is of no interest
+		return this;
+	}
 }
@@ -1,11 +1,6 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map.Entry;
-
-import sizzle.io.EmitKey;
 
 
 /**
@@ -16,8 +11,6 @@ import sizzle.io.EmitKey;
  */
 @AggregatorSpec(name = "histogram", type = "float", formalParameters = { "int", "int", "int" })
 public class FloatHistogramAggregator extends HistogramAggregator {
-	private SortedCountingSet<Double> list;
-
 	/**
 	 * Construct a FloatHistogramAggregator.
 	 * 
@@ -36,14 +29,6 @@ public class FloatHistogramAggregator extends HistogramAggregator {
 		super(min, max, buckets);
 	}
 
-	/** {@inheritDoc} */
-	@Override
-	public void start(EmitKey key) {
-		super.start(key);
-
-		this.list = new SortedCountingSet<Double>();
-	}
-
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(String data, String metadata) throws NumberFormatException, IOException, InterruptedException {
@@ -59,18 +44,6 @@ public class FloatHistogramAggregator extends HistogramAggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(double data, String metadata) throws IOException {
-		this.list.add(Double.valueOf(data), super.count(metadata));
-	}
-
-	/** {@inheritDoc} */
-	@Override
-	public List<Pair<Number, Long>> getTuples() {
-		List<Pair<Number, Long>> list = new ArrayList<Pair<Number, Long>>();
-
-		// convert the map entries into a list of Pair
-		for (final Entry<Double, Long> e : this.list.getEntries())
-			list.add(new Pair<Number, Long>(e.getKey(), e.getValue()));
-
-		return list;
+		this.add(data, super.count(metadata));
 	}
 }
@@ -46,12 +46,26 @@ public class FloatMeanAggregator extends MeanAggregator {
 		super.count(metadata);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateWeighted(long data, long weight) {
+		this.aggregateWeighted(Long.valueOf(data).doubleValue(), weight);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateWeighted(double data, long weight) {
+		this.sum += data;
+
+		super.count(weight);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void finish() throws IOException, InterruptedException {
 		// if we are in the combiner, output the sum and the count
 		if (this.isCombining())
-			this.collect(this.sum, Long.toString(this.getCount()));
+			this.collect(this.sum, this.getCount());
 		// otherwise, output the final answer
 		else
 			this.collect(this.sum / this.getCount());
@@ -1,9 +1,6 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map.Entry;
 
 import sizzle.io.EmitKey;
 
@@ -33,7 +30,10 @@ public class FloatQuantileAggregator extends QuantileAggregator {
 	public void start(EmitKey key) {
 		super.start(key);
 
-		this.list = new SortedCountingSet<Double>();
+		// the last key's runs are deleted
+		if (this.list != null)
+			this.list.close();
+		this.list = new SortedCountingSet<Double>(this.getBuffer());
 	}
 
 	/** {@inheritDoc} */
@@ -51,18 +51,43 @@ public class FloatQuantileAggregator extends QuantileAggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(double data, String metadata) throws IOException {
-		this.list.add(Double.valueOf(data), super.count(metadata));
+		this.add(data, super.count(metadata));
 	}
 
 	/** {@inheritDoc} */
 	@Override
-	public List<Pair<String, Long>> getTuples() {
-		List<Pair<String, Long>> list = new ArrayList<Pair<String, Long>>();
+	public void aggregateWeighted(long data, long weight) throws IOException {
+		this.aggregateWeighted(Long.valueOf(data).doubleValue(), weight);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateWeighted(double data, long weight) throws IOException {
+		this.add(data, super.count(weight));
+	}
 
-		// convert the map entries into a list of Pair
-		for (Entry<Double, Long> e : this.list.getEntries())
-			list.add(new Pair<String, Long>(e.getKey().toString(), e.getValue()));
+	private void add(double data, long count) {
+		Double value = Double.valueOf(data);
 
-		return list;
+		if (!this.streamed(value, count))
+			this.list.add(value, count);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected byte[] sort(Number data) {
+		return EmitKey.sortable(QuantileAggregator.VALUE, data.doubleValue());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected String valueOf(double data) {
+		return Double.toString(data);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Iterable<Pair<Number, Long>> getTuples() {
+		return QuantileAggregator.tuples(this.list.getEntries());
 	}
 }
@@ -2,14 +2,29 @@ package sizzle.aggregators;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
 
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 
 /**
  * A Sizzle aggregator to calculate a histogram for the values in a dataset.
  * 
+ * The values are counted into their buckets as they arrive, so that the
+ * memory each key takes is the same however many distinct values it has, and
+ * combiners pass on the counts of the buckets instead of the values. Values
+ * outside of the range of the histogram are not counted.
+ * 
+ * The buckets divide the range evenly, unless
+ * <code>sizzle.runtime.histogram.scale</code> is set to log, in which case
+ * each is wider than the last by a constant factor, so that the few slow
+ * values of a latency are counted without losing the detail of the many fast
+ * ones.
+ * 
  * @author anthonyu
  * 
  */
@@ -18,6 +33,12 @@ abstract class HistogramAggregator extends Aggregator {
 	private final long max;
 	private final int buckets;
 
+	// the counts of the buckets, reused from key to key
+	private final long[] counts;
+	// the width of each bucket, or the log of the ratio between them
+	private double step;
+	private boolean log;
+
 	/**
 	 * Construct a HistogramAggregator.
 	 * 
@@ -36,6 +57,8 @@ abstract class HistogramAggregator extends Aggregator {
 		this.min = min;
 		this.max = max;
 		this.buckets = (int) buckets;
+
+		this.counts = new long[this.buckets];
 	}
 
 	public long count(String metadata) {
@@ -47,46 +70,89 @@ abstract class HistogramAggregator extends Aggregator {
 			return Long.parseLong(metadata);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public long getFootprint() {
+		return 8L * this.buckets;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void start(EmitKey key) {
 		super.start(key);
+
+		Arrays.fill(this.counts, 0);
+
+		this.log = false;
+		if (this.getContext() != null)
+			this.log = this.getContext().getConfiguration().get("sizzle.runtime.histogram.scale", "linear").equals("log");
+
+		// the buckets of a log scale start at min - 1 + r^i for a ratio r
+		// that puts the end of the last one at max
+		if (this.log)
+			this.step = Math.log(this.max - this.min + 1) / this.buckets;
+		else
+			this.step = (this.max - this.min) / (double) this.buckets;
+	}
+
+	/**
+	 * Count a value into its bucket.
+	 * 
+	 * @param data
+	 *            A double containing the value
+	 * 
+	 * @param count
+	 *            A long representing the number of times it was emitted
+	 */
+	protected void add(double data, long count) {
+		if (data < this.min || data > this.max)
+			return;
+
+		int bucket;
+		if (this.log)
+			bucket = (int) (Math.log(data - this.min + 1) / this.step);
+		else
+			bucket = (int) ((data - this.min) / this.step);
+
+		// the maximum goes in the last bucket
+		this.counts[Math.min(bucket, this.buckets - 1)] += count;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public abstract void aggregate(String data, String metadata) throws NumberFormatException, IOException, InterruptedException;
 
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateSketch(byte[] sketch) throws IOException {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(sketch, sketch.length);
+
+		int buckets = WritableUtils.readVInt(in);
+		if (buckets != this.buckets)
+			throw new IOException("cannot add a histogram of " + buckets + " buckets to one of " + this.buckets);
+
+		for (int i = 0; i < buckets; i++)
+			this.counts[i] += WritableUtils.readVLong(in);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void finish() throws IOException, InterruptedException {
 		if (this.isCombining()) {
-			// if we're in the combiner, just output the compressed data
-			for (Pair<Number, Long> p : this.getTuples())
-				this.collect(p.getFirst().toString(), p.getSecond().toString());
-		} else {
-			// otherwise, set up the histogram
-			int[] buckets = new int[this.buckets];
-			// calculate the step or the space between the buckets
-			double step = (this.max - this.min) / (double) this.buckets;
+			// if we're in the combiner, just output the counts of the buckets
+			DataOutputBuffer out = new DataOutputBuffer();
 
-			// for each of the compressed data points, increment the bucket it
-			// belongs to by its cardinality
-			for (Pair<Number, Long> p : this.getTuples())
-				buckets[(int) ((p.getFirst().longValue() - this.min) / step)] += p.getSecond();
+			WritableUtils.writeVInt(out, this.buckets);
+			for (long count : this.counts)
+				WritableUtils.writeVLong(out, count);
 
-			this.collect(Arrays.toString(buckets));
+			this.write(this.getKey(), EmitValue.sketch(Arrays.copyOf(out.getData(), out.getLength())));
+		} else {
+			this.collect(Arrays.toString(this.counts));
 		}
 	}
 
-	/**
-	 * Return the data points from the dataset in pairs.
-	 * 
-	 * @return A {@link List} of {@link Pair}&lt{@link Number}, {@link Long}&gt;
-	 *         containing the data points from the dataset
-	 */
-	public abstract List<Pair<Number, Long>> getTuples();
-
 	/** {@inheritDoc} */
 	@Override
 	public boolean isAssociative() {
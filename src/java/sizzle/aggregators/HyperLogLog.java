@@ -0,0 +1,190 @@
+package sizzle.aggregators;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A bounded summary of the number of distinct strings in a stream, after P.
+ * Flajolet, E. Fusy, O. Gandouet and F. Meunier, HyperLogLog: the analysis of
+ * a near-optimal cardinality estimation algorithm, Proc. Conf. on Analysis of
+ * Algorithms, 2007.
+ *
+ * Each string is hashed to 64 bits, the first <i>p</i> of which pick one of
+ * 2<sup><i>p</i></sup> registers, which keeps the most leading zeros seen in
+ * the rest. The count is estimated from the harmonic mean of the registers,
+ * or by linear counting while many are still empty, with a standard error of
+ * 1.04 over the square root of the number of registers.
+ *
+ * Two summaries are merged by keeping the larger of each pair of registers,
+ * which gives the summary of the union of their strings. A summary is written
+ * as the registers that are set, while they are few, so that small sets cost
+ * little to pass on.
+ *
+ * @author anthonyu
+ *
+ */
+class HyperLogLog {
+	private final int p;
+	private final byte[] registers;
+
+	/**
+	 * Construct a HyperLogLog.
+	 *
+	 * @param p
+	 *            An int representing the number of bits of each hash that
+	 *            pick its register, between 4 and 16
+	 */
+	public HyperLogLog(final int p) {
+		this.p = p;
+		this.registers = new byte[1 << p];
+	}
+
+	/**
+	 * Add a string to the summary.
+	 *
+	 * @param s
+	 *            A {@link CharSequence} containing the string
+	 */
+	public void add(final CharSequence s) {
+		final long hash = MurmurHash.hash64(s);
+
+		final int index = (int) (hash >>> (64 - this.p));
+		// the rank of the first 1 in the rest, with a stop past the end
+		final byte rank = (byte) (Long.numberOfLeadingZeros(hash << this.p | 1L << this.p - 1) + 1);
+
+		if (rank > this.registers[index])
+			this.registers[index] = rank;
+	}
+
+	/**
+	 * Merge a serialized summary into this one.
+	 *
+	 * @param bytes
+	 *            An array of byte containing a summary, as written by
+	 *            {@link #toBytes()}
+	 *
+	 * @throws IOException
+	 */
+	public void merge(final byte[] bytes) throws IOException {
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+
+		final int p = WritableUtils.readVInt(in);
+		if (p != this.p)
+			throw new IOException("cannot merge a summary of " + (1 << p) + " registers into one of " + this.registers.length);
+
+		final int set = WritableUtils.readVInt(in);
+		if (set < 0) {
+			// dense
+			for (int i = 0; i < this.registers.length; i++)
+				this.max(i, in.readByte());
+		} else {
+			// sparse, as the gaps between the registers set
+			int index = -1;
+			for (int i = 0; i < set; i++) {
+				index += WritableUtils.readVInt(in) + 1;
+				this.max(index, in.readByte());
+			}
+		}
+	}
+
+	/**
+	 * Serialize this summary.
+	 *
+	 * @return An array of byte containing this summary
+	 *
+	 * @throws IOException
+	 */
+	public byte[] toBytes() throws IOException {
+		final DataOutputBuffer out = new DataOutputBuffer();
+
+		WritableUtils.writeVInt(out, this.p);
+
+		int set = 0;
+		for (final byte register : this.registers)
+			if (register != 0)
+				set++;
+
+		// a set register costs a byte and a gap, which is at least one more
+		if (set * 2 < this.registers.length) {
+			WritableUtils.writeVInt(out, set);
+
+			int last = -1;
+			for (int i = 0; i < this.registers.length; i++)
+				if (this.registers[i] != 0) {
+					WritableUtils.writeVInt(out, i - last - 1);
+					out.writeByte(this.registers[i]);
+					last = i;
+				}
+		} else {
+			WritableUtils.writeVInt(out, -1);
+			out.write(this.registers);
+		}
+
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	/**
+	 * Estimate the number of distinct strings summarized.
+	 *
+	 * @return A long representing the estimated number of distinct strings
+	 */
+	public long estimate() {
+		final int m = this.registers.length;
+
+		double sum = 0;
+		int zeros = 0;
+		for (final byte register : this.registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0)
+				zeros++;
+		}
+
+		final double estimate = HyperLogLog.alpha(m) * m * m / sum;
+
+		// linear counting is better while many registers are empty
+		if (estimate <= 2.5 * m && zeros > 0)
+			return Math.round(m * Math.log(m / (double) zeros));
+
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Get the size of the registers.
+	 *
+	 * @return An int representing the number of bytes in the registers
+	 */
+	public int size() {
+		return this.registers.length;
+	}
+
+	/**
+	 * Empty the summary, so that it may be reused.
+	 */
+	public void clear() {
+		Arrays.fill(this.registers, (byte) 0);
+	}
+
+	private void max(final int index, final byte rank) {
+		if (rank > this.registers[index])
+			this.registers[index] = rank;
+	}
+
+	// the bias correction of the harmonic mean of m registers
+	private static double alpha(final int m) {
+		switch (m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+}
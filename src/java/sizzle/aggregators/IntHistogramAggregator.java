@@ -1,11 +1,6 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map.Entry;
-
-import sizzle.io.EmitKey;
 
 
 /**
@@ -16,8 +11,6 @@ import sizzle.io.EmitKey;
  */
 @AggregatorSpec(name = "histogram", type = "int", formalParameters = { "int", "int", "int" })
 public class IntHistogramAggregator extends HistogramAggregator {
-	private SortedCountingSet<Long> list;
-
 	/**
 	 * Construct an IntHistogramAggregator.
 	 * 
@@ -36,14 +29,6 @@ public class IntHistogramAggregator extends HistogramAggregator {
 		super(min, max, buckets);
 	}
 
-	/** {@inheritDoc} */
-	@Override
-	public void start(EmitKey key) {
-		super.start(key);
-
-		this.list = new SortedCountingSet<Long>();
-	}
-
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(String data, String metadata) throws NumberFormatException, IOException, InterruptedException {
@@ -56,7 +41,7 @@ public class IntHistogramAggregator extends HistogramAggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(long data, String metadata) throws IOException {
-		this.list.add(Long.valueOf(data), super.count(metadata));
+		this.add(data, super.count(metadata));
 	}
 
 	/** {@inheritDoc} */
@@ -64,16 +49,4 @@ public class IntHistogramAggregator extends HistogramAggregator {
 	public void aggregate(double data, String metadata) throws IOException {
 		this.aggregate(Double.valueOf(data).longValue(), metadata);
 	}
-
-	/** {@inheritDoc} */
-	@Override
-	public List<Pair<Number, Long>> getTuples() {
-		List<Pair<Number, Long>> list = new ArrayList<Pair<Number, Long>>();
-
-		// convert the map entries into a list of Pair
-		for (final Entry<Long, Long> e : this.list.getEntries())
-			list.add(new Pair<Number, Long>(e.getKey(), e.getValue()));
-
-		return list;
-	}
 }
@@ -1,9 +1,6 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map.Entry;
 
 import sizzle.io.EmitKey;
 
@@ -33,7 +30,10 @@ public class IntQuantileAggregator extends QuantileAggregator {
 	public void start(EmitKey key) {
 		super.start(key);
 
-		this.list = new SortedCountingSet<Long>();
+		// the last key's runs are deleted
+		if (this.list != null)
+			this.list.close();
+		this.list = new SortedCountingSet<Long>(this.getBuffer());
 	}
 
 	/** {@inheritDoc} */
@@ -48,7 +48,7 @@ public class IntQuantileAggregator extends QuantileAggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(long data, String metadata) throws IOException {
-		this.list.add(Long.valueOf(data), super.count(metadata));
+		this.add(data, super.count(metadata));
 	}
 
 	/** {@inheritDoc} */
@@ -59,13 +59,38 @@ public class IntQuantileAggregator extends QuantileAggregator {
 
 	/** {@inheritDoc} */
 	@Override
-	public List<Pair<String, Long>> getTuples() {
-		List<Pair<String, Long>> list = new ArrayList<Pair<String, Long>>();
+	public void aggregateWeighted(long data, long weight) throws IOException {
+		this.add(data, super.count(weight));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateWeighted(double data, long weight) throws IOException {
+		this.aggregateWeighted(Double.valueOf(data).longValue(), weight);
+	}
 
-		// convert the map entries into a list of Pair
-		for (Entry<Long, Long> e : this.list.getEntries())
-			list.add(new Pair<String, Long>(e.getKey().toString(), e.getValue()));
+	private void add(long data, long count) {
+		Long value = Long.valueOf(data);
 
-		return list;
+		if (!this.streamed(value, count))
+			this.list.add(value, count);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected byte[] sort(Number data) {
+		return EmitKey.sortable(QuantileAggregator.VALUE, data.longValue());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected String valueOf(double data) {
+		return Long.toString((long) data);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Iterable<Pair<Number, Long>> getTuples() {
+		return QuantileAggregator.tuples(this.list.getEntries());
 	}
 }
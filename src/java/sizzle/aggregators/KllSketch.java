@@ -0,0 +1,280 @@
+package sizzle.aggregators;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A bounded summary of the distribution of the numbers in a stream, after Z.
+ * Karnin, K. Lang and E. Liberty, Optimal quantile approximation in streams,
+ * Proc 57th Symp. on Foundations of Computer Science, 2016.
+ *
+ * The numbers are kept in a stack of compactors, each number at level
+ * <i>h</i> standing for 2<sup><i>h</i></sup> of them. When a compactor fills,
+ * it is sorted and every other number in it, starting at random from the
+ * first or the second, is promoted to the level above, and the rest are
+ * dropped. The compactors shrink by a third at each level down from the top,
+ * to no fewer than two numbers, so that a summary of any number of numbers
+ * holds about 3<i>k</i> of them, and the rank of each quantile it finds is
+ * off by no more than about 2.3/<i>k</i><sup>0.97</sup> of the count, or 1.3%
+ * for a <i>k</i> of 200, with 99% confidence.
+ *
+ * Two summaries are merged by adding the numbers at each level of the one to
+ * the same level of the other and compacting the result, which keeps the same
+ * bound.
+ *
+ * @author anthonyu
+ *
+ */
+class KllSketch {
+	// how much smaller each compactor is than the one above it
+	private static final double SHRINK = 2.0 / 3.0;
+
+	private final int k;
+	// seeded, so that the same values give the same quantiles
+	private final Random random;
+	private final List<Compactor> levels;
+	private long count;
+
+	/**
+	 * Construct a KllSketch.
+	 *
+	 * @param k
+	 *            An int representing the size of the largest compactor
+	 */
+	public KllSketch(final int k) {
+		this.k = k;
+		this.random = new Random(k);
+		this.levels = new ArrayList<Compactor>();
+	}
+
+	/**
+	 * Construct a KllSketch from a serialized summary.
+	 *
+	 * @param bytes
+	 *            An array of byte containing a summary, as written by
+	 *            {@link #toBytes()}
+	 *
+	 * @throws IOException
+	 */
+	public KllSketch(final byte[] bytes) throws IOException {
+		this(KllSketch.input(bytes).readInt());
+
+		this.merge(bytes);
+	}
+
+	/**
+	 * Add a number to the summary.
+	 *
+	 * @param value
+	 *            A double containing the number
+	 *
+	 * @param weight
+	 *            A long representing the number of times it was seen
+	 */
+	public void add(final double value, final long weight) {
+		this.count += weight;
+
+		// a number seen n times is added at the levels of the bits of n
+		long bits = weight;
+		for (int h = 0; bits != 0; h++, bits >>>= 1)
+			if ((bits & 1) != 0)
+				this.level(h).add(value);
+
+		this.compress();
+	}
+
+	/**
+	 * Merge a serialized summary into this one.
+	 *
+	 * @param bytes
+	 *            An array of byte containing a summary, as written by
+	 *            {@link #toBytes()}
+	 *
+	 * @throws IOException
+	 */
+	public void merge(final byte[] bytes) throws IOException {
+		final DataInputBuffer in = KllSketch.input(bytes);
+
+		// the summary is merged whatever size it was made with
+		in.readInt();
+		this.count += WritableUtils.readVLong(in);
+
+		final int levels = WritableUtils.readVInt(in);
+		for (int h = 0; h < levels; h++) {
+			final Compactor level = this.level(h);
+
+			final int size = WritableUtils.readVInt(in);
+			for (int i = 0; i < size; i++)
+				level.add(in.readDouble());
+		}
+
+		this.compress();
+	}
+
+	/**
+	 * Serialize this summary.
+	 *
+	 * @return An array of byte containing this summary
+	 *
+	 * @throws IOException
+	 */
+	public byte[] toBytes() throws IOException {
+		final DataOutputBuffer out = new DataOutputBuffer();
+
+		out.writeInt(this.k);
+		WritableUtils.writeVLong(out, this.count);
+		WritableUtils.writeVInt(out, this.levels.size());
+		for (final Compactor level : this.levels) {
+			WritableUtils.writeVInt(out, level.size);
+			for (int i = 0; i < level.size; i++)
+				out.writeDouble(level.values[i]);
+		}
+
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	/**
+	 * Find the quantiles of the numbers summarized, as
+	 * {@link QuantileAggregator} does for the numbers it keeps.
+	 *
+	 * @param n
+	 *            An int representing the number of quantiles
+	 *
+	 * @return An array of double containing the n - 1 numbers at the ends of
+	 *         the first n - 1 quantiles
+	 */
+	public double[] quantiles(final int n) {
+		// each number with the count it stands for, in order
+		int size = 0;
+		for (final Compactor level : this.levels)
+			size += level.size;
+
+		final double[] values = new double[size];
+		final long[] weights = new long[size];
+		final Integer[] order = new Integer[size];
+
+		int j = 0;
+		for (int h = 0; h < this.levels.size(); h++) {
+			final Compactor level = this.levels.get(h);
+
+			for (int i = 0; i < level.size; i++, j++) {
+				values[j] = level.values[i];
+				weights[j] = 1L << h;
+				order[j] = Integer.valueOf(j);
+			}
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer i1, final Integer i2) {
+				return Double.compare(values[i1.intValue()], values[i2.intValue()]);
+			}
+		});
+
+		final double[] quantiles = new double[n - 1];
+		Arrays.fill(quantiles, Double.NaN);
+
+		final double step = this.count / (double) (n - 1);
+
+		int last = 0;
+		long q = 0;
+		for (final Integer i : order) {
+			q += weights[i.intValue()];
+
+			final int curr = (int) Math.min(n - 1, q / step);
+
+			for (int c = last; c < curr; c++)
+				quantiles[c] = values[i.intValue()];
+			last = Math.max(last, curr);
+		}
+
+		return quantiles;
+	}
+
+	/**
+	 * Get the count of the numbers summarized.
+	 *
+	 * @return A long representing the total weight of the numbers added
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	private Compactor level(final int h) {
+		while (this.levels.size() <= h)
+			this.levels.add(new Compactor());
+
+		return this.levels.get(h);
+	}
+
+	// the most numbers a level may hold before it is compacted
+	private int capacity(final int h) {
+		final int depth = this.levels.size() - 1 - h;
+
+		return Math.max(2, (int) Math.ceil(this.k * Math.pow(KllSketch.SHRINK, depth)));
+	}
+
+	// compact the levels until each fits, growing the stack as needed
+	private void compress() {
+		boolean compacted = true;
+
+		while (compacted) {
+			compacted = false;
+
+			for (int h = 0; h < this.levels.size(); h++)
+				if (this.levels.get(h).size > this.capacity(h)) {
+					this.compact(h);
+					compacted = true;
+				}
+		}
+	}
+
+	// promote every other number of a level to the one above
+	private void compact(final int h) {
+		final Compactor level = this.levels.get(h);
+		final Compactor above = this.level(h + 1);
+
+		Arrays.sort(level.values, 0, level.size);
+
+		// an odd one out stays where it is
+		final int pairs = level.size / 2;
+		final boolean odd = level.size % 2 != 0;
+		final double last = level.values[level.size - 1];
+
+		final int offset = this.random.nextBoolean() ? 1 : 0;
+		for (int i = 0; i < pairs; i++)
+			above.add(level.values[2 * i + offset]);
+
+		level.size = 0;
+		if (odd)
+			level.add(last);
+	}
+
+	private static DataInputBuffer input(final byte[] bytes) {
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+
+		return in;
+	}
+
+	// a growable array of numbers
+	private static class Compactor {
+		double[] values = new double[8];
+		int size;
+
+		void add(final double value) {
+			if (this.size == this.values.length)
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+
+			this.values[this.size++] = value;
+		}
+	}
+}
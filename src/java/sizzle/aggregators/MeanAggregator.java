@@ -18,6 +18,10 @@ abstract class MeanAggregator extends Aggregator {
 			this.count += Long.parseLong(metadata);
 	}
 
+	public void count(long weight) {
+		this.count += weight;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void start(EmitKey key) {
@@ -2,6 +2,8 @@ package sizzle.aggregators;
 
 import java.io.IOException;
 
+import org.apache.hadoop.mapreduce.MapContext;
+
 import sizzle.io.EmitKey;
 
 /**
@@ -10,7 +12,7 @@ import sizzle.io.EmitKey;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "mrcounter", type = "int")
+@AggregatorSpec(name = "mrcounter", type = "int", passThrough = true)
 public class MrcounterAggregator extends Aggregator {
 	private String group;
 	private String name;
@@ -43,8 +45,9 @@ public class MrcounterAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(final String data, final String metadata) throws IOException {
-		// we can get away with just incrementing these in the combiner
-		if (!this.isCombining())
+		// we can get away with just incrementing these in the combiner, or in
+		// the mapper when there is no reduce
+		if (!this.isCombining() && !(this.getContext() instanceof MapContext))
 			return;
 
 		// increment the counter specified by the key and its index and the
@@ -0,0 +1,67 @@
+package sizzle.aggregators;
+
+/**
+ * A 64 bit hash of strings, after A. Appleby's MurmurHash64A.
+ *
+ * The chars of a string are hashed as they are, four to a block, so that
+ * nothing is allocated to hash it.
+ *
+ * @author anthonyu
+ *
+ */
+final class MurmurHash {
+	private static final long M = 0xc6a4a7935bd1e995L;
+	private static final int R = 47;
+
+	// the seed of the hash, from o.a.h.util.hash.MurmurHash
+	private static final long SEED = 0xffffffffL;
+
+	private MurmurHash() {
+		// a collection of static functions
+	}
+
+	/**
+	 * Hash a string.
+	 *
+	 * @param s
+	 *            A {@link CharSequence} containing the string
+	 *
+	 * @return A long containing the hash of the string
+	 */
+	static long hash64(final CharSequence s) {
+		final int length = s.length();
+
+		long h = MurmurHash.SEED ^ 2L * length * MurmurHash.M;
+
+		final int blocks = length / 4;
+		for (int i = 0; i < blocks; i++) {
+			final int o = i * 4;
+
+			long k = s.charAt(o) | (long) s.charAt(o + 1) << 16 | (long) s.charAt(o + 2) << 32 | (long) s.charAt(o + 3) << 48;
+
+			k *= MurmurHash.M;
+			k ^= k >>> MurmurHash.R;
+			k *= MurmurHash.M;
+
+			h ^= k;
+			h *= MurmurHash.M;
+		}
+
+		final int o = blocks * 4;
+		switch (length & 3) {
+		case 3:
+			h ^= (long) s.charAt(o + 2) << 32;
+		case 2:
+			h ^= (long) s.charAt(o + 1) << 16;
+		case 1:
+			h ^= s.charAt(o);
+			h *= MurmurHash.M;
+		}
+
+		h ^= h >>> MurmurHash.R;
+		h *= MurmurHash.M;
+		h ^= h >>> MurmurHash.R;
+
+		return h;
+	}
+}
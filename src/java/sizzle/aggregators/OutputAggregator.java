@@ -8,7 +8,7 @@ import java.io.IOException;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "output", type = "bytes")
+@AggregatorSpec(name = "output", type = "bytes", passThrough = true)
 public class OutputAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
@@ -2,19 +2,50 @@ package sizzle.aggregators;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map.Entry;
 
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 
 /**
  * A Sizzle aggregator to calculate the quantiles for the values in a dataset.
  * 
+ * When the job sorts the values of each key, the mapper writes each value
+ * with its number as the sort value of its key, after a count of them all,
+ * and the reducer finds the quantiles as the values stream past, without
+ * holding on to them.
+ * 
+ * When <code>sizzle.runtime.quantile.sketch</code> is set, the values are
+ * instead summarized in a {@link KllSketch} of that size, so that the memory
+ * each key takes is bounded however many distinct values it has, and the
+ * combiners pass on the summary instead of the values. The quantiles found are
+ * then approximate, their ranks off by about 1.3% of the count for a size of
+ * 200.
+ * 
  * @author anthonyu
  * 
  */
 abstract class QuantileAggregator extends Aggregator {
-	private int total;
+	// the sort values of the count, and of the values that follow it
+	static final byte COUNT = 0;
+	static final byte VALUE = 1;
+
+	private long total;
+
+	// the number of values announced to follow in sorted order, and the
+	// quantiles found among them so far
+	private long announced;
+	private String[] quartiles;
+	private double step;
+	private long q;
+	private long last;
+	// whether any value has been kept for finish instead
+	private boolean buffered;
+
+	// the summary of the values, when they are not kept exactly
+	private KllSketch sketch;
 
 	/**
 	 * Construct a QuantileAggregator.
@@ -46,14 +77,127 @@ abstract class QuantileAggregator extends Aggregator {
 		return count;
 	}
 
+	/**
+	 * Add a weight to the running total.
+	 * 
+	 * @param weight
+	 *            A long containing the number of values
+	 * 
+	 * @return The weight
+	 */
+	public long count(long weight) {
+		this.total += weight;
+
+		return weight;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void start(EmitKey key) {
 		super.start(key);
 
 		this.total = 0;
+
+		this.announced = 0;
+		this.quartiles = null;
+		this.q = 0;
+		this.last = 0;
+		this.buffered = false;
+
+		int k = 0;
+		if (this.getContext() != null)
+			k = this.getContext().getConfiguration().getInt("sizzle.runtime.quantile.sketch", 0);
+
+		this.sketch = k > 0 ? new KllSketch(k) : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateCount(long count) {
+		// counts from mappers that sorted their values are useless once any
+		// value has arrived out of order
+		if (!this.isCombining() && !this.buffered)
+			this.announced += count;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateSketch(byte[] sketch) throws IOException {
+		if (this.sketch != null) {
+			this.sketch.merge(sketch);
+			return;
+		}
+
+		// the values were summarized upstream, so summarize those kept here
+		// too
+		this.sketch = new KllSketch(sketch);
+		for (Pair<Number, Long> e : this.getTuples())
+			this.sketch.add(e.getFirst().doubleValue(), e.getSecond().longValue());
+	}
+
+	/**
+	 * Summarize a value, or find the quantiles among a value streaming past in
+	 * sorted order, if it is.
+	 * 
+	 * @param data
+	 *            A {@link Number} containing the value
+	 * 
+	 * @param count
+	 *            A long representing the number of times it was emitted
+	 * 
+	 * @return true iff the value was summarized or streamed, and should not
+	 *         be kept
+	 */
+	protected boolean streamed(Number data, long count) {
+		if (this.sketch != null) {
+			this.sketch.add(data.doubleValue(), count);
+			return true;
+		}
+
+		if (!this.isSorted() || this.isCombining() || this.announced == 0 || this.buffered) {
+			this.buffered = true;
+			return false;
+		}
+
+		if (this.quartiles == null) {
+			this.quartiles = new String[(int) (this.getArg() - 1)];
+			this.step = this.announced / (double) this.quartiles.length;
+		}
+
+		// as finish does for the values it kept
+		this.q += count;
+
+		int curr = (int) (this.q / this.step);
+
+		if (curr != this.last && curr <= this.quartiles.length) {
+			this.last = curr;
+
+			this.quartiles[curr - 1] = data.toString();
+		}
+
+		return true;
 	}
 
+	/**
+	 * Encode a value as the sort value of its key.
+	 * 
+	 * @param data
+	 *            A {@link Number} containing the value
+	 * 
+	 * @return An array of byte containing its sort value
+	 */
+	protected abstract byte[] sort(Number data);
+
+	/**
+	 * Format a quantile found by the summary as the values are.
+	 * 
+	 * @param data
+	 *            A double containing the quantile
+	 * 
+	 * @return A {@link String} containing the quantile
+	 */
+	protected abstract String valueOf(double data);
+
 	/** {@inheritDoc} */
 	@Override
 	public abstract void aggregate(String data, String metadata) throws IOException;
@@ -61,10 +205,32 @@ abstract class QuantileAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
 	public void finish() throws IOException, InterruptedException {
-		// if we're in the combiner, just output the compressed data
-		if (this.isCombining()) {
-			for (Pair<String, Long> e : this.getTuples())
-				this.collect(e.getFirst(), e.getSecond().toString());
+		if (this.sketch != null && this.isCombining()) {
+			// pass on the summary, not the values in it
+			this.write(this.getKey(), EmitValue.sketch(this.sketch.toBytes()));
+		} else if (this.sketch != null) {
+			double[] quantiles = this.sketch.quantiles((int) this.getArg());
+
+			String[] quartiles = new String[quantiles.length];
+			for (int i = 0; i < quantiles.length; i++)
+				if (!Double.isNaN(quantiles[i]))
+					quartiles[i] = this.valueOf(quantiles[i]);
+
+			this.collect(Arrays.toString(quartiles));
+		} else if (this.isCombining() && this.isSorted()) {
+			// if we're in the combiner, just output the compressed data
+			// announce the values ahead of them, and sort them by their
+			// numbers
+			this.write(this.getKey().sorted(new byte[] { QuantileAggregator.COUNT }), EmitValue.count(this.total));
+
+			for (Pair<Number, Long> e : this.getTuples())
+				this.write(this.getKey().sorted(this.sort(e.getFirst())), QuantileAggregator.partial(e));
+		} else if (this.isCombining()) {
+			for (Pair<Number, Long> e : this.getTuples())
+				this.write(this.getKey(), QuantileAggregator.partial(e));
+		} else if (this.quartiles != null) {
+			// the values streamed past
+			this.collect(Arrays.toString(this.quartiles));
 		} else {
 			// otherwise, set up the quantiles
 			int n = (int) (this.getArg() - 1);
@@ -73,7 +239,7 @@ abstract class QuantileAggregator extends Aggregator {
 
 			long last = 0;
 			long q = 0;
-			for (Pair<String, Long> e : this.getTuples()) {
+			for (Pair<Number, Long> e : this.getTuples()) {
 				q += e.getSecond();
 
 				int curr = (int) (q / step);
@@ -83,20 +249,63 @@ abstract class QuantileAggregator extends Aggregator {
 
 				last = curr;
 
-				quartiles[curr - 1] = e.getFirst();
+				quartiles[curr - 1] = e.getFirst().toString();
 			}
 
 			this.collect(Arrays.toString(quartiles));
 		}
 	}
 
+	// a value and its count, as numbers, to be passed on
+	private static EmitValue partial(Pair<Number, Long> e) {
+		return new EmitValue(new Object[] { e.getFirst() }).withWeight(e.getSecond().longValue());
+	}
+
+	/**
+	 * Return the data points from the dataset in pairs, in order.
+	 * 
+	 * @return An {@link Iterable} of {@link Pair}&lt{@link Number},
+	 *         {@link Long}&gt; containing the data points from the dataset
+	 */
+	public abstract Iterable<Pair<Number, Long>> getTuples();
+
 	/**
-	 * Return the data points from the dataset in pairs.
+	 * View the entries of a {@link SortedCountingSet} as data points, without
+	 * copying them.
+	 * 
+	 * @param entries
+	 *            An {@link Iterable} of Map.Entry containing the entries
 	 * 
-	 * @return A {@link List} of {@link Pair}&lt{@link Number}, {@link Long}&gt;
-	 *         containing the data points from the dataset
+	 * @return An {@link Iterable} of {@link Pair}&lt{@link Number},
+	 *         {@link Long}&gt; containing the data points
 	 */
-	public abstract List<Pair<String, Long>> getTuples();
+	static <T extends Number> Iterable<Pair<Number, Long>> tuples(final Iterable<Entry<T, Long>> entries) {
+		return new Iterable<Pair<Number, Long>>() {
+			@Override
+			public Iterator<Pair<Number, Long>> iterator() {
+				final Iterator<Entry<T, Long>> i = entries.iterator();
+
+				return new Iterator<Pair<Number, Long>>() {
+					@Override
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+
+					@Override
+					public Pair<Number, Long> next() {
+						Entry<T, Long> e = i.next();
+
+						return new Pair<Number, Long>(e.getKey(), e.getValue());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
 
 	/** {@inheritDoc} */
 	@Override
@@ -104,6 +313,12 @@ abstract class QuantileAggregator extends Aggregator {
 		return true;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public boolean isSortable() {
+		return true;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public boolean isCommutative() {
@@ -1,9 +1,10 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.Map.Entry;
 
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 /**
  * A Sizzle aggregator to filter the values in a dataset by maximum size.
@@ -13,7 +14,7 @@ import sizzle.io.EmitKey;
  */
 @AggregatorSpec(name = "set")
 public class SetAggregator extends Aggregator {
-	private HashSet<String> set;
+	private SortedCountingSet<String> set;
 	private final long max;
 
 	/**
@@ -33,8 +34,11 @@ public class SetAggregator extends Aggregator {
 	public void start(final EmitKey key) {
 		super.start(key);
 
+		// the last key's runs are deleted
+		if (this.set != null)
+			this.set.close();
 		// the set of data to be collected
-		this.set = new HashSet<String>();
+		this.set = new SortedCountingSet<String>(this.getBuffer());
 	}
 
 	/** {@inheritDoc} */
@@ -42,14 +46,21 @@ public class SetAggregator extends Aggregator {
 	public void aggregate(final String data, final String metadata) throws IOException, InterruptedException, FinishedException {
 		this.set.add(data);
 
-		if (this.set.size() > this.max)
-			throw new FinishedException();
+		// once spilled, the size is only known at the end
+		if (!this.set.isSpilled() && this.set.size() > this.max)
+			throw FinishedException.FINISHED;
 	}
 
 	@Override
 	public void finish() throws IOException, InterruptedException {
-		for (final String s : this.set)
-			this.collect(s);
+		if (this.set.isSpilled() && this.set.size() > this.max) {
+			// finished after all, so tell the reducers as the combiner would
+			if (this.isCombining())
+				this.write(this.getKey(), EmitValue.finished());
+		} else {
+			for (final Entry<String, Long> e : this.set.getEntries())
+				this.collect(e.getKey());
+		}
 
 		super.finish();
 	}
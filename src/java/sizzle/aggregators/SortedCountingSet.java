@@ -1,34 +1,79 @@
 package sizzle.aggregators;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
 /**
  * A sorted counting set. Like a SortedSet, but also keeps track of how many
  * times a given member has been added.
  * 
+ * Given a buffer, the set spills itself to a sorted run in a local temporary
+ * file whenever its estimated size in memory grows past it, and merges the
+ * runs back together as it is read, so that a set too big for the heap is
+ * still counted exactly. Only sets of {@link String}, {@link Long} and
+ * {@link Double} can be spilled. Call {@link #close()} to delete the runs.
+ * 
  * @author anthonyu
  * 
  * @param <T>
  *            The type of value that will be inserted into the set
  */
 public class SortedCountingSet<T> implements Iterable<T> {
+	// rough per-object overheads used when estimating the size of the map;
+	// these err on the large side so that we spill early, not late
+	private static final int ENTRY_OVERHEAD = 64;
+	private static final int STRING_OVERHEAD = 40;
+
 	private final TreeMap<T, Long> map;
+	private final long buffer;
+	private long size;
+
+	// the runs spilled so far, and the type of their values
+	private final List<File> runs;
+	private Class<?> type;
 
 	/**
 	 * Construct a SortedCountingSet.
 	 */
 	public SortedCountingSet() {
+		this(0);
+	}
+
+	/**
+	 * Construct a SortedCountingSet.
+	 *
+	 * @param buffer
+	 *            A long representing the estimated size, in bytes, the set
+	 *            may grow to in memory before it is spilled to disk, or 0 to
+	 *            keep it all in memory
+	 */
+	public SortedCountingSet(final long buffer) {
 		this.map = new TreeMap<T, Long>();
+		this.buffer = buffer;
+		this.runs = new ArrayList<File>();
 	}
 
 	/**
 	 * Add a value to the set.
-	 * 
+	 *
 	 * @param t
 	 *            The value to be added
 	 */
@@ -39,57 +84,91 @@ public class SortedCountingSet<T> implements Iterable<T> {
 
 	/**
 	 * Add a value and its cardinality to the set.
-	 * 
+	 *
 	 * @param t
 	 *            The value to be added
 	 * @param n
 	 *            The cardinality of the value
 	 */
 	public void add(final T t, final long n) {
+		final Long count = this.map.get(t);
+
 		// if the map already has this key, add n to the current cardiality and
 		// reinsert
-		if (this.map.containsKey(t))
-			this.map.put(t, Long.valueOf(this.map.get(t).longValue() + n));
-		else
+		if (count != null) {
+			this.map.put(t, Long.valueOf(count.longValue() + n));
+		} else {
 			this.map.put(t, Long.valueOf(n));
+
+			this.size += SortedCountingSet.ENTRY_OVERHEAD + SortedCountingSet.sizeOf(t);
+			if (this.buffer > 0 && this.size > this.buffer)
+				this.spill();
+		}
+	}
+
+	/**
+	 * Get the number of distinct values in the set. If the set has been
+	 * spilled, its runs are merged to count them.
+	 *
+	 * @return A long representing the number of distinct values in the set
+	 */
+	public long size() {
+		if (this.runs.isEmpty())
+			return this.map.size();
+
+		long size = 0;
+		for (final Iterator<Entry<T, Long>> i = this.getEntries().iterator(); i.hasNext(); i.next())
+			size++;
+
+		return size;
+	}
+
+	/**
+	 * @return true iff the set has been spilled to disk
+	 */
+	public boolean isSpilled() {
+		return !this.runs.isEmpty();
+	}
+
+	/**
+	 * Delete any runs this set has spilled to disk, and empty it.
+	 */
+	public void close() {
+		for (final File run : this.runs)
+			if (!run.delete())
+				run.deleteOnExit();
+
+		this.runs.clear();
+		this.map.clear();
+		this.size = 0;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public Iterator<T> iterator() {
-		return new Iterator<T>() {
-			private Entry<T, Long> lastEntry;
-			private Entry<T, Long> thisEntry;
+		final Iterator<Entry<T, Long>> entries = this.getEntries().iterator();
 
+		return new Iterator<T>() {
+			private T t;
 			private long cursor;
 
-			{
-				this.thisEntry = SortedCountingSet.this.map.firstEntry();
-				this.lastEntry = SortedCountingSet.this.map.lastEntry();
-				this.cursor = 0;
-			}
-
 			@Override
 			public boolean hasNext() {
-				if (this.lastEntry == null)
-					return false;
-
-				if (!this.thisEntry.getKey().equals(this.lastEntry.getKey()))
-					return true;
-
-				return this.cursor != this.lastEntry.getValue().longValue();
+				return this.cursor > 0 || entries.hasNext();
 			}
 
 			@Override
 			public T next() {
-				if (this.cursor == this.thisEntry.getValue().longValue()) {
-					this.thisEntry = SortedCountingSet.this.map.higherEntry(this.thisEntry.getKey());
-					this.cursor = 0;
+				if (this.cursor == 0) {
+					final Entry<T, Long> e = entries.next();
+
+					this.t = e.getKey();
+					this.cursor = e.getValue().longValue();
 				}
 
-				this.cursor++;
+				this.cursor--;
 
-				return this.thisEntry.getKey();
+				return this.t;
 			}
 
 			@Override
@@ -101,7 +180,7 @@ public class SortedCountingSet<T> implements Iterable<T> {
 
 	/**
 	 * Copy this set into a {@link List}.
-	 * 
+	 *
 	 * @return A {@link List} containing the values in this set
 	 */
 	public List<T> toList() {
@@ -114,11 +193,199 @@ public class SortedCountingSet<T> implements Iterable<T> {
 	}
 
 	/**
-	 * Get the entries in this set.
-	 * 
-	 * @return A {@link Set} of Map.Entry containing the entries in this set
+	 * Get the entries in this set, in order. If the set has been spilled,
+	 * its runs are merged as they are read.
+	 *
+	 * @return An {@link Iterable} of Map.Entry containing the entries in this
+	 *         set
 	 */
-	public Set<java.util.Map.Entry<T, Long>> getEntries() {
-		return this.map.entrySet();
+	public Iterable<Entry<T, Long>> getEntries() {
+		if (this.runs.isEmpty())
+			return this.map.entrySet();
+
+		return new Iterable<Entry<T, Long>>() {
+			@Override
+			public Iterator<Entry<T, Long>> iterator() {
+				return new Merge();
+			}
+		};
+	}
+
+	// write the map out as a sorted run, and empty it
+	private void spill() {
+		if (this.type == null)
+			this.type = this.map.firstKey().getClass();
+
+		try {
+			final File file = File.createTempFile("sizzle-spill", ".run");
+			file.deleteOnExit();
+			this.runs.add(file);
+
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				WritableUtils.writeVLong(out, this.map.size());
+
+				for (final Entry<T, Long> e : this.map.entrySet()) {
+					this.write(out, e.getKey());
+					WritableUtils.writeVLong(out, e.getValue().longValue());
+				}
+			} finally {
+				out.close();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e.getClass().getName() + " caught", e);
+		}
+
+		this.map.clear();
+		this.size = 0;
+	}
+
+	private void write(final DataOutputStream out, final T t) throws IOException {
+		if (this.type == String.class)
+			Text.writeString(out, (String) t);
+		else if (this.type == Long.class)
+			out.writeLong(((Long) t).longValue());
+		else if (this.type == Double.class)
+			out.writeDouble(((Double) t).doubleValue());
+		else
+			throw new IllegalArgumentException("cannot spill a set of " + this.type.getName());
+	}
+
+	@SuppressWarnings("unchecked")
+	private T read(final DataInputStream in) throws IOException {
+		if (this.type == String.class)
+			return (T) Text.readString(in);
+		else if (this.type == Long.class)
+			return (T) Long.valueOf(in.readLong());
+		else
+			return (T) Double.valueOf(in.readDouble());
+	}
+
+	private static long sizeOf(final Object t) {
+		if (t instanceof String)
+			return SortedCountingSet.STRING_OVERHEAD + 2 * ((String) t).length();
+
+		return 16;
+	}
+
+	// a sorted source of entries: the map or one of the runs
+	private abstract class Cursor {
+		T key;
+		long count;
+
+		// move to the next entry, if there is one
+		abstract boolean advance() throws IOException;
+	}
+
+	private class MapCursor extends Cursor {
+		private final Iterator<Entry<T, Long>> entries = SortedCountingSet.this.map.entrySet().iterator();
+
+		@Override
+		boolean advance() {
+			if (!this.entries.hasNext())
+				return false;
+
+			final Entry<T, Long> e = this.entries.next();
+			this.key = e.getKey();
+			this.count = e.getValue().longValue();
+
+			return true;
+		}
+	}
+
+	private class RunCursor extends Cursor {
+		private final DataInputStream in;
+		private long left;
+
+		public RunCursor(final File run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+			this.left = WritableUtils.readVLong(this.in);
+		}
+
+		@Override
+		boolean advance() throws IOException {
+			if (this.left == 0) {
+				this.in.close();
+				return false;
+			}
+
+			this.left--;
+			this.key = SortedCountingSet.this.read(this.in);
+			this.count = WritableUtils.readVLong(this.in);
+
+			return true;
+		}
+	}
+
+	// merges the runs and the map, adding up the counts of equal values
+	private class Merge implements Iterator<Entry<T, Long>> {
+		private final PriorityQueue<Cursor> cursors;
+
+		public Merge() {
+			this.cursors = new PriorityQueue<Cursor>(SortedCountingSet.this.runs.size() + 1, new Comparator<Cursor>() {
+				@Override
+				public int compare(final Cursor c1, final Cursor c2) {
+					return Merge.this.compare(c1.key, c2.key);
+				}
+			});
+
+			try {
+				for (final File run : SortedCountingSet.this.runs)
+					this.add(new RunCursor(run));
+				this.add(new MapCursor());
+			} catch (final IOException e) {
+				throw new RuntimeException(e.getClass().getName() + " caught", e);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private int compare(final T t1, final T t2) {
+			final Comparator<? super T> comparator = SortedCountingSet.this.map.comparator();
+
+			if (comparator != null)
+				return comparator.compare(t1, t2);
+
+			return ((Comparable<? super T>) t1).compareTo(t2);
+		}
+
+		private void add(final Cursor cursor) throws IOException {
+			if (cursor.advance())
+				this.cursors.add(cursor);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !this.cursors.isEmpty();
+		}
+
+		@Override
+		public Entry<T, Long> next() {
+			if (this.cursors.isEmpty())
+				throw new NoSuchElementException();
+
+			Cursor cursor = this.cursors.poll();
+			final T key = cursor.key;
+			long count = cursor.count;
+
+			try {
+				this.add(cursor);
+
+				// add in the same value from the other sources
+				while (!this.cursors.isEmpty() && this.compare(this.cursors.peek().key, key) == 0) {
+					cursor = this.cursors.poll();
+					count += cursor.count;
+					this.add(cursor);
+				}
+			} catch (final IOException e) {
+				throw new RuntimeException(e.getClass().getName() + " caught", e);
+			}
+
+			return new AbstractMap.SimpleImmutableEntry<T, Long>(key, Long.valueOf(count));
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,228 @@
+package sizzle.aggregators;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A bounded summary of the most frequent strings in a stream, after A.
+ * Metwally, D. Agrawal and A. El Abbadi, Efficient computation of frequent and
+ * top-k elements in data streams, Proc 10th Intl. Conf. on Database Theory,
+ * 2005.
+ * 
+ * At most <i>capacity</i> strings are counted. A string that is not counted
+ * when it arrives takes the place of the one with the lowest count, and
+ * inherits that count as its error. Every count is then an overestimate by at
+ * most its error, which is at most the total weight counted divided by the
+ * capacity, and every string with more weight than that is counted.
+ * 
+ * Two summaries are merged by adding the counts of the strings they share and,
+ * for the strings only one of them counts, the lowest count of the other if it
+ * is full, after P. Agarwal et al., Mergeable summaries, Proc 31st Symp. on
+ * Principles of Database Systems, 2012, which keeps the same bound.
+ * 
+ * @author anthonyu
+ * 
+ */
+class SpaceSaving {
+	// the most counted first, and alphabetically among equals
+	private static final Comparator<Counter> MOST = new Comparator<Counter>() {
+		@Override
+		public int compare(final Counter c1, final Counter c2) {
+			if (c1.count != c2.count)
+				return c1.count > c2.count ? -1 : 1;
+
+			return c1.string.compareTo(c2.string);
+		}
+	};
+
+	private final int capacity;
+	private final Map<String, Counter> counters;
+	// the counters by count, lowest first
+	private final TreeSet<Counter> order;
+	private long total;
+
+	/**
+	 * Construct a SpaceSaving.
+	 * 
+	 * @param capacity
+	 *            An int representing the number of strings to count
+	 */
+	public SpaceSaving(final int capacity) {
+		this.capacity = capacity;
+		this.counters = new HashMap<String, Counter>();
+		this.order = new TreeSet<Counter>(new Comparator<Counter>() {
+			@Override
+			public int compare(final Counter c1, final Counter c2) {
+				if (c1.count != c2.count)
+					return c1.count < c2.count ? -1 : 1;
+
+				return c1.string.compareTo(c2.string);
+			}
+		});
+	}
+
+	/**
+	 * Count a string.
+	 * 
+	 * @param string
+	 *            A {@link String} to be counted
+	 * 
+	 * @param weight
+	 *            A long representing the weight of the string
+	 */
+	public void add(final String string, final long weight) {
+		this.total += weight;
+
+		Counter c = this.counters.get(string);
+
+		if (c != null) {
+			this.order.remove(c);
+			c.count += weight;
+		} else if (this.counters.size() < this.capacity) {
+			c = new Counter(string, weight, 0);
+			this.counters.put(string, c);
+		} else {
+			// take the place of the least counted string
+			final Counter min = this.order.pollFirst();
+			this.counters.remove(min.string);
+
+			c = new Counter(string, min.count + weight, min.count);
+			this.counters.put(string, c);
+		}
+
+		this.order.add(c);
+	}
+
+	/**
+	 * Merge a serialized summary into this one.
+	 * 
+	 * @param bytes
+	 *            An array of byte containing a summary, as written by
+	 *            {@link #toBytes()}
+	 * 
+	 * @throws IOException
+	 */
+	public void merge(final byte[] bytes) throws IOException {
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+
+		final long total = WritableUtils.readVLong(in);
+		final boolean full = in.readBoolean();
+		final int size = WritableUtils.readVInt(in);
+
+		final Counter[] others = new Counter[size];
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			others[i] = new Counter(Text.readString(in), WritableUtils.readVLong(in), WritableUtils.readVLong(in));
+			min = Math.min(min, others[i].count);
+		}
+
+		// what a summary may have missed of the strings it doesn't count
+		final long missed = full ? min : 0;
+		final long ours = this.counters.size() >= this.capacity ? this.order.first().count : 0;
+
+		final Map<String, Counter> merged = new HashMap<String, Counter>();
+		for (final Counter c : this.counters.values())
+			merged.put(c.string, new Counter(c.string, c.count + missed, c.error + missed));
+		for (final Counter c : others) {
+			final Counter m = merged.get(c.string);
+
+			if (m != null) {
+				m.count += c.count - missed;
+				m.error += c.error - missed;
+			} else {
+				merged.put(c.string, new Counter(c.string, c.count + ours, c.error + ours));
+			}
+		}
+
+		// keep the most counted
+		final List<Counter> sorted = new ArrayList<Counter>(merged.values());
+		Collections.sort(sorted, SpaceSaving.MOST);
+
+		this.counters.clear();
+		this.order.clear();
+		for (final Counter c : sorted.subList(0, Math.min(this.capacity, sorted.size()))) {
+			this.counters.put(c.string, c);
+			this.order.add(c);
+		}
+
+		this.total += total;
+	}
+
+	/**
+	 * Serialize this summary.
+	 * 
+	 * @return An array of byte containing this summary
+	 * 
+	 * @throws IOException
+	 */
+	public byte[] toBytes() throws IOException {
+		final DataOutputBuffer out = new DataOutputBuffer();
+
+		WritableUtils.writeVLong(out, this.total);
+		out.writeBoolean(this.counters.size() >= this.capacity);
+		WritableUtils.writeVInt(out, this.counters.size());
+		for (final Entry<String, Counter> e : this.counters.entrySet()) {
+			Text.writeString(out, e.getKey());
+			WritableUtils.writeVLong(out, e.getValue().count);
+			WritableUtils.writeVLong(out, e.getValue().error);
+		}
+
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	/**
+	 * Get the most counted strings.
+	 * 
+	 * @param n
+	 *            An int representing the number of strings to get
+	 * 
+	 * @return A {@link List} of {@link CountedString} containing the n most
+	 *         counted strings, most first, and alphabetically among equals
+	 */
+	public List<CountedString> top(final int n) {
+		final List<Counter> sorted = new ArrayList<Counter>(this.counters.values());
+		Collections.sort(sorted, SpaceSaving.MOST);
+
+		final List<CountedString> top = new ArrayList<CountedString>();
+		for (final Counter c : sorted.subList(0, Math.min(n, sorted.size())))
+			top.add(new CountedString(c.string, c.count, c.error));
+
+		return top;
+	}
+
+	/**
+	 * Get the total weight counted.
+	 * 
+	 * @return A long representing the total weight of the strings counted
+	 */
+	public long getTotal() {
+		return this.total;
+	}
+
+	// a string, its count and the most that count may be over
+	private static class Counter {
+		final String string;
+		long count;
+		long error;
+
+		public Counter(final String string, final long count, final long error) {
+			this.string = string;
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
@@ -8,7 +8,7 @@ import java.io.IOException;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "stderr", type = "string")
+@AggregatorSpec(name = "stderr", type = "string", passThrough = true)
 public class StderrAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
@@ -8,7 +8,7 @@ import java.io.IOException;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "stdout", type = "string")
+@AggregatorSpec(name = "stdout", type = "string", passThrough = true)
 public class StdoutAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
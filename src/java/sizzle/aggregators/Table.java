@@ -4,9 +4,11 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Reducer.Context;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 /**
  * A container for one or more Sizzle aggregators.
@@ -16,9 +18,11 @@ import sizzle.io.EmitKey;
  */
 public class Table {
 	private final Aggregator[] aggregators;
-	@SuppressWarnings("rawtypes")
-	private Context context;
+	private boolean combining;
+	private boolean binary;
+	private String file;
 	private EmitKey key;
+	private TableMetrics metrics;
 
 	public Table(final Aggregator... aggregators) {
 		this.aggregators = aggregators;
@@ -40,11 +44,64 @@ public class Table {
 		return true;
 	}
 
+	// only a table of one sortable aggregator has its values sorted
+	public boolean isSortable() {
+		return this.aggregators.length == 1 && this.aggregators[0].isSortable();
+	}
+
+	// the memory its aggregators hold however few values they are given
+	public long getFootprint() {
+		long footprint = 0;
+
+		for (final Aggregator a : this.aggregators)
+			footprint += a.getFootprint();
+
+		return footprint;
+	}
+
+	public void setSorted(final boolean sorted) {
+		for (final Aggregator a : this.aggregators)
+			a.setSorted(sorted && this.isSortable());
+	}
+
+	public void setBuffer(final long buffer) {
+		for (final Aggregator a : this.aggregators)
+			a.setBuffer(buffer);
+	}
+
 	public void setCombining(final boolean combining) {
+		this.combining = combining;
+
 		for (final Aggregator a : this.aggregators)
 			a.setCombining(combining);
 	}
 
+	public void setBinary(final boolean binary) {
+		this.binary = binary;
+
+		for (final Aggregator a : this.aggregators)
+			a.setBinary(binary);
+	}
+
+	public String getFile() {
+		return this.file;
+	}
+
+	// the name of the output this table is written to, if not its own name
+	public void setFile(final String file) {
+		this.file = file;
+	}
+
+	public void setFormat(final String format) {
+		for (final Aggregator a : this.aggregators)
+			a.setFormat(format);
+	}
+
+	public void setOutputs(@SuppressWarnings("rawtypes") final MultipleOutputs outputs, final String path) {
+		for (final Aggregator a : this.aggregators)
+			a.setOutputs(outputs, path);
+	}
+
 	public void start(final EmitKey key) {
 		this.key = key;
 
@@ -52,21 +109,124 @@ public class Table {
 			a.start(key);
 	}
 
-	public void setContext(@SuppressWarnings("rawtypes") final org.apache.hadoop.mapreduce.Reducer.Context context) {
-		this.context = context;
-
+	public void setContext(@SuppressWarnings("rawtypes") final TaskInputOutputContext context) {
 		for (final Aggregator a : this.aggregators)
 			a.setContext(context);
 	}
 
+	// when set, the work done by this table is counted
+	public void setMetrics(final TableMetrics metrics) {
+		this.metrics = metrics;
+
+		for (final Aggregator a : this.aggregators)
+			a.setMetrics(metrics);
+	}
+
 	public void aggregate(final String[] data, final String metadata) throws IOException, InterruptedException, FinishedException {
-		for (int i = 0; i < data.length && i < this.aggregators.length; i++)
-			this.aggregators[i].aggregate(data[i], metadata);
+		final long start = this.metrics == null ? 0 : System.nanoTime();
+		try {
+			for (int i = 0; i < data.length && i < this.aggregators.length; i++)
+				this.aggregators[i].aggregate(data[i], metadata);
+		} finally {
+			if (this.metrics != null)
+				this.metrics.aggregated(System.nanoTime() - start);
+		}
+	}
+
+	public void aggregate(final EmitValue value) throws IOException, InterruptedException, FinishedException {
+		if (this.metrics == null) {
+			this.aggregateValue(value);
+			return;
+		}
+
+		final long start = System.nanoTime();
+		try {
+			this.aggregateValue(value);
+		} finally {
+			this.metrics.aggregated(System.nanoTime() - start);
+		}
+	}
+
+	private void aggregateValue(final EmitValue value) throws IOException, InterruptedException, FinishedException {
+		// another table already finished with this key
+		if (value.isFinished())
+			throw FinishedException.FINISHED;
+
+		if (value.isWeighted()) {
+			this.aggregateWeighted(value);
+			return;
+		}
+
+		final String metadata = value.getMetadata();
+
+		// hand numbers to the primitive overloads, so they are never parsed
+		for (int i = 0; i < value.size() && i < this.aggregators.length; i++)
+			switch (value.getType(i)) {
+			case EmitValue.COUNT:
+				this.aggregators[i].aggregateCount(value.getLong(i));
+				break;
+			case EmitValue.SKETCH:
+				this.aggregators[i].aggregateSketch(value.getBytes(i));
+				break;
+			case EmitValue.INT:
+			case EmitValue.TIME:
+			case EmitValue.FINGERPRINT:
+				this.aggregators[i].aggregate(value.getLong(i), metadata);
+				break;
+			case EmitValue.FLOAT:
+				this.aggregators[i].aggregate(value.getDouble(i), metadata);
+				break;
+			default:
+				this.aggregators[i].aggregate(value.getString(i), metadata);
+				break;
+			}
+	}
+
+	// as above, with the weight as a number too
+	private void aggregateWeighted(final EmitValue value) throws IOException, InterruptedException, FinishedException {
+		final long weight = value.getWeight();
+
+		for (int i = 0; i < value.size() && i < this.aggregators.length; i++)
+			switch (value.getType(i)) {
+			case EmitValue.INT:
+			case EmitValue.TIME:
+			case EmitValue.FINGERPRINT:
+				this.aggregators[i].aggregateWeighted(value.getLong(i), weight);
+				break;
+			case EmitValue.FLOAT:
+				this.aggregators[i].aggregateWeighted(value.getDouble(i), weight);
+				break;
+			default:
+				this.aggregators[i].aggregateWeighted(value.getString(i), weight);
+				break;
+			}
 	}
 
-	@SuppressWarnings("unchecked")
 	public void finish() throws IOException, InterruptedException {
-		if (this.aggregators.length > 1) {
+		if (this.metrics == null) {
+			this.finishValue();
+			return;
+		}
+
+		final long start = System.nanoTime();
+		try {
+			this.finishValue();
+		} finally {
+			this.metrics.finished(System.nanoTime() - start);
+		}
+	}
+
+	private void finishValue() throws IOException, InterruptedException {
+		if (this.aggregators.length > 1 && (this.combining || this.binary)) {
+			// if we're combining or writing binary output, pass the results
+			// on as one value
+			final EmitValue[] results = new EmitValue[this.aggregators.length];
+
+			for (int i = 0; i < this.aggregators.length; i++)
+				results[i] = this.aggregators[i].getResult();
+
+			this.aggregators[0].write(this.key, new EmitValue(results, null));
+		} else if (this.aggregators.length > 1) {
 			final StringBuilder sb = new StringBuilder(this.key + " = { ");
 
 			for (final Aggregator a : this.aggregators)
@@ -74,7 +234,7 @@ public class Table {
 
 			final String out = sb.toString();
 
-			this.context.write(new Text(out.substring(0, out.length() - 2) + " }"), NullWritable.get());
+			this.aggregators[0].write(new Text(out.substring(0, out.length() - 2) + " }"), NullWritable.get());
 		} else {
 			this.aggregators[0].finish();
 		}
@@ -0,0 +1,81 @@
+package sizzle.aggregators;
+
+/**
+ * Counts of the work done on behalf of a single Sizzle table in a task: the
+ * values emitted to it and their estimated size, the values it aggregated and
+ * the results it wrote, and the time it spent aggregating and finishing.
+ * 
+ * @author anthonyu
+ * 
+ */
+public class TableMetrics {
+	private long emits;
+	private long bytes;
+	private long in;
+	private long out;
+	private long aggregateNanos;
+	private long finishNanos;
+
+	/**
+	 * Count a value emitted to the table.
+	 * 
+	 * @param size
+	 *            The estimated size of the value, in bytes
+	 */
+	public void emitted(final long size) {
+		this.emits++;
+		this.bytes += size;
+	}
+
+	/**
+	 * Count a value aggregated by the table.
+	 * 
+	 * @param nanos
+	 *            The time taken to aggregate it, in nanoseconds
+	 */
+	public void aggregated(final long nanos) {
+		this.in++;
+		this.aggregateNanos += nanos;
+	}
+
+	/**
+	 * Count the time taken to finish the table for a key.
+	 * 
+	 * @param nanos
+	 *            The time taken, in nanoseconds
+	 */
+	public void finished(final long nanos) {
+		this.finishNanos += nanos;
+	}
+
+	/**
+	 * Count a result written by the table.
+	 */
+	public void written() {
+		this.out++;
+	}
+
+	public long getEmits() {
+		return this.emits;
+	}
+
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	public long getIn() {
+		return this.in;
+	}
+
+	public long getOut() {
+		return this.out;
+	}
+
+	public long getAggregateNanos() {
+		return this.aggregateNanos;
+	}
+
+	public long getFinishNanos() {
+		return this.finishNanos;
+	}
+}
@@ -14,7 +14,7 @@ import sizzle.io.EmitValue;
  * @author anthonyu
  * 
  */
-@AggregatorSpec(name = "text")
+@AggregatorSpec(name = "text", passThrough = true)
 public class TextAggregator extends Aggregator {
 	/** {@inheritDoc} */
 	@Override
@@ -25,14 +25,15 @@ public class TextAggregator extends Aggregator {
 
 	/** {@inheritDoc} */
 	@Override
-	@SuppressWarnings("unchecked")
 	protected void collect(final String data, final String metadata) throws IOException, InterruptedException {
-		if (this.isCombining())
-			this.getContext().write(this.getKey(), new EmitValue(data, metadata));
+		if (this.isCombining() || this.isBinary())
+			this.write(this.getKey(), new EmitValue(data, metadata));
+		else if (this.getFormat() != null)
+			this.write(this.format(data, metadata), NullWritable.get());
 		else if (metadata != null)
-			this.getContext().write(new Text(data + " weight " + metadata), NullWritable.get());
+			this.write(new Text(data + " weight " + metadata), NullWritable.get());
 		else
-			this.getContext().write(new Text(data), NullWritable.get());
+			this.write(new Text(data), NullWritable.get());
 	}
 
 	/** {@inheritDoc} */
@@ -1,25 +1,33 @@
 package sizzle.aggregators;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.Map.Entry;
 
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 /**
  * A Sizzle aggregator to estimate the top <i>n</i> values in a dataset by
  * cardinality.
  * 
+ * The values are counted in a {@link SpaceSaving} summary of
+ * <code>sizzle.runtime.top.capacity</code> (100 by default) times <i>n</i>
+ * values, so that the memory it takes is bounded however many distinct values
+ * there are, and combiners pass the summary on instead of every value. Each
+ * result is given with the most its count may be over, which is 0 whenever
+ * there are no more distinct values than the summary can count.
+ * 
  * @author anthonyu
  * 
  */
 @AggregatorSpec(name = "top", formalParameters = { "int" }, weightType = "int")
 public class TopAggregator extends Aggregator {
-	private CountingSet<String> set;
-	private final CountedString[] list;
-	private final int last;
+	/**
+	 * The number of values counted for each one asked for when
+	 * <code>sizzle.runtime.top.capacity</code> is not set.
+	 */
+	public static final int DEFAULT_CAPACITY = 100;
+
+	private SpaceSaving summary;
 
 	/**
 	 * Construct a TopAggregator.
@@ -29,11 +37,6 @@ public class TopAggregator extends Aggregator {
 	 */
 	public TopAggregator(final long n) {
 		super(n);
-
-		// an array of weighted string of length n
-		this.list = new CountedString[(int) n];
-		// the index of the last entry in the list
-		this.last = (int) (this.getArg() - 1);
 	}
 
 	/** {@inheritDoc} */
@@ -41,56 +44,37 @@ public class TopAggregator extends Aggregator {
 	public void start(final EmitKey key) {
 		super.start(key);
 
-		this.set = new CountingSet<String>();
+		int capacity = TopAggregator.DEFAULT_CAPACITY;
+		if (this.getContext() != null)
+			capacity = this.getContext().getConfiguration().getInt("sizzle.runtime.top.capacity", TopAggregator.DEFAULT_CAPACITY);
 
-		// clear out the list
-		for (int i = 0; i < this.getArg(); i++)
-			this.list[i] = new CountedString("", Long.MIN_VALUE);
+		this.summary = new SpaceSaving((int) Math.min(Integer.MAX_VALUE, capacity * this.getArg()));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(final String data, final String metadata) {
 		if (metadata == null)
-			this.set.add(data, 1);
+			this.summary.add(data, 1);
 		else
-			this.set.add(data, Double.valueOf(metadata).longValue());
+			this.summary.add(data, Double.valueOf(metadata).longValue());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateSketch(final byte[] sketch) throws IOException {
+		this.summary.merge(sketch);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void finish() throws IOException, InterruptedException {
 		if (this.isCombining()) {
-			for (final Entry<String, Long> e : this.set.getEntries())
-				this.collect(e.getKey().toString(), e.getValue().toString());
+			// pass on the summary, not the values in it
+			this.write(this.getKey(), EmitValue.sketch(this.summary.toBytes()));
 		} else {
-			// TODO: replace this with the algorithm described in M. Charikar,
-			// K. Chen, and M. Farach-Colton, Finding frequent items in data
-			// streams, Proc 29th Intl. Colloq. on Automata, Languages and
-			// Programming, 2002.
-
-			for (final Entry<String, Long> e : this.set.getEntries()) {
-				if (e.getValue() > this.list[this.last].getCount() || e.getValue() == this.list[this.last].getCount()
-						&& this.list[this.last].getString().compareTo(e.getKey()) > 0) {
-					// find this new item's position within the list
-					for (int i = 0; i < this.getArg(); i++)
-						if (e.getValue().longValue() > this.list[i].getCount() || e.getValue() == this.list[i].getCount()
-								&& this.list[i].getString().compareTo(e.getKey()) > 0) {
-							// here it is. move all subsequent items down one
-							for (int j = (int) (this.getArg() - 2); j >= i; j--)
-								this.list[j + 1] = this.list[j];
-
-							// insert the item where it belongs
-							this.list[i] = new CountedString(e.getKey(), e.getValue());
-
-							break;
-						}
-				}
-			}
-
-			for (final CountedString c : this.list)
-				if (c.getCount() > Long.MIN_VALUE)
-					this.collect(c.toString());
+			for (final CountedString c : this.summary.top((int) this.getArg()))
+				this.collect(c.toString());
 		}
 	}
 
@@ -116,6 +100,7 @@ public class TopAggregator extends Aggregator {
 class CountedString {
 	private final String string;
 	private final long count;
+	private final long error;
 
 	/**
 	 * Construct a CountedString.
@@ -125,11 +110,15 @@ class CountedString {
 	 * 
 	 * @param weight
 	 *            A long representing the count part of the tuple
+	 * 
+	 * @param error
+	 *            A long representing the most the count may be over
 	 */
-	public CountedString(final String string, final long count) {
+	public CountedString(final String string, final long count, final long error) {
 		super();
 		this.string = string;
 		this.count = count;
+		this.error = error;
 	}
 
 	/**
@@ -150,71 +139,19 @@ class CountedString {
 		return this.count;
 	}
 
-	/** {@inheritDoc} */
-	@Override
-	public String toString() {
-		return this.string + ", " + this.count + ", 0";
-	}
-}
-
-/**
- * A counting set. Like a {@link Set}, but also keeps track of how many times a
- * given member has been added.
- * 
- * @author anthonyu
- * 
- * @param <T>
- *            The type of value that will be inserted into the set
- */
-class CountingSet<T> {
-	private Map<T, Long> map;
-
-	/**
-	 * Construct a CountingSet.
-	 */
-	public CountingSet() {
-		this.map = new HashMap<T, Long>();
-	}
-
-	/**
-	 * Add a value to the set.
-	 * 
-	 * @param t
-	 *            The value to be added
-	 */
-	public void add(final T t) {
-		// add it with cardinality 1
-		this.add(t, 1);
-	}
-
 	/**
-	 * Add a value and its cardinality to the set.
+	 * Get the most the count part of the tuple may be over.
 	 * 
-	 * @param t
-	 *            The value to be added
-	 * @param n
-	 *            The cardinality of the value
+	 * @return A long representing the error of the count part of the tuple
 	 */
-	public void add(final T t, final long n) {
-		// if the map already has this key, add n to the current cardiality and
-		// reinsert
-		if (this.map.containsKey(t))
-			this.map.put(t, Long.valueOf(this.map.get(t).longValue() + n));
-		else
-			this.map.put(t, Long.valueOf(n));
+	public long getError() {
+		return this.error;
 	}
 
-	public void clear() {
-		this.map = new HashMap<T, Long>();
-	}
-
-	/**
-	 * Get the entries in this set.
-	 * 
-	 * @return A {@link Set} of T containing the entries in this set
-	 */
-	public Set<java.util.Map.Entry<T, Long>> getEntries() {
-		return this.map.entrySet();
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return this.string + ", " + this.count + ", " + this.error;
 	}
 }
 
@@ -2,32 +2,44 @@ package sizzle.aggregators;
 
 import java.io.IOException;
 
-
-import org.apache.hadoop.util.bloom.Filter;
-import org.apache.hadoop.util.bloom.Key;
-
 import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
 
 /**
  * A Sizzle aggregator to estimate the size of the set of unique values in a
  * dataset. Roughly equivalent to a count(distinct(*)).
- * 
+ *
+ * The values are counted in a {@link HyperLogLog} summary of about as many
+ * registers as the argument, rounded up to a power of two between 16 and
+ * 65536, so that the memory it takes is bounded however many distinct values
+ * there are, and combiners pass on the summary instead of the values. The
+ * estimate has a standard error of 1.04 over the square root of the number of
+ * registers, or 0.8% for unique(10000).
+ *
+ * The mapper keeps a summary for each key it holds, so it counts the registers
+ * against its combining buffer.
+ *
  * @author anthonyu
- * 
+ *
  */
 @AggregatorSpec(name = "unique", formalParameters = { "int" })
-public class UniqueAggregator extends DistinctAggregator {
-	private long total;
+public class UniqueAggregator extends Aggregator {
+	private final HyperLogLog summary;
 
 	/**
 	 * Construct a UniqueAggregator.
-	 * 
+	 *
 	 * @param arg
 	 *            The size of the internal table used to perform the
 	 *            calculation.
 	 */
 	public UniqueAggregator(long arg) {
 		super(arg);
+
+		// the bits of the hash that pick a register
+		int p = 64 - Long.numberOfLeadingZeros(Math.max(arg, 1) - 1);
+
+		this.summary = new HyperLogLog(Math.min(Math.max(p, 4), 16));
 	}
 
 	/** {@inheritDoc} */
@@ -35,35 +47,48 @@ public class UniqueAggregator extends DistinctAggregator {
 	public void start(EmitKey key) {
 		super.start(key);
 
-		// clear out the internal total
-		this.total = 0;
+		// reuse the registers of the last key
+		this.summary.clear();
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void aggregate(String data, String metadata) throws IOException, InterruptedException {
-		// instantiate a bloom filter input key initialized by the data
-		Key key = new Key(data.getBytes());
+		this.summary.add(data);
+	}
 
-		// if the key is already in the filter, forget about it
-		Filter filter = this.getFilter();
-		if (filter.membershipTest(key))
-			return;
+	/** {@inheritDoc} */
+	@Override
+	public void aggregateSketch(byte[] sketch) throws IOException {
+		this.summary.merge(sketch);
+	}
 
-		// add the key to the bloom filter
-		filter.add(key);
+	/** {@inheritDoc} */
+	@Override
+	public void finish() throws IOException, InterruptedException {
+		if (this.isCombining()) {
+			// pass on the summary, not the values in it
+			this.write(this.getKey(), EmitValue.sketch(this.summary.toBytes()));
+		} else {
+			this.collect(this.summary.estimate());
+		}
+	}
 
-		if (this.isCombining())
-			this.collect(data);
-		else
-			this.total++;
+	/** {@inheritDoc} */
+	@Override
+	public long getFootprint() {
+		return this.summary.size();
 	}
 
 	/** {@inheritDoc} */
 	@Override
-	public void finish() throws IOException, InterruptedException {
-		// if we are reducing, collect the total
-		if (!this.isCombining())
-			this.collect(this.total);
+	public boolean isAssociative() {
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isCommutative() {
+		return true;
 	}
-}
\ No newline at end of file
+}
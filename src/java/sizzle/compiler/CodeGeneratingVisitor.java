@@ -1,16 +1,28 @@
 package sizzle.compiler;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
 
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import sizzle.aggregators.AggregatorSpec;
 import sizzle.parser.syntaxtree.ArrayType;
 import sizzle.parser.syntaxtree.Assignment;
 import sizzle.parser.syntaxtree.Block;
@@ -82,16 +94,21 @@ import sizzle.parser.syntaxtree.WhileStatement;
 import sizzle.parser.visitor.GJDepthFirst;
 import sizzle.types.SizzleArray;
 import sizzle.types.SizzleBytes;
+import sizzle.types.SizzleFingerprint;
 import sizzle.types.SizzleFunction;
 import sizzle.types.SizzleMap;
 import sizzle.types.SizzleString;
 import sizzle.types.SizzleTable;
+import sizzle.types.SizzleTime;
+import sizzle.types.SizzleTuple;
 import sizzle.types.SizzleType;
 
 class TableDescription {
 	private String aggregator;
 	private SizzleType type;
 	private List<String> parameters;
+	private String file;
+	private String format;
 
 	public TableDescription(final String aggregator, final SizzleType type) {
 		this(aggregator, type, null);
@@ -147,20 +164,65 @@ class TableDescription {
 	public void setTypes(final SizzleType type) {
 		this.type = type;
 	}
+
+	/**
+	 * @return the file
+	 */
+	public String getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @param file
+	 *            the file to set
+	 */
+	public void setFile(final String file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the format
+	 */
+	public String getFormat() {
+		return this.format;
+	}
+
+	/**
+	 * @param format
+	 *            the format to set
+	 */
+	public void setFormat(final String format) {
+		this.format = format;
+	}
 }
 
 public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
+	// an input of bytes is copied into an array of its own only if needed
+	private static final String BYTES_INPUT = "this.input(value)";
+	// otherwise intrinsics are handed the record where it lies
+	private static final String BYTES_RANGE = "value.getBytes(), 0, value.getLength()";
+
 	private final TypeCheckingVisitor typechecker;
 	private final NameFindingVisitor namefinder;
 	private final StaticDeclarationCodeGeneratingVisitor staticdeclarator;
 	private final StaticInitializationCodeGeneratingVisitor staticinitializer;
 
 	private final HashMap<String, TableDescription> tables;
+	private final HashMap<String, Integer> ids;
+	private final Set<String> emitted;
+	private final Map<String, String> decoders;
+	private Set<String> selected;
 
 	private final String name;
 	private final StringTemplateGroup stg;
+	private final String compression;
+	private final String output;
 
 	public CodeGeneratingVisitor(final String name, final StringTemplateGroup stg) throws IOException {
+		this(name, stg, null, null);
+	}
+
+	public CodeGeneratingVisitor(final String name, final StringTemplateGroup stg, final String compression, final String output) throws IOException {
 		this.typechecker = new TypeCheckingVisitor();
 		this.namefinder = new NameFindingVisitor();
 		this.staticdeclarator = new StaticDeclarationCodeGeneratingVisitor(this);
@@ -171,8 +233,15 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		this.tables.put("stderr", new TableDescription("stderr", new SizzleString()));
 		this.tables.put("output", new TableDescription("output", new SizzleBytes()));
 
+		this.ids = new HashMap<String, Integer>();
+		this.emitted = new HashSet<String>();
+		this.decoders = new TreeMap<String, String>();
+		this.selected = new HashSet<String>();
+
 		this.name = name;
 		this.stg = stg;
+		this.compression = compression;
+		this.output = output;
 	}
 
 	@Override
@@ -185,13 +254,35 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		final StringTemplate st = this.stg.getInstanceOf("Program");
 
 		st.setAttribute("name", this.name);
+		if (this.compression != null)
+			st.setAttribute("compression", this.compression);
+		if (this.output != null)
+			st.setAttribute("output", this.output);
 		if (argu.get("input").equals(new SizzleString())) {
 			st.setAttribute("inputFormatClass", "org.apache.hadoop.mapreduce.lib.input.TextInputFormat");
 			st.setAttribute("keyClass", "org.apache.hadoop.io.LongWritable");
 			st.setAttribute("valueClass", "org.apache.hadoop.io.Text");
+			st.setAttribute("mapperClass", "sizzle.runtime.SizzleMapper");
 		} else if (argu.get("input").equals(new SizzleBytes())) {
-			throw new RuntimeException("unimplemented");
+			st.setAttribute("inputFormatClass", "org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat");
+			st.setAttribute("keyClass", "org.apache.hadoop.io.Writable");
+			st.setAttribute("valueClass", "org.apache.hadoop.io.BytesWritable");
+			st.setAttribute("mapperClass", "sizzle.runtime.SizzleBytesMapper");
+		} else {
+			throw new TypeException("unsupported input type " + argu.get("input"));
+		}
+
+		// number the tables in order of their names, so keys sort the same
+		// way by id as they would by name
+		final List<String> names = new ArrayList<String>();
+		for (final String table : argu.getTables()) {
+			this.ids.put(table, Integer.valueOf(names.size()));
+			names.add(Character.toString('"') + table + '"');
 		}
+		st.setAttribute("names", names);
+
+		// only the fields that are selected need be decoded
+		this.selected = new SelectorFindingVisitor().find(n);
 
 		st.setAttribute("staticDeclarations", this.staticdeclarator.visit(n, argu));
 		st.setAttribute("staticStatements", this.staticinitializer.visit(n, argu));
@@ -204,7 +295,12 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		}
 		st.setAttribute("statements", statements);
 
-		final List<String> tables = new ArrayList<String>();
+		for (final Entry<String, String> entry : this.decoders.entrySet())
+			st.setAttribute("decoders.{id,decoder}", entry.getKey(), entry.getValue());
+
+		// if every table passes its values through, there is nothing to reduce
+		boolean mapOnly = true;
+
 		for (final Entry<String, TableDescription> entry : this.tables.entrySet()) {
 			final String id = entry.getKey();
 			final TableDescription description = entry.getValue();
@@ -212,13 +308,23 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 			final SizzleType type = description.getType();
 
 			final StringBuilder src = new StringBuilder();
-			for (final Class<?> c : argu.getAggregators(description.getAggregator(), type))
+			for (final Class<?> c : argu.getAggregators(description.getAggregator(), type)) {
 				src.append(", new " + c.getCanonicalName() + "(" + parameters + ")");
 
-			tables.add("this.tables.put(\"" + id + "\", new sizzle.aggregators.Table(" + src.toString().substring(2) + "));");
+				if (!c.getAnnotation(AggregatorSpec.class).passThrough())
+					mapOnly = false;
+			}
+
+			st.setAttribute("tables.{id,table,file,format}", id, "new sizzle.aggregators.Table(" + src.toString().substring(2) + ")", description.getFile(),
+					description.getFormat());
+
+			// the combiner only ever sees the tables that are emitted to
+			if (this.emitted.contains(id))
+				st.setAttribute("combined.{id,table}", id, "new sizzle.aggregators.Table(" + src.toString().substring(2) + ")");
 		}
 
-		st.setAttribute("tables", tables);
+		if (mapOnly)
+			st.setAttribute("mapOnly", Boolean.TRUE);
 
 		return st.toString();
 	}
@@ -273,7 +379,14 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 
 				String src = ((NodeSequence) nodeChoice.choice).elementAt(1).accept(this, argu);
 
-				if (!type.assigns(t)) {
+				if (type instanceof SizzleTuple && ((SizzleTuple) type).getProto() != null && t instanceof SizzleBytes) {
+					final String decoder = this.decoder((SizzleTuple) type);
+
+					if (src.equals(CodeGeneratingVisitor.BYTES_INPUT))
+						src = decoder + ".decode(" + CodeGeneratingVisitor.BYTES_RANGE + ")";
+					else
+						src = decoder + ".decode(" + src + ")";
+				} else if (!type.assigns(t)) {
 					final SizzleFunction f = argu.getCast(t, type);
 
 					if (f.hasName()) {
@@ -372,13 +485,32 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 
 		final SizzleTable t = (SizzleTable) argu.get(id);
 
+		final TableDescription description;
 		if (n.f2.present()) {
 			final String parameter = ((NodeSequence) n.f2.node).nodes.get(1).accept(this, argu);
-			this.tables.put(id, new TableDescription(aggregator, t.getType(), Arrays.asList(parameter)));
+			description = new TableDescription(aggregator, t.getType(), Arrays.asList(parameter));
 		} else {
-			this.tables.put(id, new TableDescription(aggregator, t.getType()));
+			description = new TableDescription(aggregator, t.getType());
+		}
+
+		if (n.f7.present()) {
+			final NodeChoice nodeChoice = (NodeChoice) n.f7.node;
+			switch (nodeChoice.which) {
+			case 0: // file
+				description.setFile(((ExprList) ((NodeSequence) nodeChoice.choice).elementAt(2)).f0.accept(this, argu));
+				break;
+			case 1: // proc
+				throw new RuntimeException("unimplemented");
+			default:
+				throw new RuntimeException("unexpected choice " + nodeChoice.which + " is " + nodeChoice.choice.getClass());
+			}
 		}
 
+		if (n.f8.present())
+			description.setFormat(((ExprList) ((NodeSequence) n.f8.node).elementAt(2)).f0.accept(this, argu));
+
+		this.tables.put(id, description);
+
 		return null;
 	}
 
@@ -458,9 +590,20 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		}
 
 		st.setAttribute("id", Character.toString('"') + n.f1.f0.tokenImage + '"');
+		this.emitted.add(n.f1.f0.tokenImage);
+
+		if (this.ids.containsKey(n.f1.f0.tokenImage))
+			st.setAttribute("ordinal", this.ids.get(n.f1.f0.tokenImage).toString());
 
 		st.setAttribute("expression", n.f4.f0.accept(this, argu));
 
+		// times and fingerprints are longs in Java, so tag them explicitly
+		final TableDescription description = this.tables.get(n.f1.f0.tokenImage);
+		if (description != null && description.getType() instanceof SizzleTime)
+			st.setAttribute("type", "TIME");
+		else if (description != null && description.getType() instanceof SizzleFingerprint)
+			st.setAttribute("type", "FINGERPRINT");
+
 		if (n.f5.present())
 			st.setAttribute("weight", ((NodeSequence) n.f5.node).elementAt(1).accept(this, argu));
 
@@ -712,6 +855,7 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 			final NodeChoice nodeChoice = (NodeChoice) n.f1.nodes.get(0);
 
 			switch (nodeChoice.which) {
+			case 0: // selector
 			case 1: // index
 			case 2: // call
 				argu.setOperand(n.f0);
@@ -728,7 +872,24 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 
 	@Override
 	public String visit(final Selector n, final SymbolTable argu) {
-		throw new RuntimeException("unimplemented");
+		final SizzleType t;
+		try {
+			t = this.typechecker.visit(argu.getOperand(), argu.cloneNonLocals());
+		} catch (final IOException e) {
+			throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
+		}
+
+		if (!(t instanceof SizzleTuple))
+			throw new TypeException("invalid operand type " + t + " for selector");
+
+		final String member = n.f1.f0.tokenImage;
+
+		// the decoder only fills in scalar fields
+		if (((SizzleTuple) t).getProto() != null)
+			CodeGeneratingVisitor.checkSelectable(CodeGeneratingVisitor.descriptor(((SizzleTuple) t).getProto()), member);
+
+		return "((" + CodeGeneratingVisitor.box(((SizzleTuple) t).getMember(member).toJavaType()) + ") " + argu.getOperand().accept(this, argu) + "["
+				+ ((SizzleTuple) t).getIndex(member) + "])";
 	}
 
 	@Override
@@ -762,12 +923,15 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		final SizzleFunction f = argu.getFunction(this.namefinder.visit(argu.getOperand()).toArray()[0].toString(), this.typechecker.check(n, argu));
 
 		if (f.hasMacro()) {
-			st.setAttribute("call", CodeGeneratingVisitor.expand(f.getMacro(), ((ExprList) n.f1.node).accept(this, argu).split(",")));
+			final String call = CodeGeneratingVisitor.expand(f.getMacro(), ((ExprList) n.f1.node).accept(this, argu).split(","));
+
+			// the length of the input is known without copying it
+			st.setAttribute("call", call.replace(CodeGeneratingVisitor.BYTES_INPUT + ".length", "value.getLength()"));
 		} else if (f.hasName()) {
 			st.setAttribute("operand", f.getName());
 
 			if (n.f1.present())
-				st.setAttribute("parameters", n.f1.node.accept(this, argu));
+				st.setAttribute("parameters", this.range(f.getName(), (ExprList) n.f1.node, argu));
 		}
 
 		return st.toString();
@@ -861,6 +1025,9 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		// TODO: support protobufs/sequence files/avro here
 		final String id = n.f0.tokenImage;
 
+		if (id.equals("input") && argu.get("input").equals(new SizzleBytes()))
+			return CodeGeneratingVisitor.BYTES_INPUT;
+
 		if (argu.hasType(id))
 			return argu.getType(id).toString();
 
@@ -907,6 +1074,138 @@ public class CodeGeneratingVisitor extends GJDepthFirst<String, SymbolTable> {
 		throw new RuntimeException("unimplemented");
 	}
 
+	// hand the input to a function as its backing array, offset and length,
+	// if the function has an overload that takes them instead of an array
+	private String range(final String name, final ExprList n, final SymbolTable argu) {
+		final List<String> expressions = new ArrayList<String>();
+		expressions.add(n.f0.accept(this, argu));
+		if (n.f1.present())
+			for (final Node node : n.f1.nodes)
+				expressions.add(((NodeSequence) node).elementAt(1).accept(this, argu));
+
+		final int index = expressions.indexOf(CodeGeneratingVisitor.BYTES_INPUT);
+		if (index < 0)
+			return CodeGeneratingVisitor.join(expressions);
+
+		final Class<?>[] types = new Class<?>[expressions.size() + 2];
+		types[index] = byte[].class;
+		types[index + 1] = int.class;
+		types[index + 2] = int.class;
+
+		try {
+			if (name.startsWith("new ")) {
+				for (final Constructor<?> c : Class.forName(name.substring(4)).getConstructors())
+					if (CodeGeneratingVisitor.matches(c.getParameterTypes(), types))
+						return CodeGeneratingVisitor.join(expressions, index);
+			} else {
+				final String method = name.substring(name.lastIndexOf('.') + 1);
+
+				for (final Method m : Class.forName(name.substring(0, name.lastIndexOf('.'))).getMethods())
+					if (m.getName().equals(method) && CodeGeneratingVisitor.matches(m.getParameterTypes(), types))
+						return CodeGeneratingVisitor.join(expressions, index);
+			}
+		} catch (final ClassNotFoundException e) {
+			// not a function we can look into, so copy the input
+		}
+
+		return CodeGeneratingVisitor.join(expressions);
+	}
+
+	// the name of the decoder for a message, decoding only the selected fields
+	private String decoder(final SizzleTuple tuple) {
+		final String id = "___" + tuple.getProto().replace('.', '_');
+
+		if (!this.decoders.containsKey(id)) {
+			final List<String> members = new ArrayList<String>();
+			final List<String> indices = new ArrayList<String>();
+
+			for (final String member : new TreeSet<String>(this.selected))
+				if (tuple.hasMember(member)) {
+					members.add('"' + member + '"');
+					indices.add(Integer.toString(tuple.getIndex(member)));
+				}
+
+			this.decoders.put(id, "new sizzle.io.ProtoDecoder(" + tuple.getProto() + ".getDescriptor(), " + tuple.getTypes().size() + ", new String[] { "
+					+ CodeGeneratingVisitor.join(members) + " }, new int[] { " + CodeGeneratingVisitor.join(indices) + " })");
+		}
+
+		return id;
+	}
+
+	// the descriptor of a message, given the canonical name of its class
+	private static Descriptor descriptor(final String proto) {
+		String name = proto;
+
+		while (true)
+			try {
+				return (Descriptor) Class.forName(name).getMethod("getDescriptor").invoke(null);
+			} catch (final ClassNotFoundException e) {
+				// it may be nested
+				final int dot = name.lastIndexOf('.');
+				if (dot == -1)
+					throw new TypeException("no such proto " + proto, e);
+
+				name = name.substring(0, dot) + '$' + name.substring(dot + 1);
+			} catch (final NoSuchMethodException e) {
+				throw new TypeException("no descriptor for proto " + proto, e);
+			} catch (final IllegalAccessException e) {
+				throw new TypeException("no descriptor for proto " + proto, e);
+			} catch (final InvocationTargetException e) {
+				throw new TypeException("no descriptor for proto " + proto, e);
+			}
+	}
+
+	// only the scalar fields of a message have a Sizzle type the decoder can
+	// fill in
+	static void checkSelectable(final Descriptor descriptor, final String member) {
+		final FieldDescriptor field = descriptor.findFieldByName(member);
+
+		if (field == null)
+			throw new TypeException("no field " + member + " in " + descriptor.getFullName());
+
+		if (field.isRepeated())
+			throw new TypeException("unsupported selector " + member + ": repeated fields of " + descriptor.getFullName() + " are not decoded");
+
+		if (field.getType() == FieldDescriptor.Type.MESSAGE || field.getType() == FieldDescriptor.Type.GROUP)
+			throw new TypeException("unsupported selector " + member + ": nested messages of " + descriptor.getFullName() + " are not decoded");
+	}
+
+	private static String box(final String type) {
+		if (type.equals("long"))
+			return "Long";
+		if (type.equals("double"))
+			return "Double";
+		if (type.equals("boolean"))
+			return "Boolean";
+
+		return type;
+	}
+
+	private static String join(final List<String> expressions, final int index) {
+		expressions.set(index, CodeGeneratingVisitor.BYTES_RANGE);
+
+		return CodeGeneratingVisitor.join(expressions);
+	}
+
+	private static String join(final List<String> expressions) {
+		final StringBuilder parameters = new StringBuilder();
+		for (final String expression : expressions)
+			parameters.append(", " + expression);
+
+		return parameters.length() == 0 ? "" : parameters.substring(2);
+	}
+
+	private static boolean matches(final Class<?>[] actual, final Class<?>[] expected) {
+		if (actual.length != expected.length)
+			return false;
+
+		for (int i = 0; i < actual.length; i++)
+			if (expected[i] != null && actual[i] != expected[i])
+				return false;
+
+		return true;
+	}
+
 	private static String expand(final String template, final String... parameters) {
 		String replaced = template;
 
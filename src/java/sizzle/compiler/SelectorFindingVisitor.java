@@ -0,0 +1,45 @@
+package sizzle.compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import sizzle.parser.syntaxtree.Node;
+import sizzle.parser.syntaxtree.Selector;
+import sizzle.parser.visitor.DepthFirstVisitor;
+
+/**
+ * Finds the names of all of the members a program selects from its tuples, so
+ * that only those fields of its protocol buffer input need be decoded.
+ *
+ * @author anthonyu
+ *
+ */
+public class SelectorFindingVisitor extends DepthFirstVisitor {
+	private final Set<String> selected;
+
+	public SelectorFindingVisitor() {
+		this.selected = new HashSet<String>();
+	}
+
+	/**
+	 * Find the members selected anywhere under a node.
+	 *
+	 * @param n
+	 *            The {@link Node} to search
+	 *
+	 * @return A {@link Set} of {@link String} containing the names of the
+	 *         selected members
+	 */
+	public Set<String> find(final Node n) {
+		this.selected.clear();
+
+		n.accept(this);
+
+		return new HashSet<String>(this.selected);
+	}
+
+	@Override
+	public void visit(final Selector n) {
+		this.selected.add(n.f1.f0.tokenImage);
+	}
+}
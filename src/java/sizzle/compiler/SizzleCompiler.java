@@ -11,10 +11,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -24,6 +27,7 @@ import java.util.zip.ZipEntry;
 import javax.tools.JavaCompiler;
 import javax.tools.ToolProvider;
 
+import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.HelpFormatter;
@@ -35,10 +39,15 @@ import org.scannotation.ClasspathUrlFinder;
 import sizzle.parser.ParseException;
 import sizzle.parser.SizzleParser;
 import sizzle.parser.syntaxtree.Start;
+import sizzle.types.SizzleBytes;
+import sizzle.types.SizzleString;
 
 public class SizzleCompiler {
 	private static Logger LOG = Logger.getLogger(SizzleCompiler.class);
 
+	// whether the static parser has been constructed
+	private static boolean parser;
+
 	private static final List<String> find(final File f) {
 		final List<String> l = new ArrayList<String>();
 
@@ -73,9 +82,12 @@ public class SizzleCompiler {
 		final Options options = new Options();
 		options.addOption("h", "hadoop-base", true, "base directory for Hadoop installation");
 		options.addOption("l", "libs", true, "extra jars to be compiled into the jar");
-		options.addOption("i", "in", true, "file to be compiled");
+		options.addOption("i", "in", true, "file to be compiled; given more than once, the programs are also fused into a single job");
 		options.addOption("o", "out", true, "the name of the resulting jar");
-		options.addOption("n", "name", true, "the name of the job");
+		options.addOption("n", "name", true, "the name of the job fusing several programs");
+		options.addOption("c", "compression", true, "the map output compression: none, default, gzip, bzip2 or snappy");
+		options.addOption("f", "output-format", true, "the format of the results: text or sequence");
+		options.addOption("t", "input-type", true, "the type of the input: string, for lines of text, or bytes, for the values of a sequence file");
 
 		CommandLine cl;
 		try {
@@ -107,10 +119,11 @@ public class SizzleCompiler {
 		// find the location of the Sizzle distribution
 		final String root = new File(path.substring(path.indexOf(':') + 1, path.indexOf('!'))).getParentFile().getParent();
 
-		// get the filename of the sizzle program we will be compiling
-		File in;
+		// get the filenames of the sizzle programs we will be compiling
+		final List<File> ins = new ArrayList<File>();
 		if (cl.hasOption('i'))
-			in = new File(cl.getOptionValue('i'));
+			for (final String i : cl.getOptionValues('i'))
+				ins.add(new File(i));
 		else {
 			System.err.println("missing required option `in'");
 
@@ -119,21 +132,13 @@ public class SizzleCompiler {
 
 			return;
 		}
-		
-		final String filename = in.getName();
-
-		final String name = filename.substring(0, filename.lastIndexOf('.'));
 
 		// get the filename of the jar we will be writing
 		String out;
 		if (cl.hasOption('o'))
 			out = cl.getOptionValue('o');
 		else
-			out = filename.substring(0, filename.indexOf('.')) + ".jar";
-
-		// check filename for sanity
-		if (!(filename.endsWith(".sizzle") || filename.endsWith(".szl")))
-			throw new RuntimeException("unsupported extension for " + in.getAbsolutePath());
+			out = ins.get(0).getName().substring(0, ins.get(0).getName().indexOf('.')) + ".jar";
 
 		// make the output directory
 		final File dir = new File(new File(System.getProperty("java.io.tmpdir")), UUID.randomUUID().toString());
@@ -146,48 +151,33 @@ public class SizzleCompiler {
 			for (final String lib : cl.getOptionValues('l'))
 				libs.add(new File(lib).toURI().toURL());
 
-		final BufferedOutputStream o = new BufferedOutputStream(new FileOutputStream(dirfile.toString() + File.separatorChar + name + ".java"));
+		final StringTemplateGroup superStg;
+		final BufferedReader t = new BufferedReader(new InputStreamReader(CodeGeneratingVisitor.class.getClassLoader().getResource("SizzleJava.stg").openStream()));
 		try {
-			final TypeCheckingVisitor typeChecker = new TypeCheckingVisitor();
-
-			final StringTemplateGroup superStg;
-			final BufferedReader t = new BufferedReader(new InputStreamReader(CodeGeneratingVisitor.class.getClassLoader().getResource("SizzleJava.stg").openStream()));
-			try {
-				superStg = new StringTemplateGroup(t);
-			} finally {
-				t.close();
-			}
-			
-			final StringTemplateGroup stg;
-			final BufferedReader s = new BufferedReader(new InputStreamReader(CodeGeneratingVisitor.class.getClassLoader().getResource("SizzleJavaHadoop.stg").openStream()));
-			try {
-				stg = new StringTemplateGroup(s);
-				stg.setSuperGroup(superStg);
-			} finally {
-				s.close();
-			}
-
-			final CodeGeneratingVisitor codeGenerator = new CodeGeneratingVisitor(name, stg);
+			superStg = new StringTemplateGroup(t);
+		} finally {
+			t.close();
+		}
 
-			final SymbolTable st = new SymbolTable(libs);
+		final StringTemplateGroup stg;
+		final BufferedReader s = new BufferedReader(new InputStreamReader(CodeGeneratingVisitor.class.getClassLoader().getResource("SizzleJavaHadoop.stg").openStream()));
+		try {
+			stg = new StringTemplateGroup(s);
+			stg.setSuperGroup(superStg);
+		} finally {
+			s.close();
+		}
 
-			final BufferedReader r = new BufferedReader(new FileReader(in));
-			
+		// write out the source of each program, and of the job fusing them
+		final String type = cl.hasOption('t') ? cl.getOptionValue('t') : "string";
+		final String name = cl.hasOption('n') ? cl.getOptionValue('n') : "Fused";
+		for (final Map.Entry<String, String> e : SizzleCompiler.generate(ins, stg, libs, type, cl.getOptionValue('c'), cl.getOptionValue('f'), name).entrySet()) {
+			final BufferedOutputStream o = new BufferedOutputStream(new FileOutputStream(dirfile.toString() + File.separatorChar + e.getKey() + ".java"));
 			try {
-				new SizzleParser(r);
-
-				final Start start = SizzleParser.Start();
-
-				typeChecker.visit(start, st);
-
-				final String src = codeGenerator.visit(start, st);
-
-				o.write(src.getBytes());
+				o.write(e.getValue().getBytes());
 			} finally {
-				r.close();
+				o.close();
 			}
-		} finally {
-			o.close();
 		}
 
 		final String runtime = root + "/dist/sizzle-runtime.jar";
@@ -203,7 +193,7 @@ public class SizzleCompiler {
 		for (final String f1 : SizzleCompiler.find(dir)) {
 			SizzleCompiler.LOG.info("compiling " + f1);
 			if (f1.toString().endsWith(".java"))
-				if (compiler.run(null, null, null, "-cp", classPath.toString(), f1.toString()) != 0)
+				if (compiler.run(null, null, null, "-cp", classPath.toString(), "-sourcepath", dir.toString(), f1.toString()) != 0)
 					throw new RuntimeException("compile failed");
 		}
 
@@ -246,4 +236,124 @@ public class SizzleCompiler {
 
 		SizzleCompiler.delete(dir);
 	}
+
+	/**
+	 * Generate the Java source of each of a number of Sizzle programs, and,
+	 * if there is more than one, of a job running them all over the same
+	 * input.
+	 * 
+	 * @param ins
+	 *            A {@link List} of {@link File} containing the programs
+	 * 
+	 * @param stg
+	 *            The {@link StringTemplateGroup} the source is generated from
+	 * 
+	 * @param libs
+	 *            A {@link List} of {@link URL} containing extra libraries the
+	 *            programs may call
+	 * 
+	 * @param type
+	 *            A {@link String} naming the type of the input: string or
+	 *            bytes
+	 * 
+	 * @param compression
+	 *            A {@link String} naming the map output compression, or null
+	 * 
+	 * @param output
+	 *            A {@link String} naming the format of the results, or null
+	 * 
+	 * @param fused
+	 *            A {@link String} containing the name of the fused job
+	 * 
+	 * @return A {@link Map} of the name of each class in the sizzle package to
+	 *         its source, in the order the programs were given
+	 * 
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	static Map<String, String> generate(final List<File> ins, final StringTemplateGroup stg, final List<URL> libs, final String type, final String compression,
+			final String output, final String fused) throws IOException, ParseException {
+		final Map<String, String> sources = new LinkedHashMap<String, String>();
+
+		final List<String> names = new ArrayList<String>();
+		for (final File in : ins) {
+			final String filename = in.getName();
+
+			// check filename for sanity
+			if (!(filename.endsWith(".sizzle") || filename.endsWith(".szl")))
+				throw new RuntimeException("unsupported extension for " + in.getAbsolutePath());
+
+			final String name = filename.substring(0, filename.lastIndexOf('.'));
+
+			// the programs of a fused job are told apart by name
+			if (names.contains(name))
+				throw new RuntimeException("more than one program named " + name);
+			names.add(name);
+
+			final TypeCheckingVisitor typeChecker = new TypeCheckingVisitor();
+
+			final CodeGeneratingVisitor codeGenerator = new CodeGeneratingVisitor(name, stg, compression, output);
+
+			final SymbolTable st;
+			if (type.equals("string"))
+				st = new SymbolTable(libs, new SizzleString());
+			else if (type.equals("bytes"))
+				st = new SymbolTable(libs, new SizzleBytes());
+			else
+				throw new RuntimeException("unsupported input type " + type);
+
+			final BufferedReader r = new BufferedReader(new FileReader(in));
+			try {
+				SizzleCompiler.parse(r);
+
+				final Start start = SizzleParser.Start();
+
+				typeChecker.visit(start, st);
+
+				sources.put(name, codeGenerator.visit(start, st));
+			} finally {
+				r.close();
+			}
+		}
+
+		// run several programs over the input in a single job
+		if (names.size() > 1) {
+			if (names.contains(fused))
+				throw new RuntimeException("the fused job cannot be named after the program " + fused);
+
+			final StringTemplate st = stg.getInstanceOf("Fused");
+
+			st.setAttribute("name", fused);
+			st.setAttribute("programs", names);
+			if (type.equals("string"))
+				st.setAttribute("inputFormatClass", "org.apache.hadoop.mapreduce.lib.input.TextInputFormat");
+			else
+				st.setAttribute("inputFormatClass", "org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat");
+			if (compression != null)
+				st.setAttribute("compression", compression);
+			if (output != null)
+				st.setAttribute("output", output);
+
+			sources.put(fused, st.toString());
+		}
+
+		return sources;
+	}
+
+	// the parser is static, and may only be constructed once; after that it
+	// is reinitialized with each program
+	private static void parse(final Reader r) {
+		if (!SizzleCompiler.parser) {
+			SizzleCompiler.parser = true;
+
+			try {
+				new SizzleParser(r);
+				return;
+			} catch (final Error e) {
+				// something else in this JVM constructed it first
+			}
+		}
+
+		SizzleParser.ReInit(r);
+	}
 }
\ No newline at end of file
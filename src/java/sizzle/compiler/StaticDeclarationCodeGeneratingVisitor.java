@@ -104,8 +104,8 @@ public class StaticDeclarationCodeGeneratingVisitor extends GJDepthFirst<String,
 					sb.append(accept);
 				break;
 			case 1: // statement
-				break;
 			case 2: // proto
+				break;
 			default:
 				throw new RuntimeException("unexpected choice " + nodeChoice.which + " is " + nodeChoice.choice.getClass());
 			}
@@ -135,7 +135,9 @@ public class StaticDeclarationCodeGeneratingVisitor extends GJDepthFirst<String,
 
 	@Override
 	public String visit(final StaticVarDecl n, final SymbolTable argu) {
-		return "private static " + this.codegenerator.visit(n.f1, argu);
+		// each instance of the mapper initializes its own, so that they may
+		// run on several threads
+		return "private " + this.codegenerator.visit(n.f1, argu);
 	}
 
 	@Override
@@ -96,8 +96,8 @@ public class StaticInitializationCodeGeneratingVisitor extends GJDepthFirst<Stri
 					sb.append(accept);
 				break;
 			case 1: // statement
-				break;
 			case 2: // proto
+				break;
 			default:
 				throw new RuntimeException("unexpected choice " + nodeChoice.which + " is " + nodeChoice.choice.getClass());
 			}
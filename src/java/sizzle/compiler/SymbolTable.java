@@ -7,6 +7,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -315,6 +316,22 @@ public class SymbolTable {
 			this.locals.put(id, type);
 	}
 
+	public List<String> getTables() {
+		final List<String> tables = new ArrayList<String>();
+
+		for (final Entry<String, SizzleType> entry : this.globals.entrySet())
+			if (entry.getValue() instanceof SizzleTable)
+				tables.add(entry.getKey());
+
+		for (final Entry<String, SizzleType> entry : this.locals.entrySet())
+			if (entry.getValue() instanceof SizzleTable && !tables.contains(entry.getKey()))
+				tables.add(entry.getKey());
+
+		Collections.sort(tables);
+
+		return tables;
+	}
+
 	public boolean contains(final String id) {
 		return this.globals.containsKey(id) || this.locals.containsKey(id);
 	}
@@ -491,7 +508,7 @@ public class SymbolTable {
 				members.add(this.protomap.get(type));
 			}
 
-			this.idmap.put(c.getSimpleName(), new SizzleTuple(members, names));
+			this.idmap.put(c.getSimpleName(), new SizzleTuple(members, names, c.getCanonicalName()));
 			// TODO support protocol buffer casts
 		}
 	}
@@ -65,17 +65,40 @@ public class SizzleCasts {
 	 * @return A long representing the value in <em>bs</em>
 	 */
 	public static long bytesToLong(final byte[] bs, final String encodingFormat) {
+		return SizzleCasts.bytesToLong(bs, 0, bs.length, encodingFormat);
+	}
+
+	/**
+	 * Convert a range of a byte string into a long.
+	 * 
+	 * @param bs
+	 *            An array of bytes containing the bit-level representation of a
+	 *            long integer
+	 * 
+	 * @param offset
+	 *            The offset of the first byte in <em>bs</em>
+	 * 
+	 * @param length
+	 *            The number of bytes in <em>bs</em> to convert
+	 * 
+	 * @param encodingFormat
+	 *            A {@link String} containing the encoding format, as for
+	 *            {@link #bytesToLong(byte[], String)}
+	 * 
+	 * @return A long representing the value in the range of <em>bs</em>
+	 */
+	public static long bytesToLong(final byte[] bs, final int offset, final int length, final String encodingFormat) {
 		long l = 0;
 
 		if (encodingFormat.startsWith("fixed")) {
 			final boolean little = encodingFormat.endsWith("little");
 			long tmp;
-			for (int i = 0; i < bs.length; i++) {
+			for (int i = 0; i < length; i++) {
 				tmp = 0;
 				if (little)
-					tmp = bs[i];
+					tmp = bs[offset + i];
 				else
-					tmp = bs[bs.length - i - 1];
+					tmp = bs[offset + length - i - 1];
 
 				l |= tmp << ((i & 7) << 3);
 			}
@@ -130,11 +153,29 @@ public class SizzleCasts {
 	 * @return A long representing the packed bytes
 	 */
 	public static long bytesToFingerprint(final byte[] bs) {
+		return SizzleCasts.bytesToFingerprint(bs, 0, bs.length);
+	}
+
+	/**
+	 * Pack a range of an array of byte into a fingerprint.
+	 * 
+	 * @param bs
+	 *            The array of byte to be packed
+	 * 
+	 * @param offset
+	 *            The offset of the first byte in <em>bs</em>
+	 * 
+	 * @param length
+	 *            The number of bytes in <em>bs</em> to pack
+	 * 
+	 * @return A long representing the packed bytes
+	 */
+	public static long bytesToFingerprint(final byte[] bs, final int offset, final int length) {
 		long l = 0;
 
-		for (final byte b : bs) {
+		for (int i = offset; i < offset + length; i++) {
 			l <<= 8;
-			l |= b & 0xff;
+			l |= bs[i] & 0xff;
 		}
 
 		return l;
@@ -22,16 +22,20 @@ import java.util.regex.Pattern;
  * 
  */
 public class SizzleSpecialIntrinsics {
-	private static MessageDigest md;
+	// digests are not thread safe, so each thread has its own
+	private static final ThreadLocal<MessageDigest> md = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA");
+			} catch (final NoSuchAlgorithmException e) {
+				throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
+			}
+		}
+	};
 	private static Map<String, String> regexMap;
 
 	static {
-		try {
-			SizzleSpecialIntrinsics.md = MessageDigest.getInstance("SHA");
-		} catch (final NoSuchAlgorithmException e) {
-			throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
-		}
-
 		SizzleSpecialIntrinsics.regexMap = new HashMap<String, String>();
 		SizzleSpecialIntrinsics.regexMap.put("int,16", "(0x)?[A-Fa-f0-9]+h?");
 		SizzleSpecialIntrinsics.regexMap.put("int,10", "[+-]?[0-9]+");
@@ -100,7 +104,7 @@ public class SizzleSpecialIntrinsics {
 	@FunctionSpec(name = "fingerprintof", formalParameters = { "float" })
 	public long fingerprintOf(final double d) {
 		return SizzleSpecialIntrinsics
-				.byteArrayToLong(SizzleSpecialIntrinsics.md.digest(SizzleSpecialIntrinsics.longToByteArray(Double.doubleToRawLongBits(d))));
+				.byteArrayToLong(SizzleSpecialIntrinsics.md.get().digest(SizzleSpecialIntrinsics.longToByteArray(Double.doubleToRawLongBits(d))));
 	}
 
 	/**
@@ -114,7 +118,7 @@ public class SizzleSpecialIntrinsics {
 	 */
 	@FunctionSpec(name = "fingerprintof", formalParameters = { "string" })
 	public long fingerprintOf(final String s) {
-		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.digest(s.getBytes()));
+		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.get().digest(s.getBytes()));
 	}
 
 	/**
@@ -128,7 +132,30 @@ public class SizzleSpecialIntrinsics {
 	 */
 	@FunctionSpec(name = "fingerprintof", formalParameters = { "bytes" })
 	public long fingerprintOf(final byte[] bs) {
-		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.digest(bs));
+		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.get().digest(bs));
+	}
+
+	/**
+	 * Fingerprint a range of an array of byte, as if it were an array of its
+	 * own.
+	 *
+	 * @param bs
+	 *            An array of byte to be fingerprinted
+	 *
+	 * @param offset
+	 *            The offset of the first byte in <em>bs</em>
+	 *
+	 * @param length
+	 *            The number of bytes in <em>bs</em> to fingerprint
+	 *
+	 * @return The fingerprint of the range of bs
+	 */
+	public long fingerprintOf(final byte[] bs, final int offset, final int length) {
+		final MessageDigest digest = SizzleSpecialIntrinsics.md.get();
+
+		digest.update(bs, offset, length);
+
+		return SizzleSpecialIntrinsics.byteArrayToLong(digest.digest());
 	}
 
 	/**
@@ -159,7 +186,7 @@ public class SizzleSpecialIntrinsics {
 	 */
 	@FunctionSpec(name = "fingerprintof", formalParameters = { "fingerprint" })
 	public long fingerprintOf(final long l) {
-		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.digest(SizzleSpecialIntrinsics.longToByteArray(l)));
+		return SizzleSpecialIntrinsics.byteArrayToLong(SizzleSpecialIntrinsics.md.get().digest(SizzleSpecialIntrinsics.longToByteArray(l)));
 	}
 
 	// TODO: implement new()
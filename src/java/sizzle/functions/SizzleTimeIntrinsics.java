@@ -19,30 +19,38 @@ import java.util.TimeZone;
  * 
  */
 public class SizzleTimeIntrinsics {
-	private static Map<Character, SimpleDateFormat> strftimeMap = new HashMap<Character, SimpleDateFormat>();
+	private static Map<Character, String> strftimeMap = new HashMap<Character, String>();
+
+	// date formats are not thread safe, so each thread has its own
+	private static final ThreadLocal<Map<Character, SimpleDateFormat>> strftimeFormats = new ThreadLocal<Map<Character, SimpleDateFormat>>() {
+		@Override
+		protected Map<Character, SimpleDateFormat> initialValue() {
+			return new HashMap<Character, SimpleDateFormat>();
+		}
+	};
 
 	static {
-		SizzleTimeIntrinsics.strftimeMap.put('a', new SimpleDateFormat("E"));
-		SizzleTimeIntrinsics.strftimeMap.put('A', new SimpleDateFormat("EEEE"));
-		SizzleTimeIntrinsics.strftimeMap.put('b', new SimpleDateFormat("MMM"));
-		SizzleTimeIntrinsics.strftimeMap.put('B', new SimpleDateFormat("MMMM"));
-		SizzleTimeIntrinsics.strftimeMap.put('c', new SimpleDateFormat("E MMM d HH:mm:ss yyyy"));
-		SizzleTimeIntrinsics.strftimeMap.put('d', new SimpleDateFormat("dd"));
-		SizzleTimeIntrinsics.strftimeMap.put('H', new SimpleDateFormat("HH"));
-		SizzleTimeIntrinsics.strftimeMap.put('I', new SimpleDateFormat("hh"));
-		SizzleTimeIntrinsics.strftimeMap.put('j', new SimpleDateFormat("DDD"));
-		SizzleTimeIntrinsics.strftimeMap.put('m', new SimpleDateFormat("MM"));
-		SizzleTimeIntrinsics.strftimeMap.put('M', new SimpleDateFormat("mm"));
-		SizzleTimeIntrinsics.strftimeMap.put('p', new SimpleDateFormat("aa"));
-		SizzleTimeIntrinsics.strftimeMap.put('S', new SimpleDateFormat("ss"));
-		SizzleTimeIntrinsics.strftimeMap.put('U', new SimpleDateFormat("ww"));
-		SizzleTimeIntrinsics.strftimeMap.put('w', new SimpleDateFormat("F"));
-		SizzleTimeIntrinsics.strftimeMap.put('W', new SimpleDateFormat("ww"));
-		SizzleTimeIntrinsics.strftimeMap.put('x', new SimpleDateFormat("MM/dd/yy"));
-		SizzleTimeIntrinsics.strftimeMap.put('X', new SimpleDateFormat("HH:mm:ss"));
-		SizzleTimeIntrinsics.strftimeMap.put('y', new SimpleDateFormat("yy"));
-		SizzleTimeIntrinsics.strftimeMap.put('Y', new SimpleDateFormat("yyyy"));
-		SizzleTimeIntrinsics.strftimeMap.put('Z', new SimpleDateFormat("zzz"));
+		SizzleTimeIntrinsics.strftimeMap.put('a', "E");
+		SizzleTimeIntrinsics.strftimeMap.put('A', "EEEE");
+		SizzleTimeIntrinsics.strftimeMap.put('b', "MMM");
+		SizzleTimeIntrinsics.strftimeMap.put('B', "MMMM");
+		SizzleTimeIntrinsics.strftimeMap.put('c', "E MMM d HH:mm:ss yyyy");
+		SizzleTimeIntrinsics.strftimeMap.put('d', "dd");
+		SizzleTimeIntrinsics.strftimeMap.put('H', "HH");
+		SizzleTimeIntrinsics.strftimeMap.put('I', "hh");
+		SizzleTimeIntrinsics.strftimeMap.put('j', "DDD");
+		SizzleTimeIntrinsics.strftimeMap.put('m', "MM");
+		SizzleTimeIntrinsics.strftimeMap.put('M', "mm");
+		SizzleTimeIntrinsics.strftimeMap.put('p', "aa");
+		SizzleTimeIntrinsics.strftimeMap.put('S', "ss");
+		SizzleTimeIntrinsics.strftimeMap.put('U', "ww");
+		SizzleTimeIntrinsics.strftimeMap.put('w', "F");
+		SizzleTimeIntrinsics.strftimeMap.put('W', "ww");
+		SizzleTimeIntrinsics.strftimeMap.put('x', "MM/dd/yy");
+		SizzleTimeIntrinsics.strftimeMap.put('X', "HH:mm:ss");
+		SizzleTimeIntrinsics.strftimeMap.put('y', "yy");
+		SizzleTimeIntrinsics.strftimeMap.put('Y', "yyyy");
+		SizzleTimeIntrinsics.strftimeMap.put('Z', "zzz");
 	}
 
 	private static long addPart(final int part, final long t, final long n, final TimeZone tz) {
@@ -816,6 +824,18 @@ public class SizzleTimeIntrinsics {
 		return System.currentTimeMillis() * 1000;
 	}
 
+	private static SimpleDateFormat getFormat(final Character c) {
+		final Map<Character, SimpleDateFormat> formats = SizzleTimeIntrinsics.strftimeFormats.get();
+
+		SimpleDateFormat format = formats.get(c);
+		if (format == null) {
+			format = new SimpleDateFormat(SizzleTimeIntrinsics.strftimeMap.get(c));
+			formats.put(c, format);
+		}
+
+		return format;
+	}
+
 	private static String formatTime(final String formatstring, final long t, final TimeZone tz) {
 		final Calendar calendar = Calendar.getInstance(tz);
 
@@ -837,7 +857,7 @@ public class SizzleTimeIntrinsics {
 			default:
 				if (inEscape) {
 					if (SizzleTimeIntrinsics.strftimeMap.containsKey(Character.valueOf(c))) {
-						final SimpleDateFormat simpleDateFormat = SizzleTimeIntrinsics.strftimeMap.get(Character.valueOf(c));
+						final SimpleDateFormat simpleDateFormat = SizzleTimeIntrinsics.getFormat(Character.valueOf(c));
 						simpleDateFormat.setTimeZone(tz);
 						sb.append(simpleDateFormat.format(calendar.getTime()));
 					} else {
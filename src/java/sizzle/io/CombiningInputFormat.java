@@ -0,0 +1,114 @@
+package sizzle.io;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * A {@link CombineFileInputFormat} that packs many small files into each
+ * split, preferring files whose blocks are on the same node, then the same
+ * rack, and reads each of them with another {@link InputFormat}.
+ *
+ * The format the files are read with is named by
+ * <code>sizzle.runtime.input.format</code>, and the splits are made up to
+ * <code>sizzle.runtime.input.combine</code> bytes in size.
+ *
+ * @author anthonyu
+ *
+ */
+public class CombiningInputFormat extends CombineFileInputFormat<Object, Object> {
+	/**
+	 * The name of the {@link InputFormat} each file is read with.
+	 */
+	public static final String FORMAT = "sizzle.runtime.input.format";
+
+	/**
+	 * The size, in bytes, of the splits.
+	 */
+	public static final String SIZE = "sizzle.runtime.input.combine";
+
+	/** {@inheritDoc} */
+	@Override
+	public List<InputSplit> getSplits(final JobContext job) throws IOException {
+		this.setMaxSplitSize(job.getConfiguration().getLong(CombiningInputFormat.SIZE, 0));
+
+		return super.getSplits(job);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected boolean isSplitable(final JobContext context, final Path file) {
+		// as the underlying formats decide it
+		return new CompressionCodecFactory(context.getConfiguration()).getCodec(file) == null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public RecordReader<Object, Object> createRecordReader(final InputSplit split, final TaskAttemptContext context) throws IOException {
+		return new CombineFileRecordReader((CombineFileSplit) split, context, FileReader.class);
+	}
+
+	// reads one of the files in a combined split with the underlying format
+	private static class FileReader extends RecordReader<Object, Object> {
+		private final FileSplit split;
+		private final RecordReader<Object, Object> reader;
+
+		@SuppressWarnings("unchecked")
+		public FileReader(final CombineFileSplit split, final TaskAttemptContext context, final Integer index) throws IOException, InterruptedException {
+			final Configuration conf = context.getConfiguration();
+
+			this.split = new FileSplit(split.getPath(index.intValue()), split.getOffset(index.intValue()), split.getLength(index.intValue()),
+					split.getLocations());
+
+			final InputFormat<Object, Object> format = ReflectionUtils.newInstance(conf.getClass(CombiningInputFormat.FORMAT, null, InputFormat.class),
+					conf);
+
+			this.reader = format.createRecordReader(this.split, context);
+		}
+
+		@Override
+		public void initialize(final InputSplit split, final TaskAttemptContext context) throws IOException, InterruptedException {
+			// given the combined split, but this reader only reads its own file
+			this.reader.initialize(this.split, context);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			return this.reader.nextKeyValue();
+		}
+
+		@Override
+		public Object getCurrentKey() throws IOException, InterruptedException {
+			return this.reader.getCurrentKey();
+		}
+
+		@Override
+		public Object getCurrentValue() throws IOException, InterruptedException {
+			return this.reader.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return this.reader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.reader.close();
+		}
+	}
+}
@@ -4,32 +4,52 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
  * A {@link WritableComparable} that contains a low resolution key which is the
  * name of the table this value is being emitted to, and a high resolution key
  * which is an index into that table.
  * 
+ * Tables are identified on the wire by the small integer id the compiler gives
+ * them, in alphabetical order of their names, so keys sort by table name and
+ * then by index whether they are compared as objects or as serialized bytes.
+ * Keys without an id (-1) carry their table name instead.
+ * 
+ * A key may also carry a sort value, which orders the keys of the same table
+ * and index among themselves, so that their values reach the reducer in that
+ * order when the job groups them with a {@link GroupingComparator}. Keys
+ * without one sort first. The sort value is ignored by {@link #hashCode()},
+ * so that keys are partitioned with the rest of their group.
+ * 
  * @author anthonyu
  * 
  */
 public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitKey>, Serializable {
 	private static final long serialVersionUID = -6302400030199718829L;
 
+	static {
+		// sort without deserializing
+		WritableComparator.define(EmitKey.class, new Comparator());
+	}
+
+	private int id;
 	private String index;
 	private String name;
+	private byte[] sort;
 
 	/**
 	 * Construct an EmitKey.
 	 * 
 	 */
 	public EmitKey() {
-		// default constructor for Writable
+		this.id = -1;
 	}
 
 	/**
@@ -57,31 +77,98 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 	 * 
 	 */
 	public EmitKey(final String index, final String name) {
+		this(index, name, -1);
+	}
+
+	/**
+	 * Construct an EmitKey.
+	 * 
+	 * @param name
+	 *            A {@link String} containing the name of the table this was
+	 *            emitted to
+	 * 
+	 * @param id
+	 *            An int containing the id of the table this was emitted to
+	 * 
+	 */
+	public EmitKey(final String name, final int id) {
+		this("[]", name, id);
+	}
+
+	/**
+	 * Construct an EmitKey.
+	 * 
+	 * @param index
+	 *            A {@link String} containing the index into the table this was
+	 *            emitted to
+	 * 
+	 * @param name
+	 *            A {@link String} containing the name of the table this was
+	 *            emitted to
+	 * 
+	 * @param id
+	 *            An int containing the id of the table this was emitted to
+	 * 
+	 */
+	public EmitKey(final String index, final String name, final int id) {
 		if (index.equals(""))
 			throw new RuntimeException();
 
 		this.index = index;
 		this.name = name;
+		this.id = id;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void readFields(final DataInput in) throws IOException {
+		final int tag = WritableUtils.readVInt(in);
+
+		this.id = EmitKey.id(tag);
+		if (this.id < 0)
+			this.name = Text.readString(in);
+		else
+			this.name = null;
 		this.index = Text.readString(in);
-		this.name = Text.readString(in);
+
+		if (tag < -1) {
+			this.sort = new byte[WritableUtils.readVInt(in)];
+			in.readFully(this.sort);
+		} else {
+			this.sort = null;
+		}
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void write(final DataOutput out) throws IOException {
+		// keys with a sort value say so in the sign of their id, so that keys
+		// without one are written as they always were
+		if (this.sort == null)
+			WritableUtils.writeVInt(out, this.id);
+		else
+			WritableUtils.writeVInt(out, -this.id - 3);
+		if (this.id < 0)
+			Text.writeString(out, this.name);
 		Text.writeString(out, this.index);
-		Text.writeString(out, this.name);
+		if (this.sort != null) {
+			WritableUtils.writeVInt(out, this.sort.length);
+			out.write(this.sort);
+		}
+	}
+
+	// the id of the table from the tag a key is written with
+	private static int id(final int tag) {
+		if (tag >= -1)
+			return tag;
+
+		return -tag - 3;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
-		return WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2);
+		return EmitKey.compareBytes(b1, s1, b2, s2, true);
 	}
 
 	/** {@inheritDoc} */
@@ -93,16 +180,129 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 	/** {@inheritDoc} */
 	@Override
 	public int compareTo(final EmitKey that) {
-		// compare the names
-		final int c = this.name.compareTo(that.name);
+		final int c = this.compareGroup(that);
 
-		// if the names are different
 		if (c != 0)
-			// return that difference
 			return c;
-		else
+
+		// then the sort values
+		return EmitKey.compareSorts(this.sort, that.sort);
+	}
+
+	// compare the table and index, ignoring the sort values
+	private int compareGroup(final EmitKey that) {
+		// compare the ids
+		if (this.id != that.id)
+			return this.id < that.id ? -1 : 1;
+
+		// if there are no ids, compare the names
+		if (this.id < 0) {
+			final int c = EmitKey.compareStrings(this.name, that.name);
+
+			// if the names are different
+			if (c != 0)
+				// return that difference
+				return c;
+		}
+
+		// otherwise compare the indices
+		return EmitKey.compareStrings(this.index, that.index);
+	}
+
+	// compare by code point, which is the order of the UTF-8 bytes
+	private static int compareStrings(final String s1, final String s2) {
+		final int l1 = s1.length();
+		final int l2 = s2.length();
+
+		int i = 0;
+		int j = 0;
+		while (i < l1 && j < l2) {
+			final int c1 = s1.codePointAt(i);
+			final int c2 = s2.codePointAt(j);
+
+			if (c1 != c2)
+				return c1 < c2 ? -1 : 1;
+
+			i += Character.charCount(c1);
+			j += Character.charCount(c2);
+		}
+
+		if (i < l1)
+			return 1;
+		if (j < l2)
+			return -1;
+		return 0;
+	}
+
+	private static int compareSorts(final byte[] s1, final byte[] s2) {
+		if (s1 == null)
+			return s2 == null ? 0 : -1;
+		if (s2 == null)
+			return 1;
+
+		return WritableComparator.compareBytes(s1, 0, s1.length, s2, 0, s2.length);
+	}
+
+	// compare two serialized keys in the same order as compareTo, or
+	// ignoring their sort values
+	private static int compareBytes(final byte[] b1, final int s1, final byte[] b2, final int s2, final boolean sort) {
+		try {
+			final int tag1 = WritableComparator.readVInt(b1, s1);
+			final int tag2 = WritableComparator.readVInt(b2, s2);
+			final int id1 = EmitKey.id(tag1);
+			final int id2 = EmitKey.id(tag2);
+
+			if (id1 != id2)
+				return id1 < id2 ? -1 : 1;
+
+			int p1 = s1 + WritableUtils.decodeVIntSize(b1[s1]);
+			int p2 = s2 + WritableUtils.decodeVIntSize(b2[s2]);
+
+			// if there are no ids, compare the names
+			if (id1 < 0) {
+				final int n1 = WritableComparator.readVInt(b1, p1);
+				final int n2 = WritableComparator.readVInt(b2, p2);
+				p1 += WritableUtils.decodeVIntSize(b1[p1]);
+				p2 += WritableUtils.decodeVIntSize(b2[p2]);
+
+				final int c = WritableComparator.compareBytes(b1, p1, n1, b2, p2, n2);
+
+				if (c != 0)
+					return c;
+
+				p1 += n1;
+				p2 += n2;
+			}
+
 			// otherwise compare the indices
-			return this.index.compareTo(that.index);
+			final int n1 = WritableComparator.readVInt(b1, p1);
+			final int n2 = WritableComparator.readVInt(b2, p2);
+			p1 += WritableUtils.decodeVIntSize(b1[p1]);
+			p2 += WritableUtils.decodeVIntSize(b2[p2]);
+
+			final int c = WritableComparator.compareBytes(b1, p1, n1, b2, p2, n2);
+
+			if (c != 0 || !sort)
+				return c;
+
+			// then the sort values
+			if (tag1 >= -1)
+				return tag2 >= -1 ? 0 : -1;
+			if (tag2 >= -1)
+				return 1;
+
+			p1 += n1;
+			p2 += n2;
+
+			final int m1 = WritableComparator.readVInt(b1, p1);
+			final int m2 = WritableComparator.readVInt(b2, p2);
+			p1 += WritableUtils.decodeVIntSize(b1[p1]);
+			p2 += WritableUtils.decodeVIntSize(b2[p2]);
+
+			return WritableComparator.compareBytes(b1, p1, m1, b2, p2, m2);
+		} catch (final IOException e) {
+			throw new IllegalArgumentException(e);
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -111,7 +311,10 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (this.index == null ? 0 : this.index.hashCode());
-		result = prime * result + (this.name == null ? 0 : this.name.hashCode());
+		if (this.id < 0)
+			result = prime * result + (this.name == null ? 0 : this.name.hashCode());
+		else
+			result = prime * result + this.id;
 		return result;
 	}
 
@@ -125,11 +328,17 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 		if (this.getClass() != obj.getClass())
 			return false;
 		final EmitKey other = (EmitKey) obj;
+		if (this.id != other.id)
+			return false;
 		if (this.index == null) {
 			if (other.index != null)
 				return false;
 		} else if (!this.index.equals(other.index))
 			return false;
+		if (!Arrays.equals(this.sort, other.sort))
+			return false;
+		if (this.id >= 0)
+			return true;
 		if (this.name == null) {
 			if (other.name != null)
 				return false;
@@ -159,6 +368,27 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 		this.index = index;
 	}
 
+	/**
+	 * Get the id of the table this key was emitted to.
+	 * 
+	 * @return An int containing the id of the table this key was emitted to,
+	 *         or -1 if it has none
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Set the id of the table this key was emitted to.
+	 * 
+	 * @param id
+	 *            An int containing the id of the table this key was emitted
+	 *            to
+	 */
+	public void setId(final int id) {
+		this.id = id;
+	}
+
 	/**
 	 * Get the name of the table this key was emitted to.
 	 * 
@@ -180,9 +410,133 @@ public class EmitKey implements WritableComparable<EmitKey>, RawComparator<EmitK
 		this.name = name;
 	}
 
+	/**
+	 * Get the sort value of this key.
+	 * 
+	 * @return An array of byte containing the sort value of this key, or null
+	 *         if it has none
+	 */
+	public byte[] getSort() {
+		return this.sort;
+	}
+
+	/**
+	 * Set the sort value of this key.
+	 * 
+	 * @param sort
+	 *            An array of byte containing the sort value of this key, or
+	 *            null to give it none
+	 */
+	public void setSort(final byte[] sort) {
+		this.sort = sort;
+	}
+
+	/**
+	 * Get a copy of this key with the given sort value.
+	 * 
+	 * @param sort
+	 *            An array of byte containing the sort value of the copy, or
+	 *            null to give it none
+	 * 
+	 * @return A new {@link EmitKey} for the same table and index
+	 */
+	public EmitKey sorted(final byte[] sort) {
+		final EmitKey key = new EmitKey(this.index, this.name, this.id);
+
+		key.sort = sort;
+
+		return key;
+	}
+
+	/**
+	 * Encode a Sizzle int as a sort value, so that its bytes sort in the
+	 * order of the number.
+	 * 
+	 * @param tag
+	 *            A byte to sort the value by before the number
+	 * 
+	 * @param l
+	 *            A long containing the number
+	 * 
+	 * @return An array of byte containing the sort value
+	 */
+	public static byte[] sortable(final byte tag, final long l) {
+		// flip the sign bit, so that negative numbers sort first
+		final long bits = l ^ Long.MIN_VALUE;
+
+		final byte[] sort = new byte[9];
+		sort[0] = tag;
+		for (int i = 0; i < 8; i++)
+			sort[i + 1] = (byte) (bits >>> 56 - 8 * i);
+
+		return sort;
+	}
+
+	/**
+	 * Encode a Sizzle float as a sort value, so that its bytes sort in the
+	 * order of the number.
+	 * 
+	 * @param tag
+	 *            A byte to sort the value by before the number
+	 * 
+	 * @param d
+	 *            A double containing the number
+	 * 
+	 * @return An array of byte containing the sort value
+	 */
+	public static byte[] sortable(final byte tag, final double d) {
+		final long bits = Double.doubleToLongBits(d);
+
+		// negative numbers sort backwards as bits, so flip all but their
+		// sign, which sortable(long) flips for everything
+		return EmitKey.sortable(tag, bits < 0 ? bits ^ Long.MAX_VALUE : bits);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
 		return this.name + this.index;
 	}
+
+	/**
+	 * A {@link WritableComparator} that compares serialized {@link EmitKey}s
+	 * in the same order as {@link EmitKey#compareTo(EmitKey)}.
+	 * 
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(EmitKey.class);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
+			return EmitKey.compareBytes(b1, s1, b2, s2, true);
+		}
+	}
+
+	/**
+	 * A {@link WritableComparator} that groups serialized {@link EmitKey}s by
+	 * their table and index alone, so that a reducer is given the values of
+	 * keys that differ only in their sort values together, in sorted order.
+	 * 
+	 */
+	public static class GroupingComparator extends WritableComparator {
+		public GroupingComparator() {
+			super(EmitKey.class);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int compare(final byte[] b1, final int s1, final int l1, final byte[] b2, final int s2, final int l2) {
+			return EmitKey.compareBytes(b1, s1, b2, s2, false);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(final WritableComparable a, final WritableComparable b) {
+			return ((EmitKey) a).compareGroup((EmitKey) b);
+		}
+	}
 }
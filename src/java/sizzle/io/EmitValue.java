@@ -3,21 +3,63 @@ package sizzle.io;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
  * A {@link Writable} that contains a datum and an optional metadatum to be
  * emitted to a Sizzle table.
  * 
+ * Each datum is kept in its native form and tagged with its type, so that
+ * numbers cross the shuffle as varints or raw 8 byte values and reach the
+ * aggregators without being formatted and parsed as strings on the way. An
+ * integral weight is kept the same way, in place of the metadatum.
+ * 
  * @author anthonyu
  * 
  */
 public class EmitValue implements Writable {
-	private String[] data;
+	/** The tag for a missing datum. */
+	public static final byte NULL = 0;
+	/** The tag for a Sizzle int, encoded as a varint. */
+	public static final byte INT = 1;
+	/** The tag for a Sizzle float, encoded as 8 raw bytes. */
+	public static final byte FLOAT = 2;
+	/** The tag for a Sizzle time, encoded as a varint. */
+	public static final byte TIME = 3;
+	/** The tag for a Sizzle fingerprint, encoded as 8 raw bytes. */
+	public static final byte FINGERPRINT = 4;
+	/** The tag for a Sizzle bytes, encoded as a length and the raw bytes. */
+	public static final byte BYTES = 5;
+	/** The tag for a Sizzle string, encoded as a length and UTF-8. */
+	public static final byte STRING = 6;
+	/**
+	 * The tag for the number of values to follow a key in sorted order,
+	 * encoded as a varint.
+	 */
+	public static final byte COUNT = 7;
+	/**
+	 * The tag for the serialized state of an aggregator, to be merged with
+	 * its own, encoded as a length and the raw bytes.
+	 */
+	public static final byte SKETCH = 8;
+
+	private byte[] types;
+	// the ints, times and fingerprints, and the raw bits of the floats
+	private long[] numbers;
+	// the strings and byte arrays
+	private Object[] objects;
 	private String metadata;
+	// the metadatum, when it is an integral weight
+	private boolean weighted;
+	private long weight;
+
+	// the data rendered as strings, on demand
+	private String[] data;
 
 	/**
 	 * Construct an EmitValue.
@@ -35,7 +77,7 @@ public class EmitValue implements Writable {
 	 *            A {@link String} containing the metadata to be emitted
 	 */
 	public EmitValue(final String[] data, final String metadata) {
-		this.data = data;
+		this.setData(data);
 		this.metadata = metadata;
 	}
 
@@ -43,28 +85,53 @@ public class EmitValue implements Writable {
 	 * Construct an EmitValue.
 	 * 
 	 * @param data
-	 *            An array of {@link String} containing the data to be emitted
+	 *            An array of {@link Object} containing the data to be emitted
 	 * @param metadata
 	 *            A {@link String} containing the metadata to be emitted
 	 */
 	public EmitValue(final Object[] data, final String metadata) {
-		final String[] strings = new String[data.length];
+		this.allocate(data.length);
 
 		for (int i = 0; i < data.length; i++)
-			strings[i] = data[i].toString();
+			if (data[i] instanceof Long || data[i] instanceof Integer)
+				this.set(i, EmitValue.INT, ((Number) data[i]).longValue(), null);
+			else if (data[i] instanceof Double)
+				this.set(i, EmitValue.FLOAT, Double.doubleToRawLongBits(((Number) data[i]).doubleValue()), null);
+			else if (data[i] instanceof byte[])
+				this.set(i, EmitValue.BYTES, 0, data[i]);
+			else if (data[i] == null)
+				this.set(i, EmitValue.NULL, 0, null);
+			else
+				this.set(i, EmitValue.STRING, 0, data[i].toString());
 
-		this.data = strings;
 		this.metadata = metadata;
 	}
 
 	/**
-	 * Construct an EmitValue.
+	 * Construct an EmitValue from the first datum of each of several values,
+	 * keeping their types.
 	 * 
-	 * @param data
-	 *            An array of {@link String} containing the data to be emitted
+	 * @param values
+	 *            An array of {@link EmitValue} containing the data to be
+	 *            emitted
 	 * @param metadata
 	 *            A {@link String} containing the metadata to be emitted
 	 */
+	public EmitValue(final EmitValue[] values, final String metadata) {
+		this.allocate(values.length);
+
+		for (int i = 0; i < values.length; i++)
+			this.set(i, values[i].types[0], values[i].numbers[0], values[i].objects[0]);
+
+		this.metadata = metadata;
+	}
+
+	/**
+	 * Construct an EmitValue.
+	 * 
+	 * @param data
+	 *            An array of {@link Object} containing the data to be emitted
+	 */
 	public EmitValue(final Object[] data) {
 		this(data, null);
 	}
@@ -100,7 +167,9 @@ public class EmitValue implements Writable {
 	 *            A long representing the metadata to be emitted
 	 */
 	public EmitValue(final String data, final long metadata) {
-		this(data, Long.toString(metadata));
+		this(data);
+
+		this.withWeight(metadata);
 	}
 
 	/**
@@ -115,6 +184,30 @@ public class EmitValue implements Writable {
 		this(data, Double.toString(metadata));
 	}
 
+	/**
+	 * Construct an EmitValue.
+	 * 
+	 * @param data
+	 *            An array of byte containing the data to be emitted
+	 */
+	public EmitValue(final byte[] data) {
+		this(data, null);
+	}
+
+	/**
+	 * Construct an EmitValue.
+	 * 
+	 * @param data
+	 *            An array of byte containing the data to be emitted
+	 * @param metadata
+	 *            A {@link String} containing the metadata to be emitted
+	 */
+	public EmitValue(final byte[] data, final String metadata) {
+		this.allocate(1);
+		this.set(0, EmitValue.BYTES, 0, data);
+		this.metadata = metadata;
+	}
+
 	/**
 	 * Construct an EmitValue.
 	 * 
@@ -134,7 +227,9 @@ public class EmitValue implements Writable {
 	 *            A {@link String} containing the metadata to be emitted
 	 */
 	public EmitValue(final long data, final String metadata) {
-		this(Long.toString(data), metadata);
+		this.allocate(1);
+		this.set(0, EmitValue.INT, data, null);
+		this.metadata = metadata;
 	}
 
 	/**
@@ -146,7 +241,9 @@ public class EmitValue implements Writable {
 	 *            A long representing the metadata to be emitted
 	 */
 	public EmitValue(final long data, final long metadata) {
-		this(data, Long.toString(metadata));
+		this(data);
+
+		this.withWeight(metadata);
 	}
 
 	/**
@@ -180,7 +277,9 @@ public class EmitValue implements Writable {
 	 *            A {@link String} containing the metadata to be emitted
 	 */
 	public EmitValue(final double data, final String metadata) {
-		this(Double.toString(data), metadata);
+		this.allocate(1);
+		this.set(0, EmitValue.FLOAT, Double.doubleToRawLongBits(data), null);
+		this.metadata = metadata;
 	}
 
 	/**
@@ -192,7 +291,9 @@ public class EmitValue implements Writable {
 	 *            A long representing the metadata to be emitted
 	 */
 	public EmitValue(final double data, final long metadata) {
-		this(data, Long.toString(metadata));
+		this(data);
+
+		this.withWeight(metadata);
 	}
 
 	/**
@@ -207,40 +308,345 @@ public class EmitValue implements Writable {
 		this(data, Double.toString(metadata));
 	}
 
+	private void allocate(final int count) {
+		this.types = new byte[count];
+		this.numbers = new long[count];
+		this.objects = new Object[count];
+		this.data = null;
+	}
+
+	private void set(final int index, final byte type, final long number, final Object object) {
+		this.types[index] = type;
+		this.numbers[index] = number;
+		this.objects[index] = object;
+	}
+
+	/**
+	 * Construct an EmitValue that carries no data, telling the tables it
+	 * reaches that its key is finished, so that they drop the rest of its
+	 * values.
+	 * 
+	 * @return A new EmitValue marking its key as finished
+	 */
+	public static EmitValue finished() {
+		final EmitValue value = new EmitValue();
+
+		value.allocate(0);
+
+		return value;
+	}
+
+	/**
+	 * @return true iff this value marks its key as finished
+	 */
+	public boolean isFinished() {
+		return this.types.length == 0;
+	}
+
+	/**
+	 * Construct an EmitValue that tells a table how many values will follow it
+	 * in sorted order, so that it can aggregate them as they stream past.
+	 * 
+	 * @param count
+	 *            A long representing the number of values to follow
+	 * 
+	 * @return A new EmitValue announcing the values
+	 */
+	public static EmitValue count(final long count) {
+		final EmitValue value = new EmitValue();
+
+		value.allocate(1);
+		value.set(0, EmitValue.COUNT, count, null);
+
+		return value;
+	}
+
+	/**
+	 * Construct an EmitValue that carries the serialized state of an
+	 * aggregator, such as a summary of the values it has seen, to be merged
+	 * by the same aggregator downstream.
+	 * 
+	 * @param sketch
+	 *            An array of byte containing the serialized state
+	 * 
+	 * @return A new EmitValue carrying the state
+	 */
+	public static EmitValue sketch(final byte[] sketch) {
+		final EmitValue value = new EmitValue();
+
+		value.allocate(1);
+		value.set(0, EmitValue.SKETCH, 0, sketch);
+
+		return value;
+	}
+
+	/**
+	 * Retag the integral data in this value, for instance as a Sizzle time or
+	 * fingerprint.
+	 * 
+	 * @param type
+	 *            A byte containing one of {@link #INT}, {@link #TIME} or
+	 *            {@link #FINGERPRINT}
+	 * 
+	 * @return This EmitValue
+	 */
+	public EmitValue withType(final byte type) {
+		if (type != EmitValue.INT && type != EmitValue.TIME && type != EmitValue.FINGERPRINT)
+			throw new IllegalArgumentException("cannot retag as " + type);
+
+		for (int i = 0; i < this.types.length; i++)
+			if (this.types[i] == EmitValue.INT || this.types[i] == EmitValue.TIME || this.types[i] == EmitValue.FINGERPRINT)
+				this.types[i] = type;
+
+		return this;
+	}
+
+	/**
+	 * Weight the data in this value, keeping the weight as a number instead
+	 * of as a metadatum to be parsed.
+	 * 
+	 * @param weight
+	 *            A long representing the weight
+	 * 
+	 * @return This EmitValue
+	 */
+	public EmitValue withWeight(final long weight) {
+		this.metadata = null;
+		this.weighted = true;
+		this.weight = weight;
+
+		return this;
+	}
+
+	/**
+	 * @return true iff the metadatum of this value is an integral weight
+	 */
+	public boolean isWeighted() {
+		return this.weighted;
+	}
+
+	/**
+	 * @return the integral weight of this value
+	 */
+	public long getWeight() {
+		return this.weight;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void readFields(final DataInput in) throws IOException {
-		final int count = in.readInt();
-
-		this.data = new String[count];
-		for (int i = 0; i < count; i++)
-			this.data[i] = Text.readString(in);
-
-		final String metadata = Text.readString(in);
-		if (metadata.equals(""))
-			this.metadata = null;
-		else
-			this.metadata = metadata;
+		final int count = WritableUtils.readVInt(in);
+
+		this.allocate(count);
+		for (int i = 0; i < count; i++) {
+			final byte type = in.readByte();
+
+			switch (type) {
+			case NULL:
+				this.set(i, type, 0, null);
+				break;
+			case INT:
+			case TIME:
+			case COUNT:
+				this.set(i, type, WritableUtils.readVLong(in), null);
+				break;
+			case FLOAT:
+			case FINGERPRINT:
+				this.set(i, type, in.readLong(), null);
+				break;
+			case BYTES:
+			case SKETCH:
+				final byte[] bytes = new byte[WritableUtils.readVInt(in)];
+				in.readFully(bytes);
+				this.set(i, type, 0, bytes);
+				break;
+			case STRING:
+				this.set(i, type, 0, Text.readString(in));
+				break;
+			default:
+				throw new IOException("unknown type tag " + type);
+			}
+		}
+
+		this.metadata = null;
+		this.weighted = false;
+		this.weight = 0;
+
+		// none, a string, or a weight
+		switch (in.readByte()) {
+		case 1:
+			this.metadata = Text.readString(in);
+			break;
+		case 2:
+			this.withWeight(WritableUtils.readVLong(in));
+			break;
+		default:
+			break;
+		}
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void write(final DataOutput out) throws IOException {
-		out.writeInt(this.data.length);
+		WritableUtils.writeVInt(out, this.types.length);
+
+		for (int i = 0; i < this.types.length; i++) {
+			out.writeByte(this.types[i]);
+
+			switch (this.types[i]) {
+			case INT:
+			case TIME:
+			case COUNT:
+				WritableUtils.writeVLong(out, this.numbers[i]);
+				break;
+			case FLOAT:
+			case FINGERPRINT:
+				out.writeLong(this.numbers[i]);
+				break;
+			case BYTES:
+			case SKETCH:
+				final byte[] bytes = (byte[]) this.objects[i];
+				WritableUtils.writeVInt(out, bytes.length);
+				out.write(bytes);
+				break;
+			case STRING:
+				Text.writeString(out, (String) this.objects[i]);
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (this.weighted) {
+			out.writeByte(2);
+			WritableUtils.writeVLong(out, this.weight);
+		} else if (this.metadata != null) {
+			out.writeByte(1);
+			Text.writeString(out, this.metadata);
+		} else {
+			out.writeByte(0);
+		}
+	}
 
-		for (final String d : this.data)
-			Text.writeString(out, d);
+	/**
+	 * @return the number of data in this value
+	 */
+	public int size() {
+		return this.types.length;
+	}
 
-		if (this.metadata == null)
-			Text.writeString(out, "");
-		else
-			Text.writeString(out, this.metadata);
+	/**
+	 * @param index
+	 *            the position of the datum
+	 * 
+	 * @return the type tag of the datum
+	 */
+	public byte getType(final int index) {
+		return this.types[index];
+	}
+
+	/**
+	 * @param index
+	 *            the position of the datum
+	 * 
+	 * @return the datum as a long
+	 */
+	public long getLong(final int index) {
+		switch (this.types[index]) {
+		case INT:
+		case TIME:
+		case FINGERPRINT:
+		case COUNT:
+			return this.numbers[index];
+		case FLOAT:
+			return (long) Double.longBitsToDouble(this.numbers[index]);
+		default:
+			final String s = this.getString(index);
+			if (s.indexOf('.') != -1)
+				return Double.valueOf(s).longValue();
+			return Long.parseLong(s);
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the position of the datum
+	 * 
+	 * @return the datum as a double
+	 */
+	public double getDouble(final int index) {
+		switch (this.types[index]) {
+		case INT:
+		case TIME:
+		case FINGERPRINT:
+		case COUNT:
+			return this.numbers[index];
+		case FLOAT:
+			return Double.longBitsToDouble(this.numbers[index]);
+		default:
+			return Double.parseDouble(this.getString(index));
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the position of the datum
+	 * 
+	 * @return the datum as a {@link String}
+	 */
+	public String getString(final int index) {
+		switch (this.types[index]) {
+		case NULL:
+			return null;
+		case INT:
+		case TIME:
+		case FINGERPRINT:
+		case COUNT:
+			return Long.toString(this.numbers[index]);
+		case FLOAT:
+			return Double.toString(Double.longBitsToDouble(this.numbers[index]));
+		case BYTES:
+		case SKETCH:
+			try {
+				return new String((byte[]) this.objects[index], "UTF-8");
+			} catch (final UnsupportedEncodingException e) {
+				throw new RuntimeException(e.getClass().getName() + " caught", e);
+			}
+		default:
+			return (String) this.objects[index];
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the position of the datum
+	 * 
+	 * @return the datum as an array of byte
+	 */
+	public byte[] getBytes(final int index) {
+		if (this.types[index] == EmitValue.BYTES || this.types[index] == EmitValue.SKETCH)
+			return (byte[]) this.objects[index];
+
+		try {
+			return this.getString(index).getBytes("UTF-8");
+		} catch (final UnsupportedEncodingException e) {
+			throw new RuntimeException(e.getClass().getName() + " caught", e);
+		}
 	}
 
 	/**
 	 * @return the data
 	 */
 	public String[] getData() {
+		if (this.data == null) {
+			final String[] data = new String[this.types.length];
+
+			for (int i = 0; i < data.length; i++)
+				data[i] = this.getString(i);
+
+			this.data = data;
+		}
+
 		return this.data;
 	}
 
@@ -249,13 +655,19 @@ public class EmitValue implements Writable {
 	 *            the data to set
 	 */
 	public void setData(final String[] data) {
-		this.data = data;
+		this.allocate(data.length);
+
+		for (int i = 0; i < data.length; i++)
+			this.set(i, data[i] == null ? EmitValue.NULL : EmitValue.STRING, 0, data[i]);
 	}
 
 	/**
 	 * @return the metadata
 	 */
 	public String getMetadata() {
+		if (this.weighted)
+			return Long.toString(this.weight);
+
 		return this.metadata;
 	}
 
@@ -265,14 +677,17 @@ public class EmitValue implements Writable {
 	 */
 	public void setMetadata(final String metadata) {
 		this.metadata = metadata;
+		this.weighted = false;
 	}
 
+	// equality is on the string forms, so that "10" and 10 are the same value
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(this.data);
-		result = prime * result + (this.metadata == null ? 0 : this.metadata.hashCode());
+		result = prime * result + Arrays.hashCode(this.getData());
+		final String metadata = this.getMetadata();
+		result = prime * result + (metadata == null ? 0 : metadata.hashCode());
 		return result;
 	}
 
@@ -285,12 +700,13 @@ public class EmitValue implements Writable {
 		if (this.getClass() != obj.getClass())
 			return false;
 		final EmitValue other = (EmitValue) obj;
-		if (!Arrays.equals(this.data, other.data))
+		if (!Arrays.equals(this.getData(), other.getData()))
 			return false;
-		if (this.metadata == null) {
-			if (other.metadata != null)
+		final String metadata = this.getMetadata();
+		if (metadata == null) {
+			if (other.getMetadata() != null)
 				return false;
-		} else if (!this.metadata.equals(other.metadata))
+		} else if (!metadata.equals(other.getMetadata()))
 			return false;
 		return true;
 	}
@@ -298,6 +714,6 @@ public class EmitValue implements Writable {
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
-		return Arrays.toString(this.data) + ":" + this.metadata;
+		return Arrays.toString(this.getData()) + ":" + this.getMetadata();
 	}
 }
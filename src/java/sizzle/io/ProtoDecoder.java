@@ -0,0 +1,146 @@
+package sizzle.io;
+
+import java.io.IOException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+/**
+ * Decodes serialized protocol buffer messages into the Object[] a Sizzle tuple
+ * is represented by, decoding only the fields the program uses.
+ *
+ * Every other field is skipped over on the wire without being decoded, and
+ * its member of the tuple is left null.
+ *
+ * @author anthonyu
+ *
+ */
+public class ProtoDecoder {
+	// indexed by field number
+	private final FieldDescriptor[] fields;
+	private final int[] indices;
+
+	// the values of the wanted fields when they are missing
+	private final Object[] defaults;
+
+	/**
+	 * Construct a ProtoDecoder.
+	 *
+	 * @param descriptor
+	 *            The {@link Descriptor} of the message to decode
+	 *
+	 * @param size
+	 *            The number of members in the tuple
+	 *
+	 * @param members
+	 *            An array of {@link String} containing the names of the fields
+	 *            to decode
+	 *
+	 * @param indices
+	 *            An array of int containing the index in the tuple of each of
+	 *            the fields in <em>members</em>
+	 */
+	public ProtoDecoder(final Descriptor descriptor, final int size, final String[] members, final int[] indices) {
+		int max = 0;
+		for (final FieldDescriptor field : descriptor.getFields())
+			max = Math.max(max, field.getNumber());
+
+		this.fields = new FieldDescriptor[max + 1];
+		this.indices = new int[max + 1];
+		this.defaults = new Object[size];
+
+		for (int i = 0; i < members.length; i++) {
+			final FieldDescriptor field = descriptor.findFieldByName(members[i]);
+
+			if (field == null)
+				throw new IllegalArgumentException("no field " + members[i] + " in " + descriptor.getFullName());
+
+			// only scalars have a Sizzle type, and the compiler rejects
+			// selectors of the rest, so these are wanted by another message
+			if (field.getType() == FieldDescriptor.Type.MESSAGE || field.getType() == FieldDescriptor.Type.GROUP || field.isRepeated())
+				continue;
+
+			this.fields[field.getNumber()] = field;
+			this.indices[field.getNumber()] = indices[i];
+			if (field.hasDefaultValue() || !field.isRequired())
+				this.defaults[indices[i]] = ProtoDecoder.convert(field, field.getDefaultValue());
+		}
+	}
+
+	/**
+	 * Decode a message.
+	 *
+	 * @param bs
+	 *            An array of byte containing the serialized message
+	 *
+	 * @return An array of {@link Object} containing the members of the tuple
+	 *
+	 * @throws IOException
+	 */
+	public Object[] decode(final byte[] bs) throws IOException {
+		return this.decode(bs, 0, bs.length);
+	}
+
+	/**
+	 * Decode a message from a range of an array of byte.
+	 *
+	 * @param bs
+	 *            An array of byte containing the serialized message
+	 *
+	 * @param offset
+	 *            The offset of the message in <em>bs</em>
+	 *
+	 * @param length
+	 *            The length of the message
+	 *
+	 * @return An array of {@link Object} containing the members of the tuple
+	 *
+	 * @throws IOException
+	 */
+	public Object[] decode(final byte[] bs, final int offset, final int length) throws IOException {
+		final Object[] tuple = this.defaults.clone();
+
+		final CodedInputStream in = CodedInputStream.newInstance(bs, offset, length);
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			// the low three bits are the wire type
+			final int number = tag >>> 3;
+
+			if (number < this.fields.length && this.fields[number] != null) {
+				final FieldDescriptor field = this.fields[number];
+
+				tuple[this.indices[number]] = ProtoDecoder.convert(field, in.readPrimitiveField(field.getType()));
+			} else if (!in.skipField(tag)) {
+				break;
+			}
+		}
+
+		return tuple;
+	}
+
+	// convert a field to the Java type of its Sizzle type
+	private static Object convert(final FieldDescriptor field, final Object value) {
+		switch (field.getType()) {
+		case UINT32:
+		case FIXED32:
+			return Long.valueOf(((Integer) value).intValue() & 0xffffffffL);
+		case INT32:
+		case SINT32:
+		case SFIXED32:
+			return Long.valueOf(((Integer) value).longValue());
+		case FLOAT:
+			return Double.valueOf(((Float) value).doubleValue());
+		case BYTES:
+			return ((ByteString) value).toByteArray();
+		case ENUM:
+			if (value instanceof EnumValueDescriptor)
+				return Long.valueOf(((EnumValueDescriptor) value).getNumber());
+			return Long.valueOf(((Integer) value).longValue());
+		default:
+			return value;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.log4j.Logger;
+
+import sizzle.aggregators.FinishedException;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+/**
+ * A {@link Mapper} that performs the brunt of all Sizzle work, whatever its
+ * input.
+ *
+ * Values emitted to associative tables are aggregated in place, in a
+ * {@link Table} kept live for each {@link EmitKey}, and only the partial
+ * results are written out. The live tables are flushed whenever their
+ * estimated size passes <code>sizzle.runtime.combining.buffer</code> bytes,
+ * and again at the end of the task. Each live table is charged the memory its
+ * aggregators hold up front, such as a sketch, as well as the values emitted
+ * to it. Set <code>sizzle.runtime.combining</code>
+ * to false to write every emitted value straight through instead.
+ *
+ * When a live table is finished with its key, such as a set that has seen too
+ * many values, a value marking the key as finished is written in its place,
+ * so that the combiners and reducers drop the key too. The mapper remembers
+ * the finished keys across flushes, dropping anything else emitted to them,
+ * until they grow past the size of the buffer.
+ *
+ * When the job has no reduce tasks, because every table in the program passes
+ * its values through, each emitted value is aggregated and written as a final
+ * result by the mapper itself.
+ *
+ * @author anthonyu
+ *
+ * @param <KEYIN>
+ *            The type of the input keys
+ *
+ * @param <VALUEIN>
+ *            The type of the input values
+ */
+public abstract class AbstractSizzleMapper<KEYIN, VALUEIN> extends Mapper<KEYIN, VALUEIN, EmitKey, EmitValue> implements Configurable {
+	protected static final Logger LOG = Logger.getLogger(AbstractSizzleMapper.class);
+
+	/**
+	 * The default estimated size, in bytes, of the live tables before they
+	 * are flushed.
+	 */
+	public static final long DEFAULT_COMBINING_BUFFER = 16 * 1024 * 1024;
+
+	// rough per-object overheads used when estimating the size of the live
+	// tables; these err on the large side so that we flush early, not late
+	private static final int TABLE_OVERHEAD = 128;
+	private static final int STRING_OVERHEAD = 40;
+
+	private Configuration conf;
+	protected Context context;
+	protected boolean robust;
+
+	private boolean combining;
+	private boolean sorted;
+	private long buffer;
+	private long size;
+	// the estimated size of the finished keys
+	private long remembered;
+
+	private boolean mapOnly;
+	private boolean binary;
+	private boolean split;
+	@SuppressWarnings("rawtypes")
+	private MultipleOutputs outputs;
+	private final Map<String, Table> tables;
+
+	private final Map<String, Boolean> associative;
+	private final Map<EmitKey, Table> live;
+	private final Set<EmitKey> finished;
+
+	private SizzleMetrics metrics;
+	private SizzleErrors errors;
+
+	/**
+	 * Construct an AbstractSizzleMapper.
+	 */
+	protected AbstractSizzleMapper() {
+		this.combining = true;
+		this.buffer = AbstractSizzleMapper.DEFAULT_COMBINING_BUFFER;
+
+		this.associative = new HashMap<String, Boolean>();
+		this.live = new HashMap<EmitKey, Table>();
+		this.finished = new HashSet<EmitKey>();
+		this.tables = new HashMap<String, Table>();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Configuration getConf() {
+		return this.conf;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setConf(final Configuration conf) {
+		this.conf = conf;
+		this.robust = conf.getBoolean("sizzle.runtime.robust", false);
+		this.combining = conf.getBoolean("sizzle.runtime.combining", true);
+		this.buffer = conf.getLong("sizzle.runtime.combining.buffer", AbstractSizzleMapper.DEFAULT_COMBINING_BUFFER);
+		this.sorted = conf.getBoolean("sizzle.runtime.sort", false);
+		this.binary = conf.get("sizzle.runtime.output", "text").equals("sequence");
+		this.split = conf.getBoolean("sizzle.runtime.output.split", false);
+		// with no reducers, the mapper writes the final results
+		this.mapOnly = conf.getInt("mapred.reduce.tasks", 1) == 0;
+
+		if (conf.getBoolean("sizzle.runtime.metrics", true))
+			this.metrics = new SizzleMetrics("map");
+		else
+			this.metrics = null;
+
+		if (this.robust)
+			this.errors = new SizzleErrors(conf);
+	}
+
+	SizzleMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	void setMetrics(final SizzleMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	SizzleErrors getErrors() {
+		return this.errors;
+	}
+
+	void setErrors(final SizzleErrors errors) {
+		this.errors = errors;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void run(final Context context) throws IOException, InterruptedException {
+		this.setup(context);
+
+		while (context.nextKeyValue()) {
+			this.record();
+			this.next();
+			this.map(context.getCurrentKey(), context.getCurrentValue(), context);
+		}
+
+		this.cleanup(context);
+	}
+
+	// count a record read
+	void record() {
+		if (this.metrics != null)
+			this.metrics.record();
+	}
+
+	/**
+	 * Forget any state kept for the previous record, before the program is
+	 * run over the next one, whether by this mapper or on behalf of a
+	 * {@link SizzleFusedMapper}.
+	 */
+	protected void next() {
+		// nothing is kept by default
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void setup(final Mapper<KEYIN, VALUEIN, EmitKey, EmitValue>.Context context) throws IOException, InterruptedException {
+		super.setup(context);
+
+		this.context = context;
+
+		if (this.mapOnly && this.split)
+			this.outputs = new MultipleOutputs(context);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void cleanup(final Mapper<KEYIN, VALUEIN, EmitKey, EmitValue>.Context context) throws IOException, InterruptedException {
+		this.flush();
+
+		if (this.outputs != null)
+			this.outputs.close();
+
+		if (this.errors != null)
+			this.errors.close(context);
+
+		if (this.metrics != null) {
+			this.metrics.count(context);
+			this.metrics.write(context);
+		}
+
+		super.cleanup(context);
+	}
+
+	// run the program over a record on behalf of a SizzleFusedMapper, with
+	// the context it was set up with
+	void fused(final KEYIN key, final VALUEIN value) throws IOException, InterruptedException {
+		this.next();
+		this.map(key, value, this.context);
+	}
+
+	/**
+	 * Swallow an exception thrown by the program in robust mode, accounting
+	 * for it with the task's {@link SizzleErrors}.
+	 *
+	 * @param e
+	 *            The {@link Exception} that was caught
+	 *
+	 * @param key
+	 *            The key of the record the program was run over
+	 *
+	 * @param value
+	 *            The value of the record the program was run over
+	 *
+	 * @throws IOException
+	 */
+	protected void caught(final Exception e, final KEYIN key, final VALUEIN value) throws IOException {
+		this.errors.caught(e, key, value, this.context);
+
+		if (this.metrics != null)
+			this.metrics.exception();
+	}
+
+	/**
+	 * Instantiate a new {@link Table} for the Sizzle table with the given
+	 * name.
+	 *
+	 * @param name
+	 *            A {@link String} containing the name of the table
+	 *
+	 * @return A new {@link Table}, or null if values emitted to the table
+	 *         should never be aggregated in the mapper
+	 */
+	protected Table newTable(final String name) {
+		return null;
+	}
+
+	/**
+	 * Emit a value to a Sizzle table.
+	 *
+	 * @param key
+	 *            The {@link EmitKey} naming the table and its index
+	 *
+	 * @param value
+	 *            The {@link EmitValue} to be emitted
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected void emit(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+		final long size = AbstractSizzleMapper.sizeOf(value);
+
+		if (this.metrics != null)
+			this.metrics.get(key.getName()).emitted(size);
+
+		if (this.mapOnly) {
+			this.write(key, value);
+			return;
+		}
+
+		// if we can't aggregate it here, just pass it through
+		if (!this.combining || !this.isAssociative(key.getName())) {
+			this.context.write(key, value);
+			return;
+		}
+
+		// like the combiner, drop anything emitted to a key that is finished
+		if (this.finished.contains(key))
+			return;
+
+		Table t = this.live.get(key);
+		if (t == null) {
+			t = this.newTable(key.getName());
+			t.setContext(this.context);
+			t.setCombining(true);
+			t.setSorted(this.sorted);
+			if (this.metrics != null)
+				t.setMetrics(this.metrics.get(key.getName()));
+			t.start(key);
+
+			this.live.put(key, t);
+			this.size += AbstractSizzleMapper.TABLE_OVERHEAD + t.getFootprint() + AbstractSizzleMapper.sizeOf(key.getIndex()) + AbstractSizzleMapper.sizeOf(key.getName());
+		}
+
+		try {
+			t.aggregate(value);
+		} catch (final FinishedException e) {
+			this.live.remove(key);
+			this.finish(key);
+		}
+
+		// assume the worst, that the table keeps everything it is given
+		this.size += size;
+
+		if (this.size > this.buffer)
+			this.flush();
+	}
+
+	/**
+	 * Write out the partial results held in the live tables, and forget them.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected void flush() throws IOException, InterruptedException {
+		for (final Table t : this.live.values())
+			t.finish();
+
+		this.live.clear();
+		this.size = 0;
+	}
+
+	// tell the reducers that a key is finished, and drop the rest of it here
+	private void finish(final EmitKey key) throws IOException, InterruptedException {
+		this.context.write(key, EmitValue.finished());
+
+		// forgetting a finished key costs only the shuffling of its values
+		this.remembered += AbstractSizzleMapper.TABLE_OVERHEAD + AbstractSizzleMapper.sizeOf(key.getIndex()) + AbstractSizzleMapper.sizeOf(key.getName());
+		if (this.remembered > this.buffer) {
+			this.finished.clear();
+			this.remembered = 0;
+		}
+
+		this.finished.add(key);
+	}
+
+	// aggregate a single value to its final result, as the reducer would
+	private void write(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+		Table t = this.tables.get(key.getName());
+		if (t == null) {
+			t = this.newTable(key.getName());
+			t.setContext(this.context);
+			t.setCombining(false);
+			t.setBinary(this.binary);
+			if (this.metrics != null)
+				t.setMetrics(this.metrics.get(key.getName()));
+			if (this.outputs != null)
+				t.setOutputs(this.outputs, t.getFile() == null ? key.getName() : t.getFile());
+
+			this.tables.put(key.getName(), t);
+		}
+
+		if (this.binary)
+			t.start(new EmitKey(key.getIndex(), key.getName()));
+		else
+			t.start(key);
+
+		try {
+			t.aggregate(value);
+		} catch (final FinishedException e) {
+			// pass-through tables are never finished early
+		}
+
+		t.finish();
+	}
+
+	private boolean isAssociative(final String name) {
+		Boolean associative = this.associative.get(name);
+
+		if (associative == null) {
+			final Table t = this.newTable(name);
+
+			associative = Boolean.valueOf(t != null && t.isAssociative());
+
+			this.associative.put(name, associative);
+		}
+
+		return associative.booleanValue();
+	}
+
+	private static long sizeOf(final EmitValue value) {
+		long size = value.isWeighted() ? 8 : AbstractSizzleMapper.sizeOf(value.getMetadata());
+
+		for (int i = 0; i < value.size(); i++)
+			switch (value.getType(i)) {
+			case EmitValue.BYTES:
+			case EmitValue.SKETCH:
+				size += AbstractSizzleMapper.STRING_OVERHEAD + value.getBytes(i).length;
+				break;
+			case EmitValue.STRING:
+				size += AbstractSizzleMapper.sizeOf(value.getString(i));
+				break;
+			default:
+				size += 8;
+				break;
+			}
+
+		return size;
+	}
+
+	private static long sizeOf(final String s) {
+		if (s == null)
+			return 0;
+
+		return AbstractSizzleMapper.STRING_OVERHEAD + 2 * s.length();
+	}
+}
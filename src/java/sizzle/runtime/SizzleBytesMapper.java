@@ -0,0 +1,45 @@
+package sizzle.runtime;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * An {@link AbstractSizzleMapper} for programs whose input is a string of
+ * bytes, read from the {@link BytesWritable} values of a sequence file.
+ *
+ * Intrinsics that accept a backing array, offset and length are handed the
+ * record as it was read, without copying it. Otherwise the record is copied
+ * into an array of its own, at most once per record.
+ *
+ * @author anthonyu
+ *
+ */
+public abstract class SizzleBytesMapper extends AbstractSizzleMapper<Writable, BytesWritable> {
+	// the current record, as an array of its own
+	private byte[] input;
+
+	/** {@inheritDoc} */
+	@Override
+	protected void next() {
+		this.input = null;
+	}
+
+	/**
+	 * Get the bytes of the current record as an array of their own.
+	 *
+	 * @param value
+	 *            The {@link BytesWritable} containing the current record
+	 *
+	 * @return An array of byte containing exactly the bytes of the record
+	 */
+	protected byte[] input(final BytesWritable value) {
+		// the reader reuses the backing array for the next record, so the
+		// program may only keep a copy
+		if (this.input == null)
+			this.input = Arrays.copyOf(value.getBytes(), value.getLength());
+
+		return this.input;
+	}
+}
@@ -34,8 +34,21 @@ public abstract class SizzleCombiner extends Reducer<EmitKey, EmitValue, EmitKey
 	 */
 	protected Map<String, Table> tables;
 
+	/**
+	 * An array of {@link String} containing the Sizzle identifiers of the
+	 * tables, indexed by their ids.
+	 */
+	protected String[] names;
+
+	private Table[] ids;
+	private boolean[] associative;
+
 	private Configuration conf;
 	private boolean robust;
+	private boolean sorted;
+	private long buffer;
+	private SizzleMetrics metrics;
+	private SizzleErrors errors;
 
 	/**
 	 * Construct a SizzleCombiner.
@@ -55,41 +68,68 @@ public abstract class SizzleCombiner extends Reducer<EmitKey, EmitValue, EmitKey
 	public void setConf(final Configuration conf) {
 		this.conf = conf;
 		this.robust = conf.getBoolean("sizzle.runtime.robust", false);
+		this.sorted = conf.getBoolean("sizzle.runtime.sort", false);
+		this.buffer = conf.getLong("sizzle.runtime.spill.buffer", SizzleReducer.DEFAULT_SPILL_BUFFER);
+		if (conf.getBoolean("sizzle.runtime.metrics", true))
+			this.metrics = new SizzleMetrics("combine");
+		else
+			this.metrics = null;
+		if (this.robust)
+			this.errors = new SizzleErrors(conf);
 	}
 
 	/** {@inheritDoc} */
 	@Override
-	protected void reduce(final EmitKey key, final Iterable<EmitValue> values, final Context context) throws IOException, InterruptedException {
-		// get the table named by the emit key
-		final Table t = this.tables.get(key.getName());
+	protected void cleanup(final Context context) throws IOException, InterruptedException {
+		if (this.errors != null)
+			this.errors.close(context);
 
-		// if we are non-associative, just pass the output through
-		// TODO: find away to avoid combiner entirely when non-associative
-		if (!t.isAssociative()) {
+		// the combiner runs over and over in a task, so it only counts
+		if (this.metrics != null)
+			this.metrics.count(context);
+
+		super.cleanup(context);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void reduce(final EmitKey key, final Iterable<EmitValue> values, final Context context) throws IOException, InterruptedException {
+		// if we are non-associative, just pass the output through, without
+		// so much as looking at the table
+		if (!this.isAssociative(key)) {
 			for (final EmitValue value : values)
 				context.write(key, value);
 
 			return;
 		}
 
+		// get the table named by the emit key
+		final Table t = this.getTable(key);
+
 		// tell it we will be combining
 		t.setCombining(true);
+		// and when to spill its values to disk
+		t.setBuffer(this.buffer);
+		// and what to count its work in
+		if (this.metrics != null)
+			t.setMetrics(this.metrics.get(key.getName()));
 
 		// Counter counter = context.getCounter("Values Emitted",
 		// key.toString());
 		// LOG.fatal("counter for \"Values Output\"" + key.toString() + " " +
 		// Long.toString(counter.getValue()));
 
+		// set the reducer context, which the table may be configured from
+		t.setContext(context);
 		// initialize the table
 		t.start(key);
-		// set the reducer context
-		t.setContext(context);
 
 		for (final EmitValue value : values)
 			try {
-				t.aggregate(value.getData(), value.getMetadata());
+				t.aggregate(value);
 			} catch (final FinishedException e) {
-				// we are done
+				// we are done, and so is the reducer
+				context.write(key, EmitValue.finished());
 				return;
 			} catch (final IOException e) {
 				// won't be robust to IOExceptions
@@ -99,12 +139,12 @@ public abstract class SizzleCombiner extends Reducer<EmitKey, EmitValue, EmitKey
 				throw e;
 			} catch (final RuntimeException e) {
 				if (this.robust)
-					SizzleCombiner.LOG.error(e.getClass().getName() + " caught", e);
+					this.caught(e, context);
 				else
 					throw e;
 			} catch (final Exception e) {
 				if (this.robust)
-					SizzleCombiner.LOG.error(e.getClass().getName() + " caught", e);
+					this.caught(e, context);
 				else
 					throw new RuntimeException(e.getClass().getName() + " caught", e);
 			}
@@ -112,4 +152,72 @@ public abstract class SizzleCombiner extends Reducer<EmitKey, EmitValue, EmitKey
 		// finish it!
 		t.finish();
 	}
+
+	/**
+	 * Whether any of the tables this combiner is given is associative. If not,
+	 * there is nothing for it to do, and the job should not run it.
+	 * 
+	 * @return A boolean representing whether any table will be combined
+	 */
+	public boolean isAssociative() {
+		for (final Table t : this.tables.values())
+			if (t.isAssociative())
+				return true;
+
+		return false;
+	}
+
+	private boolean isAssociative(final EmitKey key) {
+		final int id = key.getId();
+
+		// keys without an id name their table
+		if (id < 0) {
+			return this.isAssociative(this.tables.get(key.getName()));
+		}
+
+		this.index();
+
+		return this.associative[id];
+	}
+
+	private void index() {
+		if (this.ids != null)
+			return;
+
+		this.ids = new Table[this.names.length];
+		this.associative = new boolean[this.names.length];
+
+		for (int i = 0; i < this.names.length; i++) {
+			this.ids[i] = this.tables.get(this.names[i]);
+			this.associative[i] = this.isAssociative(this.ids[i]);
+		}
+	}
+
+	private boolean isAssociative(final Table t) {
+		// the mappers already combined and sorted the values of sortable
+		// tables, which the combiner would group by their sort values
+		return t != null && t.isAssociative() && !(this.sorted && t.isSortable());
+	}
+
+	private void caught(final Exception e, final Context context) throws IOException {
+		this.errors.caught(e, null, null, context);
+
+		if (this.metrics != null)
+			this.metrics.exception();
+	}
+
+	private Table getTable(final EmitKey key) {
+		final int id = key.getId();
+
+		// keys without an id name their table
+		if (id < 0)
+			return this.tables.get(key.getName());
+
+		this.index();
+
+		// ids are not serialized with their names
+		key.setName(this.names[id]);
+
+		return this.ids[id];
+	}
 }
@@ -0,0 +1,188 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.Counters.CountersExceededException;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.log4j.Logger;
+
+/**
+ * Accounts for the exceptions swallowed by a task in robust mode.
+ *
+ * Exceptions are counted by their class and the place in Sizzle code they
+ * were thrown from, in the counter group <code>Sizzle errors</code>. Only
+ * the first <code>sizzle.runtime.robust.log</code> of each kind are logged
+ * with their stack traces. When <code>sizzle.runtime.robust.quarantine</code>
+ * is set, the input records that caused them are written to a file named
+ * after the task, and numbered so that each thread of a multithreaded mapper
+ * writes its own, under <code>_quarantine</code> in the output directory: as
+ * lines of text if they were read as such, and otherwise as a
+ * {@link SequenceFile} of their keys and values, so that they may be run
+ * through the program again.
+ *
+ * @author anthonyu
+ *
+ */
+public class SizzleErrors {
+	private static final Logger LOG = Logger.getLogger(SizzleErrors.class);
+
+	/**
+	 * The number of exceptions of each kind logged when
+	 * <code>sizzle.runtime.robust.log</code> is not set.
+	 */
+	public static final int DEFAULT_LOG = 10;
+
+	// numbers the instances in this JVM, which may share a task
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	private final int log;
+	private final boolean quarantine;
+	private final int instance;
+
+	// the number of exceptions of each kind since the counters were last
+	// updated, and in all
+	private final Map<String, long[]> kinds;
+
+	private FSDataOutputStream lines;
+	private SequenceFile.Writer records;
+
+	/**
+	 * Construct a SizzleErrors.
+	 *
+	 * @param conf
+	 *            The {@link Configuration} of the task
+	 */
+	public SizzleErrors(final Configuration conf) {
+		this.log = conf.getInt("sizzle.runtime.robust.log", SizzleErrors.DEFAULT_LOG);
+		this.quarantine = conf.getBoolean("sizzle.runtime.robust.quarantine", false);
+		this.instance = SizzleErrors.INSTANCES.getAndIncrement();
+
+		this.kinds = new HashMap<String, long[]>();
+	}
+
+	/**
+	 * Account for an exception swallowed in robust mode.
+	 *
+	 * @param e
+	 *            The {@link Exception} that was caught
+	 *
+	 * @param key
+	 *            The key of the input record that caused it, or null
+	 *
+	 * @param value
+	 *            The value of the input record that caused it, or null
+	 *
+	 * @param context
+	 *            The {@link TaskInputOutputContext} of the task
+	 *
+	 * @throws IOException
+	 */
+	public void caught(final Exception e, final Object key, final Object value, @SuppressWarnings("rawtypes") final TaskInputOutputContext context)
+			throws IOException {
+		final String kind = SizzleErrors.kind(e);
+
+		long[] count = this.kinds.get(kind);
+		if (count == null) {
+			count = new long[2];
+			this.kinds.put(kind, count);
+		}
+
+		count[0]++;
+		count[1]++;
+
+		if (count[1] <= this.log)
+			SizzleErrors.LOG.error(e.getClass().getName() + " caught", e);
+		if (count[1] == this.log)
+			SizzleErrors.LOG.error("logged " + this.log + " of " + kind + ", counting the rest");
+
+		if (this.quarantine && value != null)
+			this.quarantine(key, value, context);
+	}
+
+	/**
+	 * Add the exceptions counted to the counters of the task, and close the
+	 * quarantine file.
+	 *
+	 * @param context
+	 *            The {@link TaskInputOutputContext} of the task
+	 *
+	 * @throws IOException
+	 */
+	public void close(@SuppressWarnings("rawtypes") final TaskInputOutputContext context) throws IOException {
+		try {
+			for (final Entry<String, long[]> entry : this.kinds.entrySet())
+				if (entry.getValue()[0] > 0) {
+					context.getCounter("Sizzle errors", entry.getKey()).increment(entry.getValue()[0]);
+					entry.getValue()[0] = 0;
+				}
+		} catch (final CountersExceededException e) {
+			SizzleErrors.LOG.warn("too many kinds of error to count them all: " + e.getMessage());
+		}
+
+		if (this.lines != null)
+			this.lines.close();
+		if (this.records != null)
+			this.records.close();
+
+		this.lines = null;
+		this.records = null;
+	}
+
+	// the class of an exception and where in Sizzle code it was thrown
+	private static String kind(final Exception e) {
+		for (final StackTraceElement frame : e.getStackTrace())
+			if (frame.getClassName().startsWith("sizzle."))
+				return e.getClass().getName() + " at " + frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+
+		return e.getClass().getName();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void quarantine(final Object key, final Object value, final TaskInputOutputContext context) throws IOException {
+		if (!(context.getOutputCommitter() instanceof FileOutputCommitter))
+			return;
+
+		// lines of text are quarantined as such
+		if (value instanceof Text) {
+			if (this.lines == null) {
+				final Path path = this.path(context, ".txt");
+
+				this.lines = path.getFileSystem(context.getConfiguration()).create(path, true);
+			}
+
+			final Text text = (Text) value;
+			this.lines.write(text.getBytes(), 0, text.getLength());
+			this.lines.write('\n');
+		} else {
+			if (this.records == null) {
+				final Path path = this.path(context, ".seq");
+				final FileSystem fs = path.getFileSystem(context.getConfiguration());
+
+				this.records = SequenceFile.createWriter(fs, context.getConfiguration(), path, key.getClass(), value.getClass());
+			}
+
+			this.records.append(key, value);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Path path(final TaskInputOutputContext context, final String extension) throws IOException {
+		try {
+			return new Path(FileOutputFormat.getWorkOutputPath(context), "_quarantine/" + context.getTaskAttemptID().getTaskID() + "-" + this.instance + extension);
+		} catch (final InterruptedException e) {
+			throw new IOException(e.getClass().getName() + " caught", e);
+		}
+	}
+}
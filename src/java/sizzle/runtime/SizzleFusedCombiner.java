@@ -0,0 +1,52 @@
+package sizzle.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.mapreduce.Reducer;
+
+import sizzle.aggregators.Table;
+
+/**
+ * A {@link Reducer} that pre-reduces the outputs of several Sizzle programs run
+ * together by a {@link SizzleFusedMapper}.
+ *
+ * @author anthonyu
+ *
+ */
+public abstract class SizzleFusedCombiner extends SizzleCombiner {
+	/**
+	 * Construct a SizzleFusedCombiner.
+	 *
+	 * @param programs
+	 *            An array of {@link String} containing the names of the
+	 *            programs
+	 *
+	 * @param runners
+	 *            An array of {@link SizzleRunner} containing the runner of
+	 *            each of the programs
+	 */
+	protected SizzleFusedCombiner(final String[] programs, final SizzleRunner[] runners) {
+		super();
+
+		final List<String> names = new ArrayList<String>();
+
+		for (int i = 0; i < runners.length; i++) {
+			final SizzleCombiner combiner = runners[i].getCombiner();
+
+			// a program may have nothing to combine
+			if (combiner != null)
+				for (final Entry<String, Table> entry : combiner.tables.entrySet())
+					this.tables.put(programs[i] + "/" + entry.getKey(), entry.getValue());
+
+			// the ids are those of the reducer, whatever is combined
+			final String[] reduced = runners[i].getReducer().names;
+			if (reduced != null)
+				for (final String name : reduced)
+					names.add(programs[i] + "/" + name);
+		}
+
+		this.names = names.toArray(new String[names.size()]);
+	}
+}
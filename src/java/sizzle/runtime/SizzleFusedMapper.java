@@ -0,0 +1,169 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+/**
+ * A {@link Mapper} that runs several Sizzle programs over the same input in a
+ * single job, so that the input is read only once.
+ *
+ * Each record is handed to the mapper of every program in turn. Their tables
+ * are namespaced by the name of the program they belong to, so that
+ * <em>table</em> in <em>program</em> is emitted as
+ * <em>program</em>/<em>table</em>, and the ids of their tables are offset
+ * past those of the programs before them, matching the
+ * {@link SizzleFusedCombiner} and {@link SizzleFusedReducer} of the job.
+ *
+ * @author anthonyu
+ *
+ */
+public abstract class SizzleFusedMapper extends AbstractSizzleMapper<Object, Object> {
+	private final String[] programs;
+	@SuppressWarnings("rawtypes")
+	private final AbstractSizzleMapper[] mappers;
+	private final int[] offsets;
+
+	/**
+	 * Construct a SizzleFusedMapper.
+	 *
+	 * @param programs
+	 *            An array of {@link String} containing the names of the
+	 *            programs
+	 *
+	 * @param runners
+	 *            An array of {@link SizzleRunner} containing the runner of
+	 *            each of the programs
+	 */
+	protected SizzleFusedMapper(final String[] programs, final SizzleRunner[] runners) {
+		super();
+
+		this.programs = programs;
+		this.mappers = new AbstractSizzleMapper[runners.length];
+		this.offsets = new int[runners.length];
+
+		int offset = 0;
+		for (int i = 0; i < runners.length; i++) {
+			this.mappers[i] = runners[i].getMapper();
+			this.offsets[i] = offset;
+
+			final String[] names = runners[i].getReducer().names;
+			if (names != null)
+				offset += names.length;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setConf(final Configuration conf) {
+		super.setConf(conf);
+
+		for (int i = 0; i < this.mappers.length; i++) {
+			this.mappers[i].setConf(conf);
+
+			// the programs' tables are counted in their namespaces
+			if (this.getMetrics() != null)
+				this.mappers[i].setMetrics(this.getMetrics().namespace(this.programs[i]));
+			// and their errors all together
+			this.mappers[i].setErrors(this.getErrors());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void setup(final Mapper<Object, Object, EmitKey, EmitValue>.Context context) throws IOException, InterruptedException {
+		super.setup(context);
+
+		// each program writes through a context of its own, which
+		// namespaces its tables
+		for (int i = 0; i < this.mappers.length; i++)
+			this.mappers[i].setup(this.mappers[i].new Context(context.getConfiguration(), context.getTaskAttemptID(), null, new NamespacingWriter(context,
+					this.programs[i], this.offsets[i]), context.getOutputCommitter(), new ContextReporter(context), context.getInputSplit()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void map(final Object key, final Object value, final Mapper<Object, Object, EmitKey, EmitValue>.Context context) throws IOException,
+			InterruptedException {
+		for (final AbstractSizzleMapper<Object, Object> mapper : this.mappers)
+			mapper.fused(key, value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void cleanup(final Mapper<Object, Object, EmitKey, EmitValue>.Context context) throws IOException, InterruptedException {
+		for (final AbstractSizzleMapper<Object, Object> mapper : this.mappers)
+			mapper.cleanup(mapper.context);
+
+		super.cleanup(context);
+	}
+
+	// writes the keys of one program into its namespace
+	private static class NamespacingWriter extends RecordWriter<EmitKey, EmitValue> {
+		private final TaskInputOutputContext<?, ?, EmitKey, EmitValue> context;
+		private final String program;
+		private final int offset;
+
+		public NamespacingWriter(final TaskInputOutputContext<?, ?, EmitKey, EmitValue> context, final String program, final int offset) {
+			this.context = context;
+			this.program = program;
+			this.offset = offset;
+		}
+
+		@Override
+		public void write(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+			final int id = key.getId();
+
+			final EmitKey namespaced = new EmitKey(key.getIndex(), this.program + "/" + key.getName(), id < 0 ? -1 : id + this.offset);
+			namespaced.setSort(key.getSort());
+
+			this.context.write(namespaced, value);
+		}
+
+		@Override
+		public void close(final TaskAttemptContext context) throws IOException, InterruptedException {
+			// the job's context is closed by the framework
+		}
+	}
+
+	// reports the status and counters of each program to the job's context
+	private static class ContextReporter extends StatusReporter {
+		private final TaskInputOutputContext<?, ?, ?, ?> context;
+
+		public ContextReporter(final TaskInputOutputContext<?, ?, ?, ?> context) {
+			this.context = context;
+		}
+
+		@Override
+		public Counter getCounter(final Enum<?> name) {
+			return this.context.getCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(final String group, final String name) {
+			return this.context.getCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+			this.context.progress();
+		}
+
+		@Override
+		public void setStatus(final String status) {
+			this.context.setStatus(status);
+		}
+	}
+}
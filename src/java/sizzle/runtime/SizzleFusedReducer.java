@@ -0,0 +1,59 @@
+package sizzle.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.mapreduce.Reducer;
+
+import sizzle.aggregators.Table;
+
+/**
+ * A {@link Reducer} that reduces the outputs of several Sizzle programs run
+ * together by a {@link SizzleFusedMapper}.
+ *
+ * The tables of each program are named <em>program</em>/<em>table</em>, so
+ * that when each table is written to its own output, the results of each
+ * program land in a directory of their own.
+ *
+ * @author anthonyu
+ *
+ */
+public abstract class SizzleFusedReducer extends SizzleReducer {
+	/**
+	 * Construct a SizzleFusedReducer.
+	 *
+	 * @param programs
+	 *            An array of {@link String} containing the names of the
+	 *            programs
+	 *
+	 * @param runners
+	 *            An array of {@link SizzleRunner} containing the runner of
+	 *            each of the programs
+	 */
+	protected SizzleFusedReducer(final String[] programs, final SizzleRunner[] runners) {
+		super();
+
+		final List<String> names = new ArrayList<String>();
+
+		for (int i = 0; i < runners.length; i++) {
+			final SizzleReducer reducer = runners[i].getReducer();
+
+			for (final Entry<String, Table> entry : reducer.tables.entrySet()) {
+				final Table t = entry.getValue();
+
+				// tables without a file are written under their name
+				if (t.getFile() != null)
+					t.setFile(programs[i] + "/" + t.getFile());
+
+				this.tables.put(programs[i] + "/" + entry.getKey(), t);
+			}
+
+			if (reducer.names != null)
+				for (final String name : reducer.names)
+					names.add(programs[i] + "/" + name);
+		}
+
+		this.names = names.toArray(new String[names.size()]);
+	}
+}
@@ -0,0 +1,472 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+/**
+ * Runs a Sizzle program in this process, on all of the cores of this machine,
+ * instead of submitting its {@link Job}.
+ *
+ * The input splits are mapped by a pool of threads, each with its own
+ * {@link AbstractSizzleMapper}. What the mappers emit is kept in memory, hash
+ * partitioned over as many reduce tasks as there are threads, and run through
+ * the job's {@link SizzleCombiner}, if it has one, as the cluster would run it
+ * over the output of each map task, since some tables, such as counters, do
+ * their work there. Each reduce
+ * task merges and sorts its partition and hands each key straight to its own
+ * {@link SizzleReducer}. Nothing is serialized, spilled or sorted on disk, so
+ * everything a program emits, once the mappers have combined it, must fit in
+ * memory. The results are written with the output format and committer of
+ * the job, exactly as the cluster would write them.
+ *
+ * Set <code>sizzle.runtime.local.threads</code> to use fewer threads than
+ * there are cores.
+ *
+ * @author anthonyu
+ *
+ */
+public class SizzleLocalRunner {
+	private static final Logger LOG = Logger.getLogger(SizzleLocalRunner.class);
+
+	private static final String COUNTERS = "org.apache.hadoop.mapred.Task$Counter";
+
+	private static final AtomicInteger jobs = new AtomicInteger();
+
+	// the reducers are handed their values directly, not through the context
+	private static final RawKeyValueIterator EMPTY = new RawKeyValueIterator() {
+		@Override
+		public DataInputBuffer getKey() throws IOException {
+			return null;
+		}
+
+		@Override
+		public DataInputBuffer getValue() throws IOException {
+			return null;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// nothing to close
+		}
+
+		@Override
+		public Progress getProgress() {
+			return new Progress();
+		}
+	};
+
+	private final SizzleRunner runner;
+	private final Job job;
+	private final Counters counters;
+
+	private Configuration conf;
+	private JobID id;
+	@SuppressWarnings("rawtypes")
+	private InputFormat input;
+	@SuppressWarnings("rawtypes")
+	private Class<? extends OutputFormat> output;
+	private OutputCommitter committer;
+	private int partitions;
+
+	/**
+	 * Construct a SizzleLocalRunner.
+	 *
+	 * @param runner
+	 *            The {@link SizzleRunner} providing the mappers and reducers
+	 *
+	 * @param job
+	 *            The {@link Job} created by the runner, describing the input
+	 *            and output
+	 */
+	public SizzleLocalRunner(final SizzleRunner runner, final Job job) {
+		this.runner = runner;
+		this.job = job;
+		this.counters = new Counters();
+	}
+
+	/**
+	 * Run the job, and wait for it to finish.
+	 *
+	 * @return A boolean representing whether the job succeeded
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public boolean run() throws IOException, InterruptedException {
+		this.conf = this.job.getConfiguration();
+		this.id = new JobID("local", SizzleLocalRunner.jobs.incrementAndGet());
+
+		final JobContext context = new JobContext(this.conf, this.id);
+
+		try {
+			this.input = ReflectionUtils.newInstance(context.getInputFormatClass(), this.conf);
+			this.output = context.getOutputFormatClass();
+		} catch (final ClassNotFoundException e) {
+			throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
+		}
+
+		final OutputFormat output = ReflectionUtils.newInstance(this.output, this.conf);
+		output.checkOutputSpecs(context);
+		this.committer = output.getOutputCommitter(new TaskAttemptContext(this.conf, new TaskAttemptID("local", this.id.getId(), false, 0, 0)));
+
+		final int threads = this.conf.getInt("sizzle.runtime.local.threads", Runtime.getRuntime().availableProcessors());
+
+		// if the program has no reduce, the mappers write the results
+		this.partitions = context.getNumReduceTasks() == 0 ? 0 : threads;
+
+		final List<InputSplit> splits = this.input.getSplits(context);
+
+		this.committer.setupJob(context);
+
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<List<Map<EmitKey, List<EmitValue>>>>> maps = new ArrayList<Future<List<Map<EmitKey, List<EmitValue>>>>>();
+			for (int i = 0; i < splits.size(); i++)
+				maps.add(pool.submit(new MapTask(i, splits.get(i))));
+
+			final List<List<Map<EmitKey, List<EmitValue>>>> emitted = new ArrayList<List<Map<EmitKey, List<EmitValue>>>>();
+			for (final Future<List<Map<EmitKey, List<EmitValue>>>> map : maps)
+				emitted.add(map.get());
+
+			final List<Future<Void>> reduces = new ArrayList<Future<Void>>();
+			for (int i = 0; i < this.partitions; i++)
+				reduces.add(pool.submit(new ReduceTask(i, emitted)));
+
+			for (final Future<Void> reduce : reduces)
+				reduce.get();
+		} catch (final ExecutionException e) {
+			SizzleLocalRunner.LOG.error("local job " + this.id + " failed", e.getCause());
+
+			this.committer.abortJob(context, JobStatus.State.FAILED);
+
+			return false;
+		} finally {
+			pool.shutdownNow();
+		}
+
+		this.committer.commitJob(context);
+
+		return true;
+	}
+
+	/**
+	 * Get the counters of the tasks that have finished.
+	 *
+	 * @return The {@link Counters} of the job
+	 */
+	public Counters getCounters() {
+		return this.counters;
+	}
+
+	private class MapTask implements Callable<List<Map<EmitKey, List<EmitValue>>>> {
+		private final int index;
+		private final InputSplit split;
+
+		public MapTask(final int index, final InputSplit split) {
+			this.index = index;
+			this.split = split;
+		}
+
+		@Override
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public List<Map<EmitKey, List<EmitValue>>> call() throws Exception {
+			final SizzleLocalRunner outer = SizzleLocalRunner.this;
+
+			final TaskAttemptID attempt = new TaskAttemptID("local", outer.id.getId(), true, this.index, 0);
+			final TaskAttemptContext context = new TaskAttemptContext(outer.conf, attempt);
+
+			// output formats and their committers keep the work path of the
+			// task they are first used for
+			final OutputFormat output = ReflectionUtils.newInstance(outer.output, outer.conf);
+			final OutputCommitter committer = output.getOutputCommitter(context);
+
+			final Counters counters = new Counters();
+
+			final List<Map<EmitKey, List<EmitValue>>> partitions = new ArrayList<Map<EmitKey, List<EmitValue>>>();
+			for (int i = 0; i < outer.partitions; i++)
+				partitions.add(new HashMap<EmitKey, List<EmitValue>>());
+
+			// even with reducers, the mapper may write files of its own
+			committer.setupTask(context);
+
+			final RecordWriter writer;
+			if (outer.partitions == 0) {
+				writer = output.getRecordWriter(context);
+			} else {
+				writer = new PartitioningWriter(partitions, (Partitioner) ReflectionUtils.newInstance(context.getPartitionerClass(), outer.conf),
+						counters.findCounter(SizzleLocalRunner.COUNTERS, "MAP_OUTPUT_RECORDS"));
+			}
+
+			final RecordReader reader = outer.input.createRecordReader(this.split, context);
+			reader.initialize(this.split, context);
+
+			final AbstractSizzleMapper mapper = outer.runner.getMapper();
+			mapper.setConf(outer.conf);
+			try {
+				mapper.run(mapper.new Context(outer.conf, attempt, reader, writer, committer, new LocalReporter(counters), this.split));
+			} finally {
+				reader.close();
+				writer.close(context);
+			}
+
+			// the combiner comes from the runner, so its class need not be
+			// loadable by name
+			final List<Map<EmitKey, List<EmitValue>>> combined;
+			if (outer.partitions > 0 && outer.conf.get("mapreduce.combine.class") != null)
+				combined = this.combine(partitions, attempt, context, committer, counters);
+			else
+				combined = partitions;
+
+			if (committer.needsTaskCommit(context))
+				committer.commitTask(context);
+
+			synchronized (outer.counters) {
+				outer.counters.incrAllCounters(counters);
+			}
+
+			return combined;
+		}
+
+		// run the combiner over what the mapper emitted, a key at a time
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private List<Map<EmitKey, List<EmitValue>>> combine(final List<Map<EmitKey, List<EmitValue>>> emitted, final TaskAttemptID attempt,
+				final TaskAttemptContext context, final OutputCommitter committer, final Counters counters) throws IOException, InterruptedException,
+				ClassNotFoundException {
+			final SizzleLocalRunner outer = SizzleLocalRunner.this;
+
+			final List<Map<EmitKey, List<EmitValue>>> partitions = new ArrayList<Map<EmitKey, List<EmitValue>>>();
+			for (int i = 0; i < outer.partitions; i++)
+				partitions.add(new HashMap<EmitKey, List<EmitValue>>());
+
+			final RecordWriter writer = new PartitioningWriter(partitions, (Partitioner) ReflectionUtils.newInstance(context.getPartitionerClass(),
+					outer.conf), counters.findCounter(SizzleLocalRunner.COUNTERS, "COMBINE_OUTPUT_RECORDS"));
+
+			// the cluster counts the values combined, not the keys
+			final Counter groups = new Counters().findCounter(SizzleLocalRunner.COUNTERS, "COMBINE_INPUT_GROUPS");
+			final Counter records = counters.findCounter(SizzleLocalRunner.COUNTERS, "COMBINE_INPUT_RECORDS");
+
+			final SizzleCombiner combiner = outer.runner.getCombiner();
+			combiner.setConf(outer.conf);
+
+			// keys are combined only with those that are equal, sort values
+			// and all
+			final RawComparator<EmitKey> sorting = (RawComparator<EmitKey>) context.getSortComparator();
+
+			final SizzleCombiner.Context combinerContext = combiner.new Context(outer.conf, attempt, SizzleLocalRunner.EMPTY, groups, records, writer,
+					committer, new LocalReporter(counters), sorting, EmitKey.class, EmitValue.class);
+
+			// it has nothing to set up
+			try {
+				for (final Map<EmitKey, List<EmitValue>> partition : emitted) {
+					// in the order the cluster would
+					final List<EmitKey> keys = new ArrayList<EmitKey>(partition.keySet());
+					Collections.sort(keys);
+
+					for (final EmitKey key : keys) {
+						final List<EmitValue> values = partition.get(key);
+
+						records.increment(values.size());
+
+						combiner.reduce(key, values, combinerContext);
+					}
+				}
+
+				combiner.cleanup(combinerContext);
+			} finally {
+				writer.close(context);
+			}
+
+			return partitions;
+		}
+	}
+
+	private class ReduceTask implements Callable<Void> {
+		private final int index;
+		private final List<List<Map<EmitKey, List<EmitValue>>>> emitted;
+
+		public ReduceTask(final int index, final List<List<Map<EmitKey, List<EmitValue>>>> emitted) {
+			this.index = index;
+			this.emitted = emitted;
+		}
+
+		@Override
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public Void call() throws Exception {
+			final SizzleLocalRunner outer = SizzleLocalRunner.this;
+
+			// merge this partition of the output of every map task
+			final Map<EmitKey, List<EmitValue>> merged = new HashMap<EmitKey, List<EmitValue>>();
+			for (final List<Map<EmitKey, List<EmitValue>>> partitions : this.emitted)
+				for (final Entry<EmitKey, List<EmitValue>> entry : partitions.get(this.index).entrySet()) {
+					final List<EmitValue> values = merged.get(entry.getKey());
+
+					if (values == null)
+						merged.put(entry.getKey(), entry.getValue());
+					else
+						values.addAll(entry.getValue());
+				}
+
+			// and reduce it in the order the cluster would
+			final List<EmitKey> keys = new ArrayList<EmitKey>(merged.keySet());
+			Collections.sort(keys);
+
+			final TaskAttemptID attempt = new TaskAttemptID("local", outer.id.getId(), false, this.index, 0);
+			final TaskAttemptContext context = new TaskAttemptContext(outer.conf, attempt);
+
+			final Counters counters = new Counters();
+			final Counter groups = counters.findCounter(SizzleLocalRunner.COUNTERS, "REDUCE_INPUT_GROUPS");
+			final Counter records = counters.findCounter(SizzleLocalRunner.COUNTERS, "REDUCE_INPUT_RECORDS");
+
+			final OutputFormat output = ReflectionUtils.newInstance(outer.output, outer.conf);
+			final OutputCommitter committer = output.getOutputCommitter(context);
+			committer.setupTask(context);
+			final RecordWriter writer = output.getRecordWriter(context);
+
+			final SizzleReducer reducer = outer.runner.getReducer();
+			reducer.setConf(outer.conf);
+
+			// keys are grouped as the job would group them
+			final RawComparator<EmitKey> grouping = (RawComparator<EmitKey>) context.getGroupingComparator();
+
+			final SizzleReducer.Context reducerContext = reducer.new Context(outer.conf, attempt, SizzleLocalRunner.EMPTY, groups, records, writer,
+					committer, new LocalReporter(counters), grouping, EmitKey.class, EmitValue.class);
+
+			try {
+				reducer.setup(reducerContext);
+
+				for (int i = 0; i < keys.size();) {
+					final EmitKey key = keys.get(i);
+					final List<EmitValue> values = merged.remove(key);
+
+					// along with those of any keys that differ only in their
+					// sort values, in sorted order
+					for (i++; i < keys.size() && grouping.compare(key, keys.get(i)) == 0; i++)
+						values.addAll(merged.remove(keys.get(i)));
+
+					groups.increment(1);
+					records.increment(values.size());
+
+					reducer.reduce(key, values, reducerContext);
+				}
+
+				reducer.cleanup(reducerContext);
+			} finally {
+				writer.close(context);
+			}
+
+			if (committer.needsTaskCommit(context))
+				committer.commitTask(context);
+
+			synchronized (outer.counters) {
+				outer.counters.incrAllCounters(counters);
+			}
+
+			return null;
+		}
+	}
+
+	// keeps emitted values in memory, in the partition of their key
+	private static class PartitioningWriter extends RecordWriter<EmitKey, EmitValue> {
+		private final List<Map<EmitKey, List<EmitValue>>> partitions;
+		private final Partitioner<EmitKey, EmitValue> partitioner;
+		private final Counter records;
+
+		public PartitioningWriter(final List<Map<EmitKey, List<EmitValue>>> partitions, final Partitioner<EmitKey, EmitValue> partitioner,
+				final Counter records) {
+			this.partitions = partitions;
+			this.partitioner = partitioner;
+			this.records = records;
+		}
+
+		@Override
+		public void write(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+			final Map<EmitKey, List<EmitValue>> partition = this.partitions.get(this.partitioner.getPartition(key, value, this.partitions.size()));
+
+			List<EmitValue> values = partition.get(key);
+			if (values == null) {
+				values = new ArrayList<EmitValue>();
+				partition.put(key, values);
+			}
+
+			values.add(value);
+			this.records.increment(1);
+		}
+
+		@Override
+		public void close(final TaskAttemptContext context) throws IOException, InterruptedException {
+			// nothing to flush
+		}
+	}
+
+	private static class LocalReporter extends StatusReporter {
+		private final Counters counters;
+
+		public LocalReporter(final Counters counters) {
+			this.counters = counters;
+		}
+
+		@Override
+		public Counter getCounter(final Enum<?> name) {
+			return this.counters.findCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(final String group, final String name) {
+			return this.counters.findCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+			// nobody is watching
+		}
+
+		@Override
+		public void setStatus(final String status) {
+			// nobody is watching
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters.CountersExceededException;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.log4j.Logger;
+
+import sizzle.aggregators.TableMetrics;
+
+/**
+ * Collects the {@link TableMetrics} of every table a task works on, along with
+ * the number of records it read and the number of exceptions it swallowed in
+ * robust mode.
+ *
+ * They are written by the mappers and reducers as a JSON file named after the task, and numbered so
+ * that each thread of a multithreaded mapper writes its own, under
+ * <code>_stats</code> in the output directory. The records and exceptions are
+ * also reported as Hadoop counters in the group <code>Sizzle map</code>,
+ * <code>Sizzle combine</code> or <code>Sizzle reduce</code>, as are the
+ * metrics of each table when <code>sizzle.runtime.metrics.counters</code> is
+ * set; they are off by default, since a program with a few tables would use up
+ * the counters a job may have. Set <code>sizzle.runtime.metrics</code> to false
+ * to collect none of them.
+ *
+ * @author anthonyu
+ *
+ */
+public class SizzleMetrics {
+	private static final Logger LOG = Logger.getLogger(SizzleMetrics.class);
+
+	// numbers the instances in this JVM, which may share a task
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	private final String phase;
+	private final String prefix;
+	private final Map<String, TableMetrics> tables;
+	// the records read, and the exceptions swallowed
+	private final long[] counts;
+	private final int instance;
+
+	/**
+	 * Construct a SizzleMetrics.
+	 *
+	 * @param phase
+	 *            A {@link String} naming the phase of the job the metrics are
+	 *            collected in: map, combine or reduce
+	 */
+	public SizzleMetrics(final String phase) {
+		this.phase = phase;
+		this.prefix = null;
+		this.tables = new TreeMap<String, TableMetrics>();
+		this.counts = new long[2];
+		this.instance = SizzleMetrics.INSTANCES.getAndIncrement();
+	}
+
+	private SizzleMetrics(final SizzleMetrics parent, final String prefix) {
+		this.phase = parent.phase;
+		this.prefix = prefix;
+		this.tables = parent.tables;
+		this.counts = parent.counts;
+		this.instance = parent.instance;
+	}
+
+	/**
+	 * Get a view of these metrics in which every table is named
+	 * <em>prefix</em>/<em>table</em>. It is reported by these metrics, not on
+	 * its own.
+	 *
+	 * @param prefix
+	 *            A {@link String} containing the namespace of the tables
+	 *
+	 * @return A {@link SizzleMetrics} sharing these metrics
+	 */
+	public SizzleMetrics namespace(final String prefix) {
+		return new SizzleMetrics(this, this.prefix == null ? prefix : this.prefix + "/" + prefix);
+	}
+
+	/**
+	 * Get the metrics of a table.
+	 *
+	 * @param name
+	 *            A {@link String} containing the name of the table
+	 *
+	 * @return The {@link TableMetrics} of the table
+	 */
+	public TableMetrics get(final String name) {
+		final String key = this.prefix == null ? name : this.prefix + "/" + name;
+
+		TableMetrics metrics = this.tables.get(key);
+		if (metrics == null) {
+			metrics = new TableMetrics();
+			this.tables.put(key, metrics);
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * Count a record read.
+	 */
+	public void record() {
+		this.counts[0]++;
+	}
+
+	/**
+	 * Count an exception swallowed in robust mode.
+	 */
+	public void exception() {
+		this.counts[1]++;
+	}
+
+	/**
+	 * Add the metrics to the counters of a task.
+	 *
+	 * @param context
+	 *            The {@link TaskInputOutputContext} of the task
+	 */
+	public void count(@SuppressWarnings("rawtypes") final TaskInputOutputContext context) {
+		// namespaces are counted by their parent
+		if (this.prefix != null)
+			return;
+
+		final String group = "Sizzle " + this.phase;
+
+		if (this.counts[0] > 0)
+			context.getCounter(group, "records").increment(this.counts[0]);
+		if (this.counts[1] > 0)
+			context.getCounter(group, "exceptions").increment(this.counts[1]);
+
+		if (!context.getConfiguration().getBoolean("sizzle.runtime.metrics.counters", false))
+			return;
+
+		try {
+			for (final Entry<String, TableMetrics> entry : this.tables.entrySet()) {
+				final String name = entry.getKey();
+				final TableMetrics metrics = entry.getValue();
+
+				if (metrics.getEmits() > 0) {
+					context.getCounter(group, name + " emits").increment(metrics.getEmits());
+					context.getCounter(group, name + " bytes").increment(metrics.getBytes());
+				}
+				if (metrics.getIn() > 0) {
+					context.getCounter(group, name + " in").increment(metrics.getIn());
+					context.getCounter(group, name + " out").increment(metrics.getOut());
+					context.getCounter(group, name + " aggregate ms").increment(metrics.getAggregateNanos() / 1000000);
+					context.getCounter(group, name + " finish ms").increment(metrics.getFinishNanos() / 1000000);
+				}
+			}
+		} catch (final CountersExceededException e) {
+			// a program with many tables can run out of counters, but the
+			// stats file has them all
+			SizzleMetrics.LOG.warn("too many tables to count them all: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the metrics to a JSON file named after the task and this instance,
+	 * under <code>_stats</code> in its output directory. Nothing is written unless
+	 * the task writes its output to files.
+	 *
+	 * @param context
+	 *            The {@link TaskInputOutputContext} of the task
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void write(@SuppressWarnings("rawtypes") final TaskInputOutputContext context) throws IOException, InterruptedException {
+		if (this.prefix != null || !(context.getOutputCommitter() instanceof FileOutputCommitter))
+			return;
+
+		final Path path = new Path(FileOutputFormat.getWorkOutputPath(context), "_stats/" + context.getTaskAttemptID().getTaskID() + "-" + this.instance + ".json");
+
+		final FSDataOutputStream out = path.getFileSystem(context.getConfiguration()).create(path, true);
+		try {
+			final PrintStream p = new PrintStream(out, false, "UTF-8");
+			p.print(this.toJson(context.getTaskAttemptID().toString()));
+			p.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	String toJson(final String task) {
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append("{\"task\": ").append(SizzleMetrics.quote(task));
+		sb.append(", \"phase\": ").append(SizzleMetrics.quote(this.phase));
+		sb.append(", \"records\": ").append(this.counts[0]);
+		sb.append(", \"exceptions\": ").append(this.counts[1]);
+		sb.append(", \"tables\": {");
+
+		String separator = "";
+		for (final Entry<String, TableMetrics> entry : this.tables.entrySet()) {
+			final TableMetrics metrics = entry.getValue();
+
+			sb.append(separator).append(SizzleMetrics.quote(entry.getKey())).append(": {");
+			sb.append("\"emits\": ").append(metrics.getEmits());
+			sb.append(", \"bytes\": ").append(metrics.getBytes());
+			sb.append(", \"in\": ").append(metrics.getIn());
+			sb.append(", \"out\": ").append(metrics.getOut());
+			// how many values were aggregated into each result
+			if (metrics.getOut() > 0)
+				sb.append(", \"ratio\": ").append((double) metrics.getIn() / metrics.getOut());
+			sb.append(", \"aggregate_ms\": ").append(metrics.getAggregateNanos() / 1000000);
+			sb.append(", \"finish_ms\": ").append(metrics.getFinishNanos() / 1000000);
+			sb.append("}");
+
+			separator = ", ";
+		}
+
+		return sb.append("}}\n").toString();
+	}
+
+	private static String quote(final String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
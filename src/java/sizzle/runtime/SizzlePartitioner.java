@@ -0,0 +1,111 @@
+package sizzle.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.log4j.Logger;
+
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+/**
+ * A {@link Partitioner} that can reserve reducers for heavy tables.
+ *
+ * Setting <code>sizzle.runtime.reducers.<i>table</i></code> to n gives the
+ * named table the next n reducers for its own, so that a skewed table does not
+ * hold up the others. The keys of all other tables are hashed over the
+ * reducers that remain.
+ *
+ * @author anthonyu
+ *
+ */
+public class SizzlePartitioner extends Partitioner<EmitKey, EmitValue> implements Configurable {
+	private static final Logger LOG = Logger.getLogger(SizzlePartitioner.class);
+
+	private static final String PREFIX = "sizzle.runtime.reducers.";
+
+	private Configuration conf;
+
+	private int partitions;
+	// the first reducer and number of reducers reserved for each table
+	private final Map<String, int[]> reserved;
+	// the first reducer shared by the other tables
+	private int shared;
+
+	/**
+	 * Construct a SizzlePartitioner.
+	 */
+	public SizzlePartitioner() {
+		this.partitions = -1;
+		this.reserved = new HashMap<String, int[]>();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Configuration getConf() {
+		return this.conf;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setConf(final Configuration conf) {
+		this.conf = conf;
+		this.partitions = -1;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getPartition(final EmitKey key, final EmitValue value, final int numPartitions) {
+		if (numPartitions != this.partitions)
+			this.layout(numPartitions);
+
+		final int[] range = this.reserved.get(key.getName());
+
+		if (range != null)
+			return range[0] + (key.getIndex().hashCode() & Integer.MAX_VALUE) % range[1];
+
+		return this.shared + (key.hashCode() & Integer.MAX_VALUE) % (numPartitions - this.shared);
+	}
+
+	private void layout(final int numPartitions) {
+		this.partitions = numPartitions;
+		this.reserved.clear();
+		this.shared = 0;
+
+		if (this.conf == null)
+			return;
+
+		// in order of name, so every map task agrees
+		final SortedMap<String, Integer> counts = new TreeMap<String, Integer>();
+		for (final Entry<String, String> entry : this.conf)
+			if (entry.getKey().startsWith(SizzlePartitioner.PREFIX))
+				counts.put(entry.getKey().substring(SizzlePartitioner.PREFIX.length()), Integer.valueOf(entry.getValue()));
+
+		int first = 0;
+		for (final Entry<String, Integer> entry : counts.entrySet()) {
+			final int count = entry.getValue().intValue();
+
+			if (count <= 0)
+				continue;
+
+			this.reserved.put(entry.getKey(), new int[] { first, count });
+			first += count;
+		}
+
+		// leave at least one reducer for everyone else
+		if (first >= numPartitions) {
+			SizzlePartitioner.LOG.warn(first + " reducers reserved but only " + numPartitions + " available, reserving none");
+
+			this.reserved.clear();
+			return;
+		}
+
+		this.shared = first;
+	}
+}
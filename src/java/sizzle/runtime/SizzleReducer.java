@@ -9,6 +9,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.log4j.Logger;
 
 import sizzle.aggregators.Table;
@@ -29,13 +30,34 @@ public abstract class SizzleReducer extends Reducer<EmitKey, EmitValue, Text, Nu
 	 */
 	protected static final Logger LOG = Logger.getLogger(SizzleReducer.class);
 
+	/**
+	 * The default estimated size, in bytes, of the state a table keeps in
+	 * memory for a key before it is spilled to disk.
+	 */
+	public static final long DEFAULT_SPILL_BUFFER = 64 * 1024 * 1024;
+
 	/**
 	 * A {@link Map} from {@link String} to {@link Table} indexing instantiated
 	 */
 	protected Map<String, Table> tables;
 
+	/**
+	 * An array of {@link String} containing the Sizzle identifiers of the
+	 * tables, indexed by their ids.
+	 */
+	protected String[] names;
+
+	private Table[] ids;
+
 	private Configuration conf;
 	private boolean robust;
+	private SizzleMetrics metrics;
+	private SizzleErrors errors;
+	private boolean binary;
+	private boolean split;
+	private boolean sorted;
+	private long buffer;
+	private MultipleOutputs<Text, NullWritable> outputs;
 
 	/**
 	 * Construct a SizzleReducer.
@@ -55,31 +77,86 @@ public abstract class SizzleReducer extends Reducer<EmitKey, EmitValue, Text, Nu
 	public void setConf(final Configuration conf) {
 		this.conf = conf;
 		this.robust = conf.getBoolean("sizzle.runtime.robust", false);
+		if (conf.getBoolean("sizzle.runtime.metrics", true))
+			this.metrics = new SizzleMetrics("reduce");
+		else
+			this.metrics = null;
+		if (this.robust)
+			this.errors = new SizzleErrors(conf);
+		this.binary = conf.get("sizzle.runtime.output", "text").equals("sequence");
+		this.split = conf.getBoolean("sizzle.runtime.output.split", false);
+		this.sorted = conf.getBoolean("sizzle.runtime.sort", false);
+		this.buffer = conf.getLong("sizzle.runtime.spill.buffer", SizzleReducer.DEFAULT_SPILL_BUFFER);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void setup(final Context context) throws IOException, InterruptedException {
+		super.setup(context);
+
+		// write each table to its own output
+		if (this.split)
+			this.outputs = new MultipleOutputs<Text, NullWritable>(context);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void cleanup(final Context context) throws IOException, InterruptedException {
+		if (this.outputs != null)
+			this.outputs.close();
+
+		if (this.errors != null)
+			this.errors.close(context);
+
+		if (this.metrics != null) {
+			this.metrics.count(context);
+			this.metrics.write(context);
+		}
+
+		super.cleanup(context);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	protected void reduce(final EmitKey key, final Iterable<EmitValue> values, final Context context) throws IOException, InterruptedException {
 		// get the table named by the emit key
-		final Table t = this.tables.get(key.getName());
+		final Table t = this.getTable(key);
 		// tell it we are not combining
 		t.setCombining(false);
+		// whether its values arrive in sorted order
+		t.setSorted(this.sorted);
+		// and when to spill them to disk
+		t.setBuffer(this.buffer);
+		// and how to write its results
+		t.setBinary(this.binary);
+		// and what to count its work in
+		if (this.metrics != null)
+			t.setMetrics(this.metrics.get(key.getName()));
+		if (this.outputs != null)
+			t.setOutputs(this.outputs, t.getFile() == null ? key.getName() : t.getFile());
 
 		// Counter counter = context.getCounter("Values Emitted",
 		// key.toString());
 		// LOG.fatal("counter for "+ counter.getDisplayName() + " " +
 		// key.toString() + " " + Long.toString(counter.getValue()));
 
-		// initialize the table
-		t.start(key);
-		// set the reducer context
+		// set the reducer context, which the table may be configured from
 		t.setContext(context);
+		// initialize the table, naming it in binary output so that the
+		// results can be read without the program
+		if (this.binary)
+			t.start(new EmitKey(key.getIndex(), key.getName()));
+		else if (this.sorted)
+			// the key is overwritten with the sort value of each value
+			t.start(key.sorted(null));
+		else
+			t.start(key);
 
 		// for each of the values
 		for (final EmitValue value : values)
 			try {
 				// aggregate it
-				t.aggregate(value.getData(), value.getMetadata());
+				t.aggregate(value);
 			} catch (final FinishedException e) {
 				// we are done
 				return;
@@ -91,12 +168,12 @@ public abstract class SizzleReducer extends Reducer<EmitKey, EmitValue, Text, Nu
 				throw e;
 			} catch (final RuntimeException e) {
 				if (this.robust)
-					SizzleReducer.LOG.error(e.getClass().getName() + " caught", e);
+					this.caught(e, context);
 				else
 					throw e;
 			} catch (final Exception e) {
 				if (this.robust)
-					SizzleReducer.LOG.error(e.getClass().getName() + " caught", e);
+					this.caught(e, context);
 				else
 					throw new RuntimeException(e.getClass().getName() + " caught", e);
 			}
@@ -104,4 +181,31 @@ public abstract class SizzleReducer extends Reducer<EmitKey, EmitValue, Text, Nu
 		// finish it!
 		t.finish();
 	}
+
+	private void caught(final Exception e, final Context context) throws IOException {
+		this.errors.caught(e, null, null, context);
+
+		if (this.metrics != null)
+			this.metrics.exception();
+	}
+
+	private Table getTable(final EmitKey key) {
+		final int id = key.getId();
+
+		// keys without an id name their table
+		if (id < 0)
+			return this.tables.get(key.getName());
+
+		if (this.ids == null) {
+			this.ids = new Table[this.names.length];
+
+			for (int i = 0; i < this.names.length; i++)
+				this.ids[i] = this.tables.get(this.names[i]);
+		}
+
+		// ids are not serialized with their names
+		key.setName(this.names[id]);
+
+		return this.ids[id];
+	}
 }
@@ -5,15 +5,45 @@ import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.io.compress.zlib.ZlibFactory;
+import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.NativeCodeLoader;
+import org.apache.log4j.Logger;
 
+import sizzle.io.CombiningInputFormat;
 import sizzle.io.EmitKey;
 import sizzle.io.EmitValue;
 
 public abstract class SizzleRunner {
+	protected static final Logger LOG = Logger.getLogger(SizzleRunner.class);
+
+	/**
+	 * The map output compression used when neither the compiler nor the
+	 * configuration names one.
+	 */
+	public static final String DEFAULT_COMPRESSION = "default";
+
+	/**
+	 * The output format used when neither the compiler nor the configuration
+	 * names one.
+	 */
+	public static final String DEFAULT_OUTPUT = "text";
+
 	/**
 	 * Create a {@link Job} describing the work to be done by this Sizzle job.
 	 * 
@@ -45,16 +75,191 @@ public abstract class SizzleRunner {
 		job.setMapOutputKeyClass(EmitKey.class);
 		job.setMapOutputValueClass(EmitValue.class);
 
-		// TODO: get map output compression working again
+		SizzleRunner.setCompression(job, configuration.get("sizzle.runtime.compression", this.getCompression()));
 
-		// TODO: support protobufs/sequence files/avro here
-		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(NullWritable.class);
+		// write each table to its own output, unless told otherwise
+		job.getConfiguration().setBoolean("sizzle.runtime.output.split", configuration.getBoolean("sizzle.runtime.output.split", true));
+		SizzleRunner.setOutput(job, configuration.get("sizzle.runtime.output", this.getOutput()));
+
+		job.setPartitionerClass(SizzlePartitioner.class);
+
+		// reduce keys that differ only in their sort values together, with
+		// their values in sorted order; keys without sort values are grouped
+		// as they would be anyway, so this holds however sizzle.runtime.sort
+		// is set later
+		job.setGroupingComparatorClass(EmitKey.GroupingComparator.class);
 
 		return job;
 	}
 
-	public abstract SizzleMapper getMapper();
+	/**
+	 * Configure the input format of a {@link Job}. If
+	 * <code>sizzle.runtime.input.combine</code> is set, small input files are
+	 * packed together into splits of up to that many bytes by a
+	 * {@link CombiningInputFormat}, which reads each file with the given
+	 * format. Otherwise each file gets at least one split of its own.
+	 * 
+	 * @param job
+	 *            The {@link Job} to configure
+	 * 
+	 * @param format
+	 *            The {@link InputFormat} class the input files are read with
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void setInput(final Job job, final Class<? extends InputFormat> format) {
+		final Configuration configuration = job.getConfiguration();
+
+		if (configuration.getLong(CombiningInputFormat.SIZE, 0) > 0) {
+			configuration.setClass(CombiningInputFormat.FORMAT, format, InputFormat.class);
+			job.setInputFormatClass(CombiningInputFormat.class);
+		} else {
+			job.setInputFormatClass(format);
+		}
+	}
+
+	/**
+	 * Get the map output compression this program was compiled with. It is
+	 * overridden by <code>sizzle.runtime.compression</code> in the
+	 * configuration.
+	 * 
+	 * @return A {@link String} naming the codec, as accepted by
+	 *         {@link #setCompression(Job, String)}
+	 */
+	protected String getCompression() {
+		return SizzleRunner.DEFAULT_COMPRESSION;
+	}
+
+	/**
+	 * Configure the compression of the map output of a {@link Job}.
+	 * 
+	 * @param job
+	 *            The {@link Job} to configure
+	 * 
+	 * @param compression
+	 *            A {@link String} naming the codec: one of none, default,
+	 *            gzip, bzip2 or snappy, or the name of a
+	 *            {@link CompressionCodec} class
+	 */
+	public static void setCompression(final Job job, final String compression) {
+		final Configuration configuration = job.getConfiguration();
+
+		Class<? extends CompressionCodec> codec;
+		if (compression.equals("none")) {
+			configuration.setBoolean("mapred.compress.map.output", false);
+			return;
+		} else if (compression.equals("default")) {
+			codec = DefaultCodec.class;
+		} else if (compression.equals("gzip")) {
+			// gzip has no compressor for map output without native zlib
+			if (ZlibFactory.isNativeZlibLoaded(configuration)) {
+				codec = GzipCodec.class;
+			} else {
+				SizzleRunner.LOG.warn("native zlib unavailable, using the default codec");
+				codec = DefaultCodec.class;
+			}
+		} else if (compression.equals("bzip2")) {
+			codec = BZip2Codec.class;
+		} else if (compression.equals("snappy")) {
+			// snappy is only usable with the native libraries
+			if (NativeCodeLoader.isNativeCodeLoaded() && SnappyCodec.isNativeSnappyLoaded(configuration)) {
+				codec = SnappyCodec.class;
+			} else {
+				SizzleRunner.LOG.warn("native snappy unavailable, using the default codec");
+				codec = DefaultCodec.class;
+			}
+		} else {
+			try {
+				codec = configuration.getClassByName(compression).asSubclass(CompressionCodec.class);
+			} catch (final ClassNotFoundException e) {
+				throw new RuntimeException("unknown compression " + compression, e);
+			}
+		}
+
+		configuration.setBoolean("mapred.compress.map.output", true);
+		configuration.setClass("mapred.map.output.compression.codec", codec, CompressionCodec.class);
+	}
+
+	/**
+	 * Configure the mapper of a {@link Job}. If
+	 * <code>sizzle.runtime.map.threads</code> is more than one, it is run by a
+	 * {@link MultithreadedMapper} on that many threads, each with its own
+	 * instance of the program.
+	 * 
+	 * @param job
+	 *            The {@link Job} to configure
+	 * 
+	 * @param mapper
+	 *            The {@link AbstractSizzleMapper} class generated for the
+	 *            program
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static void setMapperClass(final Job job, final Class<? extends AbstractSizzleMapper> mapper) {
+		final Configuration configuration = job.getConfiguration();
+
+		final int threads = configuration.getInt("sizzle.runtime.map.threads", 1);
+
+		// the threads of a map-only job would write over each other's outputs
+		if (threads > 1 && job.getNumReduceTasks() == 0 && configuration.getBoolean("sizzle.runtime.output.split", false)) {
+			SizzleRunner.LOG.warn("map-only jobs writing a file per table run on one thread");
+		} else if (threads > 1) {
+			job.setMapperClass(MultithreadedMapper.class);
+			MultithreadedMapper.setMapperClass(job, (Class) mapper);
+			MultithreadedMapper.setNumberOfThreads(job, threads);
+			return;
+		}
+
+		job.setMapperClass(mapper);
+	}
+
+	/**
+	 * Get the output format this program was compiled with. It is overridden
+	 * by <code>sizzle.runtime.output</code> in the configuration.
+	 * 
+	 * @return A {@link String} naming the output format, as accepted by
+	 *         {@link #setOutput(Job, String)}
+	 */
+	protected String getOutput() {
+		return SizzleRunner.DEFAULT_OUTPUT;
+	}
+
+	/**
+	 * Configure the format the results of a {@link Job} are written in.
+	 * 
+	 * @param job
+	 *            The {@link Job} to configure
+	 * 
+	 * @param output
+	 *            A {@link String} naming the output format: text, for lines
+	 *            of text, or sequence, for a {@link SequenceFile} of
+	 *            {@link EmitKey} and typed {@link EmitValue} pairs
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void setOutput(final Job job, final String output) {
+		Class<? extends OutputFormat> format;
+		if (output.equals("text")) {
+			format = TextOutputFormat.class;
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(NullWritable.class);
+		} else if (output.equals("sequence")) {
+			format = SequenceFileOutputFormat.class;
+			job.setOutputKeyClass(EmitKey.class);
+			job.setOutputValueClass(EmitValue.class);
+		} else {
+			throw new RuntimeException("unknown output " + output);
+		}
+
+		// when each table has its own output, don't create empty part files
+		if (job.getConfiguration().getBoolean("sizzle.runtime.output.split", false))
+			LazyOutputFormat.setOutputFormatClass(job, format);
+		else
+			job.setOutputFormatClass(format);
+
+		// the reducers need to know too
+		job.getConfiguration().set("sizzle.runtime.output", output);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public abstract AbstractSizzleMapper getMapper();
 
 	public abstract SizzleCombiner getCombiner();
 
@@ -0,0 +1,349 @@
+package sizzle.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.log4j.Logger;
+
+import sizzle.aggregators.FinishedException;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+/**
+ * Runs a Sizzle program over a stream of lines, such as its standard input,
+ * and writes the contents of its tables as it goes.
+ *
+ * Every line is handed to the program's {@link SizzleMapper} as it arrives,
+ * and what it emits is aggregated in a live {@link Table} for each key. The
+ * results of the live tables are written out every
+ * <code>sizzle.runtime.stream.interval</code> milliseconds, every
+ * <code>sizzle.runtime.stream.records</code> lines, and at the end of the
+ * stream. Set <code>sizzle.runtime.stream.reset</code> to start the tables
+ * afresh after each flush, instead of accumulating over the whole stream.
+ *
+ * When a live table is finished with its key, such as a set that has seen too
+ * many values, the key is dropped as the reducers would drop it, and nothing
+ * more is written for it until the tables are reset.
+ *
+ * @author anthonyu
+ *
+ */
+public class SizzleStreamRunner {
+	private static final Logger LOG = Logger.getLogger(SizzleStreamRunner.class);
+
+	private final SizzleRunner runner;
+	private final Configuration conf;
+
+	private final long interval;
+	private final long records;
+	private final boolean reset;
+
+	// held while the mapper runs, and while the tables are flushed
+	private final ReentrantLock lock;
+	private final Map<EmitKey, Table> live;
+	private final Set<EmitKey> finished;
+
+	private SizzleMapper mapper;
+	@SuppressWarnings("rawtypes")
+	private SizzleMapper.Context output;
+	private boolean robust;
+
+	/**
+	 * Construct a SizzleStreamRunner.
+	 *
+	 * @param runner
+	 *            The {@link SizzleRunner} providing the mapper and tables
+	 *
+	 * @param conf
+	 *            The {@link Configuration} to run the program with
+	 */
+	public SizzleStreamRunner(final SizzleRunner runner, final Configuration conf) {
+		this.runner = runner;
+		this.conf = conf;
+
+		this.interval = conf.getLong("sizzle.runtime.stream.interval", 0);
+		this.records = conf.getLong("sizzle.runtime.stream.records", 0);
+		this.reset = conf.getBoolean("sizzle.runtime.stream.reset", false);
+
+		this.lock = new ReentrantLock();
+		// in key order, as the reducers would write them
+		this.live = new TreeMap<EmitKey, Table>();
+		this.finished = new HashSet<EmitKey>();
+	}
+
+	/**
+	 * Run the program over a stream, until it ends.
+	 *
+	 * @param in
+	 *            The {@link InputStream} to read lines from
+	 *
+	 * @param out
+	 *            The {@link PrintStream} to write the results to
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void run(final InputStream in, final PrintStream out) throws IOException, InterruptedException {
+		// every emitted value comes straight to us
+		this.conf.setBoolean("sizzle.runtime.combining", false);
+		this.conf.setInt("mapred.reduce.tasks", 1);
+		this.robust = this.conf.getBoolean("sizzle.runtime.robust", false);
+
+		final TaskAttemptID attempt = new TaskAttemptID("stream", 0, true, 0, 0);
+		final StatusReporter reporter = new StreamReporter();
+
+		final AbstractSizzleMapper<?, ?> mapper = this.runner.getMapper();
+		if (!(mapper instanceof SizzleMapper))
+			throw new RuntimeException("only programs with input of type string can be streamed");
+
+		this.mapper = (SizzleMapper) mapper;
+		this.mapper.setConf(this.conf);
+
+		final LineReader reader = new LineReader(new BufferedReader(new InputStreamReader(in)));
+		final SizzleMapper.Context context = this.mapper.new Context(this.conf, attempt, reader, new AggregatingWriter(), null, reporter, null);
+		this.output = this.mapper.new Context(this.conf, attempt, null, (RecordWriter) new PrintingWriter(out), null, reporter, null);
+
+		ScheduledExecutorService timer = null;
+		if (this.interval > 0) {
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread t = new Thread(r, "sizzle stream flusher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+			timer.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						SizzleStreamRunner.this.flush();
+					} catch (final Exception e) {
+						SizzleStreamRunner.LOG.error(e.getClass().getName() + " caught", e);
+					}
+				}
+			}, this.interval, this.interval, TimeUnit.MILLISECONDS);
+		}
+
+		this.lock.lock();
+		try {
+			this.mapper.run(context);
+		} finally {
+			this.lock.unlock();
+
+			if (timer != null)
+				timer.shutdownNow();
+		}
+
+		this.flush();
+		out.flush();
+	}
+
+	/**
+	 * Write out the results of the live tables, and forget them if they are
+	 * to be reset.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void flush() throws IOException, InterruptedException {
+		this.lock.lock();
+		try {
+			for (final Table t : this.live.values())
+				t.finish();
+
+			if (this.reset) {
+				this.live.clear();
+				this.finished.clear();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void aggregate(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+		// like the mapper, drop anything emitted to a key that is finished
+		if (this.finished.contains(key))
+			return;
+
+		Table t = this.live.get(key);
+		if (t == null) {
+			t = this.mapper.newTable(key.getName());
+			t.setContext(this.output);
+			t.setCombining(false);
+			t.start(key);
+
+			this.live.put(key, t);
+		}
+
+		try {
+			t.aggregate(value);
+		} catch (final FinishedException e) {
+			// so it is never flushed
+			this.live.remove(key);
+			this.finished.add(key);
+		} catch (final IOException e) {
+			throw e;
+		} catch (final InterruptedException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			if (this.robust)
+				SizzleStreamRunner.LOG.error(e.getClass().getName() + " caught", e);
+			else
+				throw e;
+		} catch (final Exception e) {
+			if (this.robust)
+				SizzleStreamRunner.LOG.error(e.getClass().getName() + " caught", e);
+			else
+				throw new RuntimeException(e.getClass().getName() + " caught", e);
+		}
+	}
+
+	// reads the stream a line at a time, letting the tables be flushed while
+	// it waits for the next
+	private class LineReader extends RecordReader<LongWritable, Text> {
+		private final BufferedReader in;
+		private final LongWritable key;
+		private final Text value;
+		private long count;
+
+		public LineReader(final BufferedReader in) {
+			this.in = in;
+			this.key = new LongWritable();
+			this.value = new Text();
+		}
+
+		@Override
+		public void initialize(final InputSplit split, final TaskAttemptContext context) throws IOException, InterruptedException {
+			// nothing to initialize
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			final SizzleStreamRunner outer = SizzleStreamRunner.this;
+
+			if (outer.records > 0 && this.count > 0 && this.count % outer.records == 0)
+				outer.flush();
+
+			String line;
+			outer.lock.unlock();
+			try {
+				line = this.in.readLine();
+			} finally {
+				outer.lock.lock();
+			}
+
+			if (line == null)
+				return false;
+
+			this.key.set(this.count++);
+			this.value.set(line);
+
+			return true;
+		}
+
+		@Override
+		public LongWritable getCurrentKey() throws IOException, InterruptedException {
+			return this.key;
+		}
+
+		@Override
+		public Text getCurrentValue() throws IOException, InterruptedException {
+			return this.value;
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	private class AggregatingWriter extends RecordWriter<EmitKey, EmitValue> {
+		@Override
+		public void write(final EmitKey key, final EmitValue value) throws IOException, InterruptedException {
+			SizzleStreamRunner.this.aggregate(key, value);
+		}
+
+		@Override
+		public void close(final TaskAttemptContext context) throws IOException, InterruptedException {
+			// the tables are flushed by the runner
+		}
+	}
+
+	private static class PrintingWriter extends RecordWriter<Object, Object> {
+		private final PrintStream out;
+
+		public PrintingWriter(final PrintStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final Object key, final Object value) throws IOException, InterruptedException {
+			if (value == null || value instanceof NullWritable)
+				this.out.println(key);
+			else
+				this.out.println(key + "\t" + value);
+		}
+
+		@Override
+		public void close(final TaskAttemptContext context) throws IOException, InterruptedException {
+			this.out.flush();
+		}
+	}
+
+	private static class StreamReporter extends StatusReporter {
+		private final Counters counters = new Counters();
+
+		@Override
+		public Counter getCounter(final Enum<?> name) {
+			return this.counters.findCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(final String group, final String name) {
+			return this.counters.findCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+			// nobody is watching
+		}
+
+		@Override
+		public void setStatus(final String status) {
+			// nobody is watching
+		}
+	}
+}
@@ -15,6 +15,7 @@ import java.util.Map;
 public class SizzleTuple extends SizzleType {
 	private final List<SizzleType> members;
 	private final Map<String, Integer> names;
+	private final String proto;
 
 	/**
 	 * Construct a SizzleTuple.
@@ -30,8 +31,27 @@ public class SizzleTuple extends SizzleType {
 	}
 
 	public SizzleTuple(final List<SizzleType> members, final Map<String, Integer> names) {
+		this(members, names, null);
+	}
+
+	/**
+	 * Construct a SizzleTuple for a protocol buffer message.
+	 * 
+	 * @param members
+	 *            A {@link List} of {@link SizzleType} containing the types of
+	 *            the members of this tuple
+	 * 
+	 * @param names
+	 *            A {@link Map} from the names of the members to their indices
+	 * 
+	 * @param proto
+	 *            A {@link String} containing the name of the Java class of the
+	 *            message
+	 */
+	public SizzleTuple(final List<SizzleType> members, final Map<String, Integer> names, final String proto) {
 		this.members = members;
 		this.names = names;
+		this.proto = proto;
 	}
 
 	/** {@inheritDoc} */
@@ -82,6 +102,43 @@ public class SizzleTuple extends SizzleType {
 		return this.members.get(this.names.get(member));
 	}
 
+	/**
+	 * Determine whether this tuple has a member of a given name.
+	 * 
+	 * @param member
+	 *            A {@link String} containing the name of the member
+	 * 
+	 * @return True if it does, false otherwise
+	 * 
+	 */
+	public boolean hasMember(final String member) {
+		return this.names.containsKey(member);
+	}
+
+	/**
+	 * Return the index of the member identified by a given name.
+	 * 
+	 * @param member
+	 *            A {@link String} containing the name of the member
+	 * 
+	 * @return An int containing the index of the member
+	 * 
+	 */
+	public int getIndex(final String member) {
+		return this.names.get(member).intValue();
+	}
+
+	/**
+	 * Return the name of the Java class of the protocol buffer message this
+	 * tuple was imported from.
+	 * 
+	 * @return A {@link String} containing the name of the class, or null if
+	 *         this tuple is not a message
+	 */
+	public String getProto() {
+		return this.proto;
+	}
+
 	public List<SizzleType> getTypes() {
 		return this.members;
 	}
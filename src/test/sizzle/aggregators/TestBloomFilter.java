@@ -0,0 +1,81 @@
+package sizzle.aggregators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBloomFilter {
+	@Test
+	public void testBloomFilterAdd() {
+		final BloomFilter f = new BloomFilter(1024, 5, 100);
+
+		Assert.assertTrue("first add is wrong", f.add("test"));
+		Assert.assertFalse("second add is wrong", f.add("test"));
+	}
+
+	@Test
+	public void testBloomFilterClear() {
+		final BloomFilter f = new BloomFilter(1024, 5, 100);
+
+		for (int i = 0; i < 10; i++)
+			f.add("test" + i);
+
+		f.clear();
+
+		// everything is forgotten
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue("add " + i + " is wrong", f.add("test" + i));
+	}
+
+	@Test
+	public void testBloomFilterClearFull() {
+		final BloomFilter f = new BloomFilter(1024, 5, 100);
+
+		// past the words it remembers, and into more rows
+		for (int i = 0; i < 1000; i++)
+			f.add("test" + i);
+
+		f.clear();
+
+		int positives = 0;
+		for (int i = 1000; i < 1100; i++)
+			if (!f.add("test" + i))
+				positives++;
+
+		Assert.assertTrue("filter is not empty", positives < 5);
+	}
+
+	@Test
+	public void testBloomFilterGrows() {
+		// sized for 0.5% false positives at 1000 strings a row
+		final BloomFilter f = new BloomFilter(11748, 5, 1000);
+
+		for (int i = 0; i < 10000; i++)
+			f.add("test" + i);
+
+		// nothing added is missed
+		for (int i = 0; i < 10000; i++)
+			Assert.assertFalse("add " + i + " is wrong", f.add("test" + i));
+
+		// and few of the rest are mistaken for it, however many were added
+		int positives = 0;
+		for (int i = 10000; i < 20000; i++)
+			if (!f.add("test" + i))
+				positives++;
+
+		Assert.assertTrue("too many false positives: " + positives, positives < 10000 * 10 * 0.005 * 2);
+	}
+
+	@Test
+	public void testBloomFilterSize() {
+		final BloomFilter f = new BloomFilter(1024, 5, 100);
+
+		// sixteen words, and one to remember
+		Assert.assertEquals(16 * 8 + 4, f.size());
+
+		for (int i = 0; i < 1000; i++)
+			f.add("test" + i);
+
+		// and a row like it for every hundred strings
+		Assert.assertEquals(10 * (16 * 8 + 4), f.size());
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.io.NullWritable;
@@ -35,13 +36,17 @@ public class TestFloatHistogramAggregator {
 		reduceDriver.setInput(new EmitKey("test"), values);
 		final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
 
-		Assert.assertEquals("size is wrong", 575, output.size());
+		// the combiner passes on the counts of the buckets
+		Assert.assertEquals("size is wrong", 1, output.size());
+		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(0).getFirst());
+		Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
 
-		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(14).getFirst());
-		Assert.assertEquals("outputs are wrong", new EmitValue("-292.0", 1), output.get(14).getSecond());
-
-		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(256).getFirst());
-		Assert.assertEquals("outputs are wrong", new EmitValue("-32.0", 42), output.get(256).getSecond());
+		// which the reducer adds up
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver2 = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new FloatHistogramSizzleReducer());
+		reduceDriver2.setInput(new EmitKey("test"), Arrays.asList(output.get(0).getSecond(), output.get(0).getSecond()));
+		reduceDriver2.addOutput(new Text("test[] = [24, 422, 2568, 6888, 6910, 2792, 368, 28]"), NullWritable.get());
+		reduceDriver2.runTest();
 	}
 
 	@Test
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.io.NullWritable;
@@ -35,13 +36,17 @@ public class TestIntHistogramAggregator {
 		reduceDriver.setInput(new EmitKey("test"), values);
 		final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
 
-		Assert.assertEquals("size is wrong", 575, output.size());
+		// the combiner passes on the counts of the buckets
+		Assert.assertEquals("size is wrong", 1, output.size());
+		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(0).getFirst());
+		Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
 
-		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(14).getFirst());
-		Assert.assertEquals("outputs are wrong", new EmitValue("-292", 1), output.get(14).getSecond());
-
-		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(256).getFirst());
-		Assert.assertEquals("outputs are wrong", new EmitValue("-32", 42), output.get(256).getSecond());
+		// which the reducer adds up
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver2 = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new IntHistogramSizzleReducer());
+		reduceDriver2.setInput(new EmitKey("test"), Arrays.asList(output.get(0).getSecond(), output.get(0).getSecond()));
+		reduceDriver2.addOutput(new Text("test[] = [24, 422, 2568, 6888, 6910, 2792, 368, 28]"), NullWritable.get());
+		reduceDriver2.runTest();
 	}
 
 	@Test
@@ -63,8 +68,27 @@ public class TestIntHistogramAggregator {
 		reduceDriver.addOutput(new Text("test[] = [12, 211, 1284, 3444, 3455, 1396, 184, 14]"), NullWritable.get());
 		reduceDriver.runTest();
 	}
+
+	@Test
+	public void testIntHistogramAggregatorLog() {
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue(0));
+		for (int i = 1; i < 10; i++)
+			values.add(new EmitValue(1 << i, i + 1));
+		// out of range
+		values.add(new EmitValue(-1));
+		values.add(new EmitValue(2000));
+
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new IntHistogramSizzleReducer(0, 1023, 10));
+		reduceDriver.getConfiguration().set("sizzle.runtime.histogram.scale", "log");
+		reduceDriver.setInput(new EmitKey("test"), values);
+		reduceDriver.addOutput(new Text("test[] = [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]"), NullWritable.get());
+		reduceDriver.runTest();
+	}
 }
 
+
 class IntHistogramSizzleCombiner extends sizzle.runtime.SizzleCombiner {
 	public IntHistogramSizzleCombiner() {
 		super();
@@ -75,8 +99,12 @@ class IntHistogramSizzleCombiner extends sizzle.runtime.SizzleCombiner {
 
 class IntHistogramSizzleReducer extends sizzle.runtime.SizzleReducer {
 	public IntHistogramSizzleReducer() {
+		this(-400, 400, 8);
+	}
+
+	public IntHistogramSizzleReducer(final long min, final long max, final long buckets) {
 		super();
 
-		this.tables.put("test", new Table(new sizzle.aggregators.IntHistogramAggregator(-400, 400, 8)));
+		this.tables.put("test", new Table(new sizzle.aggregators.IntHistogramAggregator(min, max, buckets)));
 	}
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
@@ -42,6 +43,10 @@ public class TestIntQuantileAggregator {
 
 		Assert.assertEquals("outputs are wrong", new EmitKey("test"), output.get(256).getFirst());
 		Assert.assertEquals("outputs are wrong", new EmitValue("-32", 42), output.get(256).getSecond());
+
+		// passed on as numbers, not strings to be parsed again
+		Assert.assertEquals("type is wrong", EmitValue.INT, output.get(256).getSecond().getType(0));
+		Assert.assertTrue("weight is wrong", output.get(256).getSecond().isWeighted());
 	}
 
 	@Test
@@ -65,6 +70,36 @@ public class TestIntQuantileAggregator {
 		reduceDriver.runTest();
 	}
 
+	@Test
+	public void testQuantileAggregatorSorted() {
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		// as two mappers announced them
+		values.add(EmitValue.count(4));
+		values.add(EmitValue.count(6));
+		values.add(new EmitValue(3));
+		values.add(new EmitValue(6));
+		values.add(new EmitValue(7));
+		values.add(new EmitValue(8, 2));
+		values.add(new EmitValue(10));
+		values.add(new EmitValue(13));
+		values.add(new EmitValue(15));
+		values.add(new EmitValue(16));
+		values.add(new EmitValue(20));
+
+		final IntQuartileSizzleReducer reducer = new IntQuartileSizzleReducer();
+		final Configuration conf = new Configuration();
+		conf.setBoolean("sizzle.runtime.sort", true);
+		reducer.setConf(conf);
+
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(reducer);
+		reduceDriver.setInput(new EmitKey("test"), values);
+		reduceDriver.addOutput(new Text("test[] = [7, 8, 15, 20]"), NullWritable.get());
+		reduceDriver.runTest();
+
+		// without keeping any of them
+		Assert.assertFalse(((QuantileAggregator) reducer.getTable("test").getAggregator(0)).getTuples().iterator().hasNext());
+	}
+
 	@Test
 	public void testQuantileAggregatorBig() throws IOException {
 		final List<EmitValue> values = new ArrayList<EmitValue>();
@@ -84,8 +119,69 @@ public class TestIntQuantileAggregator {
 		reduceDriver.addOutput(new Text("test[] = [-66, 1, 69, 356]"), NullWritable.get());
 		reduceDriver.runTest();
 	}
+
+	@Test
+	public void testQuantileAggregatorSketch() throws IOException {
+		final List<Long> numbers = new ArrayList<Long>();
+
+		final BufferedReader r = new BufferedReader(new FileReader("test/normals"));
+		try {
+			String line = null;
+			while ((line = r.readLine()) != null)
+				numbers.add(Long.valueOf(line));
+		} finally {
+			r.close();
+		}
+
+		// summarized by two combiners
+		final List<EmitValue> sketches = new ArrayList<EmitValue>();
+		for (int h = 0; h < 2; h++) {
+			final List<EmitValue> values = new ArrayList<EmitValue>();
+			for (final Long n : numbers.subList(h * numbers.size() / 2, (h + 1) * numbers.size() / 2))
+				values.add(new EmitValue(n.longValue()));
+
+			final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> combineDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
+					new IntQuartileSizzleCombiner());
+			combineDriver.getConfiguration().setInt("sizzle.runtime.quantile.sketch", 200);
+			combineDriver.setInput(new EmitKey("test"), values);
+			final List<Pair<EmitKey, EmitValue>> output = combineDriver.run();
+
+			Assert.assertEquals("size is wrong", 1, output.size());
+			Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
+			sketches.add(output.get(0).getSecond());
+		}
+
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new IntQuartileSizzleReducer());
+		reduceDriver.getConfiguration().setInt("sizzle.runtime.quantile.sketch", 200);
+		reduceDriver.setInput(new EmitKey("test"), sketches);
+		final List<Pair<Text, NullWritable>> output = reduceDriver.run();
+
+		Assert.assertEquals("size is wrong", 1, output.size());
+		final String result = output.get(0).getFirst().toString();
+		final String[] quartiles = result.substring("test[] = [".length(), result.length() - 1).split(", ");
+		Assert.assertEquals("size is wrong", 4, quartiles.length);
+
+		// each quartile is within the rank error of where it should be
+		for (int i = 0; i < quartiles.length; i++) {
+			final long q = Long.parseLong(quartiles[i]);
+
+			long below = 0;
+			long equal = 0;
+			for (final Long n : numbers)
+				if (n.longValue() < q)
+					below++;
+				else if (n.longValue() == q)
+					equal++;
+
+			final long rank = numbers.size() * (i + 1) / quartiles.length;
+			final long off = rank < below ? below - rank : rank > below + equal ? rank - below - equal : 0;
+			Assert.assertTrue("quartile " + i + " is wrong: " + result, off <= numbers.size() * 2 / 100);
+		}
+	}
 }
 
+
 class IntQuartileSizzleCombiner extends sizzle.runtime.SizzleCombiner {
 	public IntQuartileSizzleCombiner() {
 		super();
@@ -100,4 +196,8 @@ class IntQuartileSizzleReducer extends sizzle.runtime.SizzleReducer {
 
 		this.tables.put("test", new Table(new sizzle.aggregators.IntQuantileAggregator(5)));
 	}
+
+	Table getTable(final String name) {
+		return this.tables.get(name);
+	}
 }
\ No newline at end of file
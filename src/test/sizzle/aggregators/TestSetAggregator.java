@@ -82,6 +82,8 @@ public class TestSetAggregator {
 		final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> reduceDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
 				new SetSizzleCombiner());
 		reduceDriver.setInput(new EmitKey("test"), values);
+		// the reducer is told the set is finished
+		reduceDriver.addOutput(new EmitKey("test"), EmitValue.finished());
 		reduceDriver.runTest();
 	}
 
@@ -102,4 +102,55 @@ public class TestSortedCountingSet {
 
 		Assert.assertEquals("set is wrong", expected, s.toList());
 	}
+
+	@Test
+	public void testSortedCountingSetSpilled() {
+		// small enough to spill every few values
+		final SortedCountingSet<String> s = new SortedCountingSet<String>(512);
+		final List<String> expected = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < 1000; i++) {
+				final String value = "value" + i * 7919 % 100;
+
+				s.add(value);
+				expected.add(value);
+			}
+
+			Assert.assertTrue("set was not spilled", s.isSpilled());
+
+			Collections.sort(expected);
+
+			Assert.assertEquals("set is wrong", expected, s.toList());
+			Assert.assertEquals("size is wrong", 100, s.size());
+			// and again, from the same runs
+			Assert.assertEquals("set is wrong", expected, s.toList());
+		} finally {
+			s.close();
+		}
+	}
+
+	@Test
+	public void testSortedCountingSetSpilledNumbers() {
+		final SortedCountingSet<Long> s = new SortedCountingSet<Long>(512);
+		final List<Long> expected = new ArrayList<Long>();
+
+		try {
+			for (long i = 0; i < 1000; i++) {
+				final Long value = Long.valueOf(i * 7919 % 201 - 100);
+
+				s.add(value, 2);
+				expected.add(value);
+				expected.add(value);
+			}
+
+			Assert.assertTrue("set was not spilled", s.isSpilled());
+
+			Collections.sort(expected);
+
+			Assert.assertEquals("set is wrong", expected, s.toList());
+		} finally {
+			s.close();
+		}
+	}
 }
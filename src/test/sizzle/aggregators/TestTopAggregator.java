@@ -1,11 +1,15 @@
 package sizzle.aggregators;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Assert;
 import org.junit.Test;
 
 import sizzle.io.EmitKey;
@@ -13,7 +17,7 @@ import sizzle.io.EmitValue;
 
 public class TestTopAggregator {
 	@Test
-	public void testTopAggregatorTopTenCombine() {
+	public void testTopAggregatorTopTenCombine() throws IOException {
 		final List<EmitValue> values = new ArrayList<EmitValue>();
 		values.add(new EmitValue("two"));
 		values.add(new EmitValue("twelve"));
@@ -124,21 +128,65 @@ public class TestTopAggregator {
 		final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> reduceDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
 				new TopSizzleCombiner());
 		reduceDriver.setInput(new EmitKey("test"), values);
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("ten", 10));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("five", 5));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("one", 1));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("eleven", 11));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("nine", 9));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("eight", 8));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("six", 6));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("two", 2));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("seven", 7));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("three", 3));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("twelve", 12));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("fourteen", 14));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("four", 4));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("thirteen", 13));
-		reduceDriver.runTest();
+		final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
+
+		// the combiner passes on a single summary
+		Assert.assertEquals("size is wrong", 1, output.size());
+		Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
+
+		// which the reducer counts exactly, with room for every value
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver10 = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new TopSizzleReducerTen());
+		reduceDriver10.setInput(new EmitKey("test"), Arrays.asList(output.get(0).getSecond()));
+		reduceDriver10.addOutput(new Text("test[] = fourteen, 14, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = thirteen, 13, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = twelve, 12, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = eleven, 11, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = ten, 10, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = nine, 9, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = eight, 8, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = seven, 7, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = six, 6, 0"), NullWritable.get());
+		reduceDriver10.addOutput(new Text("test[] = five, 5, 0"), NullWritable.get());
+		reduceDriver10.runTest();
+	}
+
+	@Test
+	public void testTopAggregatorBounded() throws IOException {
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+
+		// one heavy value among many light ones, in two summaries
+		final List<EmitValue> summaries = new ArrayList<EmitValue>();
+		for (int j = 0; j < 2; j++) {
+			final List<EmitValue> part = new ArrayList<EmitValue>();
+			for (int i = 0; i < 100; i++) {
+				part.add(new EmitValue("heavy"));
+				part.add(new EmitValue("light" + j + "-" + i));
+			}
+			values.addAll(part);
+
+			final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> combineDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
+					new TopSizzleCombiner());
+			combineDriver.getConfiguration().setInt("sizzle.runtime.top.capacity", 1);
+			combineDriver.setInput(new EmitKey("test"), part);
+			summaries.add(combineDriver.run().get(0).getSecond());
+		}
+
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new TopSizzleReducerOne());
+		reduceDriver.getConfiguration().setInt("sizzle.runtime.top.capacity", 10);
+		reduceDriver.setInput(new EmitKey("test"), summaries);
+		final List<Pair<Text, NullWritable>> output = reduceDriver.run();
+
+		// the heavy value is found, its count over by no more than its error
+		Assert.assertEquals("size is wrong", 1, output.size());
+		final String[] result = output.get(0).getFirst().toString().substring("test[] = ".length()).split(", ");
+		Assert.assertEquals("value is wrong", "heavy", result[0]);
+		final long count = Long.parseLong(result[1]);
+		final long error = Long.parseLong(result[2]);
+		Assert.assertTrue("count is wrong", count >= 200 && count - error <= 200);
+		// and the error is within the bound of the summaries
+		Assert.assertTrue("error is wrong", error <= values.size() / 10);
 	}
 
 	@Test
@@ -1,11 +1,15 @@
 package sizzle.aggregators;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Assert;
 import org.junit.Test;
 
 import sizzle.io.EmitKey;
@@ -13,7 +17,7 @@ import sizzle.io.EmitValue;
 
 public class TestUniqueAggregator {
 	@Test
-	public void testUniqueAggregatorCombineDistinct() {
+	public void testUniqueAggregatorCombineDistinct() throws IOException {
 		final List<EmitValue> values = new ArrayList<EmitValue>();
 		values.add(new EmitValue("one"));
 		values.add(new EmitValue("two"));
@@ -23,15 +27,22 @@ public class TestUniqueAggregator {
 		final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> reduceDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
 				new UniqueSizzleCombiner());
 		reduceDriver.setInput(new EmitKey("test"), values);
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("one"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("two"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("three"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("four"));
-		reduceDriver.runTest();
+		final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
+
+		// the combiner passes on a single summary
+		Assert.assertEquals("size is wrong", 1, output.size());
+		Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
+
+		// which the reducer counts
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver2 = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new UniqueSizzleReducer());
+		reduceDriver2.setInput(new EmitKey("test"), Arrays.asList(output.get(0).getSecond()));
+		reduceDriver2.addOutput(new Text("test[] = 4"), NullWritable.get());
+		reduceDriver2.runTest();
 	}
 
 	@Test
-	public void testUniqueAggregatorCombineIndistinct() {
+	public void testUniqueAggregatorCombineIndistinct() throws IOException {
 		final List<EmitValue> values = new ArrayList<EmitValue>();
 		values.add(new EmitValue("one"));
 		values.add(new EmitValue("one"));
@@ -53,11 +64,18 @@ public class TestUniqueAggregator {
 		final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> reduceDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
 				new UniqueSizzleCombiner());
 		reduceDriver.setInput(new EmitKey("test"), values);
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("one"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("two"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("three"));
-		reduceDriver.addOutput(new EmitKey("test"), new EmitValue("four"));
-		reduceDriver.runTest();
+		final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
+
+		// the combiner passes on a single summary
+		Assert.assertEquals("size is wrong", 1, output.size());
+		Assert.assertEquals("type is wrong", EmitValue.SKETCH, output.get(0).getSecond().getType(0));
+
+		// which the reducer counts
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver2 = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new UniqueSizzleReducer());
+		reduceDriver2.setInput(new EmitKey("test"), Arrays.asList(output.get(0).getSecond()));
+		reduceDriver2.addOutput(new Text("test[] = 4"), NullWritable.get());
+		reduceDriver2.runTest();
 	}
 
 	@Test
@@ -101,8 +119,45 @@ public class TestUniqueAggregator {
 		reduceDriver.addOutput(new Text("test[] = 4"), NullWritable.get());
 		reduceDriver.runTest();
 	}
+
+	@Test
+	public void testUniqueAggregatorBig() throws IOException {
+		// many values, some of them seen by both of two combiners
+		final List<EmitValue> sketches = new ArrayList<EmitValue>();
+		for (int j = 0; j < 2; j++) {
+			final List<EmitValue> values = new ArrayList<EmitValue>();
+			for (int i = j * 50000; i < j * 50000 + 75000; i++)
+				values.add(new EmitValue("value" + i));
+
+			final ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue> reduceDriver = new ReduceDriver<EmitKey, EmitValue, EmitKey, EmitValue>(
+					new UniqueSizzleCombiner());
+			reduceDriver.setInput(new EmitKey("test"), values);
+			final List<Pair<EmitKey, EmitValue>> output = reduceDriver.run();
+
+			// and each summary is a fraction of the size of its values
+			Assert.assertTrue("sketch is too big", output.get(0).getSecond().getBytes(0).length <= (1 << 14) + 8);
+			sketches.add(output.get(0).getSecond());
+		}
+
+		final ReduceDriver<EmitKey, EmitValue, Text, NullWritable> reduceDriver = new ReduceDriver<EmitKey, EmitValue, Text, NullWritable>(
+				new UniqueSizzleReducer());
+		reduceDriver.setInput(new EmitKey("test"), sketches);
+		final List<Pair<Text, NullWritable>> output = reduceDriver.run();
+
+		// within four standard errors of the 125000 distinct values
+		final long estimate = Long.parseLong(output.get(0).getFirst().toString().substring("test[] = ".length()));
+		Assert.assertTrue("estimate is wrong: " + estimate, Math.abs(estimate - 125000) < 125000 * 4 * 0.0081);
+	}
+
+	@Test
+	public void testUniqueAggregatorFootprint() {
+		// the registers, held by the mapper for each key however few values
+		Assert.assertEquals(1 << 14, new Table(new UniqueAggregator(10000)).getFootprint());
+		Assert.assertEquals(1 << 16, new Table(new UniqueAggregator(1000000)).getFootprint());
+	}
 }
 
+
 class UniqueSizzleCombiner extends sizzle.runtime.SizzleCombiner {
 	public UniqueSizzleCombiner() {
 		super();
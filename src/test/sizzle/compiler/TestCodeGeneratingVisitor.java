@@ -18,6 +18,7 @@ import org.antlr.stringtemplate.PathGroupLoader;
 import org.antlr.stringtemplate.StringTemplateGroup;
 import org.antlr.stringtemplate.StringTemplateGroupLoader;
 import org.antlr.tool.ErrorManager;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -26,12 +27,22 @@ import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Label;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Type;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+
 import sizzle.io.EmitKey;
 import sizzle.io.EmitValue;
 import sizzle.parser.ParseException;
 import sizzle.parser.SizzleParser;
 import sizzle.runtime.SizzleRunner;
 import sizzle.types.SizzleBytes;
+import sizzle.types.SizzleDocument.Document;
 
 @SuppressWarnings("unused")
 public class TestCodeGeneratingVisitor {
@@ -413,6 +424,113 @@ public class TestCodeGeneratingVisitor {
 		mapReduceDriver.runTest();
 	}
 
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testCodeGeneratingVisitorBytesInput() throws IOException, ParseException, CharSequenceCompilerException, InstantiationException,
+			IllegalAccessException {
+		final String source = "out: table collection of string;\nlengths: table sum of int;\nemit out <- string(input, \"UTF-8\");\nemit lengths <- len(input);\n";
+
+		final CodeGeneratingVisitor codeGenerator = new CodeGeneratingVisitor("BytesInput", TestCodeGeneratingVisitor.stg);
+		SymbolTable st;
+		try {
+			st = new SymbolTable(new SizzleBytes());
+		} catch (final IOException e) {
+			throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
+		}
+
+		SizzleParser.ReInit(new StringReader(source));
+		TestCodeGeneratingVisitor.typeChecker.visit(SizzleParser.Start(), st);
+		SizzleParser.ReInit(new StringReader(source));
+		final String src = codeGenerator.visit(SizzleParser.Start(), st);
+
+		SizzleRunner sizzleRunner = null;
+		try {
+			sizzleRunner = TestCodeGeneratingVisitor.compiler.compile("sizzle.BytesInput", src, null, new Class<?>[] { SizzleRunner.class }).newInstance();
+		} catch (final CharSequenceCompilerException e) {
+			for (final Diagnostic<? extends JavaFileObject> d : e.getDiagnostics().getDiagnostics())
+				System.err.println(d.toString());
+			throw e;
+		}
+
+		// the backing array of a record is usually longer than the record
+		final BytesWritable record = new BytesWritable("hello".getBytes());
+		record.setSize(2);
+
+		final MapReduceDriver mapReduceDriver = new MapReduceDriver();
+		mapReduceDriver.setMapper(sizzleRunner.getMapper());
+		mapReduceDriver.setReducer(sizzleRunner.getReducer());
+		mapReduceDriver.addInput(NullWritable.get(), record);
+		mapReduceDriver.addInput(NullWritable.get(), new BytesWritable("abc".getBytes()));
+		mapReduceDriver.addOutput(new Text("lengths[] = 5"), NullWritable.get());
+		mapReduceDriver.addOutput(new Text("out[] = he"), NullWritable.get());
+		mapReduceDriver.addOutput(new Text("out[] = abc"), NullWritable.get());
+		mapReduceDriver.runTest();
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testCodeGeneratingVisitorProtoInput() throws IOException, ParseException, CharSequenceCompilerException, InstantiationException,
+			IllegalAccessException {
+		final String source = "proto \"sizzle_document.proto\"\nurls: table collection of url: string;\ndoc: Document = input;\nemit urls <- doc.url;\n";
+
+		final CodeGeneratingVisitor codeGenerator = new CodeGeneratingVisitor("ProtoInput", TestCodeGeneratingVisitor.stg);
+		SymbolTable st;
+		try {
+			st = new SymbolTable(new SizzleBytes());
+		} catch (final IOException e) {
+			throw new RuntimeException(e.getClass().getSimpleName() + " caught", e);
+		}
+
+		SizzleParser.ReInit(new StringReader(source));
+		TestCodeGeneratingVisitor.typeChecker.visit(SizzleParser.Start(), st);
+		SizzleParser.ReInit(new StringReader(source));
+		final String src = codeGenerator.visit(SizzleParser.Start(), st);
+
+		SizzleRunner sizzleRunner = null;
+		try {
+			sizzleRunner = TestCodeGeneratingVisitor.compiler.compile("sizzle.ProtoInput", src, null, new Class<?>[] { SizzleRunner.class }).newInstance();
+		} catch (final CharSequenceCompilerException e) {
+			for (final Diagnostic<? extends JavaFileObject> d : e.getDiagnostics().getDiagnostics())
+				System.err.println(d.toString());
+			throw e;
+		}
+
+		final MapReduceDriver mapReduceDriver = new MapReduceDriver();
+		mapReduceDriver.setMapper(sizzleRunner.getMapper());
+		mapReduceDriver.setReducer(sizzleRunner.getReducer());
+		mapReduceDriver.addInput(NullWritable.get(), new BytesWritable(Document.newBuilder().setUrl("http://a/").setPagerank(1).build().toByteArray()));
+		mapReduceDriver.addInput(NullWritable.get(), new BytesWritable(Document.newBuilder().setUrl("http://b/").setPagerank(2).build().toByteArray()));
+		mapReduceDriver.addOutput(new Text("urls[] = http://a/"), NullWritable.get());
+		mapReduceDriver.addOutput(new Text("urls[] = http://b/"), NullWritable.get());
+		mapReduceDriver.runTest();
+	}
+
+	// a message with a field of each kind the decoder cannot fill in
+	private static Descriptor links() throws DescriptorValidationException {
+		final DescriptorProto message = DescriptorProto.newBuilder().setName("Links")
+				.addField(FieldDescriptorProto.newBuilder().setName("url").setNumber(1).setLabel(Label.LABEL_REQUIRED).setType(Type.TYPE_STRING))
+				.addField(FieldDescriptorProto.newBuilder().setName("targets").setNumber(2).setLabel(Label.LABEL_REPEATED).setType(Type.TYPE_STRING))
+				.addField(FieldDescriptorProto.newBuilder().setName("parent").setNumber(3).setLabel(Label.LABEL_OPTIONAL).setTypeName("Links")).build();
+
+		return FileDescriptor.buildFrom(FileDescriptorProto.newBuilder().setName("links.proto").addMessageType(message).build(), new FileDescriptor[0])
+				.findMessageTypeByName("Links");
+	}
+
+	@Test
+	public void testCodeGeneratingVisitorProtoSelectScalar() throws DescriptorValidationException {
+		CodeGeneratingVisitor.checkSelectable(TestCodeGeneratingVisitor.links(), "url");
+	}
+
+	@Test(expected = TypeException.class)
+	public void testCodeGeneratingVisitorProtoSelectRepeated() throws DescriptorValidationException {
+		CodeGeneratingVisitor.checkSelectable(TestCodeGeneratingVisitor.links(), "targets");
+	}
+
+	@Test(expected = TypeException.class)
+	public void testCodeGeneratingVisitorProtoSelectMessage() throws DescriptorValidationException {
+		CodeGeneratingVisitor.checkSelectable(TestCodeGeneratingVisitor.links(), "parent");
+	}
+
 	@Test
 	public void testCodeGeneratingVisitorValueQuartiles() throws IOException, ParseException, ClassCastException, InstantiationException,
 			IllegalAccessException, CharSequenceCompilerException, IOException {
@@ -0,0 +1,167 @@
+package sizzle.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javaxtools.compiler.CharSequenceCompiler;
+import javaxtools.compiler.CharSequenceCompilerException;
+
+import org.antlr.stringtemplate.PathGroupLoader;
+import org.antlr.stringtemplate.StringTemplateGroup;
+import org.antlr.tool.ErrorManager;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.parser.ParseException;
+import sizzle.runtime.SizzleLocalRunner;
+import sizzle.runtime.SizzleRunner;
+
+public class TestSizzleCompiler {
+	private static void write(final File f, final String s) throws IOException {
+		final Writer w = new FileWriter(f);
+		try {
+			w.write(s);
+		} finally {
+			w.close();
+		}
+	}
+
+	private static List<String> read(final File dir) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+
+		for (final File f : dir.listFiles())
+			if (!f.getName().startsWith("_") && !f.getName().startsWith(".")) {
+				final BufferedReader r = new BufferedReader(new FileReader(f));
+				try {
+					String line;
+					while ((line = r.readLine()) != null)
+						lines.add(line);
+				} finally {
+					r.close();
+				}
+			}
+
+		Collections.sort(lines);
+
+		return lines;
+	}
+
+	private static Map<String, String> generate(final List<File> programs, final String type) throws IOException, ParseException {
+		StringTemplateGroup.registerGroupLoader(new PathGroupLoader("src/antlr/", ErrorManager.getStringTemplateErrorListener()));
+		final StringTemplateGroup stg = StringTemplateGroup.loadGroup("SizzleJavaHadoop");
+
+		return SizzleCompiler.generate(programs, stg, new ArrayList<URL>(), type, null, null, "Both");
+	}
+
+	private static Map<String, Class<SizzleRunner>> compile(final Map<String, String> sources) throws CharSequenceCompilerException {
+		final Map<String, CharSequence> classes = new LinkedHashMap<String, CharSequence>();
+		for (final Map.Entry<String, String> e : sources.entrySet())
+			classes.put("sizzle." + e.getKey(), e.getValue());
+
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		try {
+			return new CharSequenceCompiler<SizzleRunner>(null, null).compile(classes, diagnostics);
+		} catch (final CharSequenceCompilerException e) {
+			for (final Diagnostic<? extends JavaFileObject> d : e.getDiagnostics().getDiagnostics())
+				System.err.println(d.toString());
+			throw e;
+		}
+	}
+
+	@Test
+	public void testSizzleCompilerFused() throws IOException, ParseException, CharSequenceCompilerException, InstantiationException, IllegalAccessException,
+			InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-compiler-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+		dir.mkdirs();
+
+		try {
+			final File count = new File(dir, "Count.sizzle");
+			TestSizzleCompiler.write(count, "count: table sum of int;\nemit count <- 1;\n");
+			final File total = new File(dir, "Total.sizzle");
+			TestSizzleCompiler.write(total, "total: table sum of int;\nx: int = int(input);\nemit total <- x;\n");
+
+			final StringBuilder lines = new StringBuilder();
+			for (int i = 1; i <= 100; i++)
+				lines.append(i + "\n");
+			TestSizzleCompiler.write(in, lines.toString());
+
+			// both programs are parsed by the one static parser
+			final Map<String, String> sources = TestSizzleCompiler.generate(Arrays.asList(count, total), "string");
+			Assert.assertEquals("classes are wrong", Arrays.asList("Count", "Total", "Both"), new ArrayList<String>(sources.keySet()));
+
+			final SizzleRunner runner = TestSizzleCompiler.compile(sources).get("sizzle.Both").newInstance();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+
+			Assert.assertTrue(new SizzleLocalRunner(runner, job).run());
+
+			Assert.assertEquals(Arrays.asList("Count/count[] = 100"), TestSizzleCompiler.read(new File(out, "Count")));
+			Assert.assertEquals(Arrays.asList("Total/total[] = 5050"), TestSizzleCompiler.read(new File(out, "Total")));
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+
+	@Test
+	public void testSizzleCompilerFusedBytes() throws IOException, ParseException, CharSequenceCompilerException, InstantiationException,
+			IllegalAccessException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-compiler-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+		dir.mkdirs();
+
+		try {
+			final File a = new File(dir, "A.sizzle");
+			TestSizzleCompiler.write(a, "out: table collection of string;\nb: bytes = input;\nemit out <- string(b);\n");
+			final File b = new File(dir, "B.sizzle");
+			TestSizzleCompiler.write(b, "out: table collection of string;\nb: bytes = input;\nemit out <- string(b);\n");
+
+			final Configuration conf = new Configuration();
+			final SequenceFile.Writer writer = SequenceFile.createWriter(FileSystem.getLocal(conf), conf, new Path(in.getPath()), LongWritable.class,
+					BytesWritable.class);
+			try {
+				final String[] records = { "alpha", "beta", "gamma" };
+				for (int i = 0; i < records.length; i++)
+					writer.append(new LongWritable(i), new BytesWritable(records[i].getBytes()));
+			} finally {
+				writer.close();
+			}
+
+			final SizzleRunner runner = TestSizzleCompiler.compile(TestSizzleCompiler.generate(Arrays.asList(a, b), "bytes")).get("sizzle.Both").newInstance();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+
+			Assert.assertTrue(new SizzleLocalRunner(runner, job).run());
+
+			// each program is handed each record, not the first one again
+			Assert.assertEquals(Arrays.asList("A/out[] = alpha", "A/out[] = beta", "A/out[] = gamma"), TestSizzleCompiler.read(new File(out, "A")));
+			Assert.assertEquals(Arrays.asList("B/out[] = alpha", "B/out[] = beta", "B/out[] = gamma"), TestSizzleCompiler.read(new File(out, "B")));
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
@@ -1,7 +1,13 @@
 package sizzle.functions;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -41,4 +47,51 @@ public class TestSizzleTimeIntrinsics {
 		Assert.assertEquals("formatTime is wrong", "% That was Wed Feb 28 00:00:00 2001 in timezone PST %",
 				SizzleTimeIntrinsics.formatTime("%% That was %c in timezone %Z %%", t));
 	}
+
+	@Test
+	public void testSizzleTimeIntrinsicsFormatTimeThreads() throws Exception {
+		final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("PST8PDT"));
+		calendar.set(2001, 1, 28, 0, 0, 0);
+		final long t = calendar.getTimeInMillis() * 1000;
+
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+
+			// alternate timezones, which the shared formats used to mix up
+			for (int i = 0; i < 4; i++) {
+				final String tz = i % 2 == 0 ? "PST8PDT" : "UTC";
+				final String expected = i % 2 == 0 ? "Wed Feb 28 00:00:00 2001" : "Wed Feb 28 08:00:00 2001";
+
+				futures.add(pool.submit(new FormatTimeCall(t, tz, expected)));
+			}
+
+			for (final Future<Boolean> future : futures)
+				Assert.assertTrue("formatTime is not thread safe", future.get().booleanValue());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
+
+// formats a time over and over, checking it each time
+class FormatTimeCall implements Callable<Boolean> {
+	private final long t;
+	private final String tz;
+	private final String expected;
+
+	public FormatTimeCall(final long t, final String tz, final String expected) {
+		this.t = t;
+		this.tz = tz;
+		this.expected = expected;
+	}
+
+	@Override
+	public Boolean call() {
+		for (int j = 0; j < 10000; j++)
+			if (!SizzleTimeIntrinsics.formatTime("%c", this.t, this.tz).equals(this.expected))
+				return Boolean.FALSE;
+
+		return Boolean.TRUE;
+	}
 }
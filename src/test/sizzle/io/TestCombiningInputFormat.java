@@ -0,0 +1,67 @@
+package sizzle.io;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.runtime.SizzleRunner;
+
+public class TestCombiningInputFormat {
+	@Test
+	public void testCombiningInputFormat() throws IOException, InterruptedException, ClassNotFoundException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-combining-" + System.nanoTime());
+		dir.mkdirs();
+
+		try {
+			for (int i = 0; i < 20; i++) {
+				final Writer w = new FileWriter(new File(dir, "log." + i));
+				try {
+					w.write("a\nb\nc\n");
+				} finally {
+					w.close();
+				}
+			}
+
+			final Job job = new Job();
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.getConfiguration().setLong(CombiningInputFormat.SIZE, 1024 * 1024);
+			FileInputFormat.addInputPath(job, new Path(dir.getPath()));
+			SizzleRunner.setInput(job, TextInputFormat.class);
+
+			Assert.assertEquals(CombiningInputFormat.class, job.getInputFormatClass());
+
+			final CombiningInputFormat format = new CombiningInputFormat();
+
+			// twenty small files, one split
+			final List<InputSplit> splits = format.getSplits(job);
+			Assert.assertEquals(1, splits.size());
+
+			final TaskAttemptContext context = new TaskAttemptContext(job.getConfiguration(), new TaskAttemptID());
+			final RecordReader<Object, Object> reader = format.createRecordReader(splits.get(0), context);
+			reader.initialize(splits.get(0), context);
+
+			int records = 0;
+			while (reader.nextKeyValue())
+				records++;
+			reader.close();
+
+			Assert.assertEquals(60, records);
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package sizzle.io;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEmitKey {
+	private static int compareSerialized(final EmitKey k1, final EmitKey k2) throws IOException {
+		final DataOutputBuffer b1 = new DataOutputBuffer();
+		k1.write(b1);
+		final DataOutputBuffer b2 = new DataOutputBuffer();
+		k2.write(b2);
+
+		return WritableComparator.get(EmitKey.class).compare(b1.getData(), 0, b1.getLength(), b2.getData(), 0, b2.getLength());
+	}
+
+	private static void assertSameOrder(final EmitKey k1, final EmitKey k2) throws IOException {
+		Assert.assertEquals(Integer.signum(k1.compareTo(k2)), Integer.signum(TestEmitKey.compareSerialized(k1, k2)));
+		Assert.assertEquals(Integer.signum(k2.compareTo(k1)), Integer.signum(TestEmitKey.compareSerialized(k2, k1)));
+	}
+
+	@Test
+	public void testEmitKeyComparatorIds() throws IOException {
+		TestEmitKey.assertSameOrder(new EmitKey("[b]", "alpha", 0), new EmitKey("[a]", "beta", 1));
+		TestEmitKey.assertSameOrder(new EmitKey("[a]", "alpha", 0), new EmitKey("[b]", "alpha", 0));
+		TestEmitKey.assertSameOrder(new EmitKey("[a]", "alpha", 0), new EmitKey("[ab]", "alpha", 0));
+		TestEmitKey.assertSameOrder(new EmitKey("[\uffff]", "alpha", 0), new EmitKey("[\ud800\udc00]", "alpha", 0));
+		Assert.assertTrue(new EmitKey("[b]", "alpha", 0).compareTo(new EmitKey("[a]", "beta", 1)) < 0);
+		Assert.assertEquals(0, TestEmitKey.compareSerialized(new EmitKey("[a]", "alpha", 3), new EmitKey("[a]", "alpha", 3)));
+	}
+
+	@Test
+	public void testEmitKeyComparatorNames() throws IOException {
+		TestEmitKey.assertSameOrder(new EmitKey("[b]", "alpha"), new EmitKey("[a]", "beta"));
+		TestEmitKey.assertSameOrder(new EmitKey("[b]", "alpha"), new EmitKey("[a]", "alpha"));
+		TestEmitKey.assertSameOrder(new EmitKey("test"), new EmitKey("[a]", "test", 0));
+		Assert.assertTrue(new EmitKey("[b]", "alpha").compareTo(new EmitKey("[a]", "beta")) < 0);
+	}
+
+	@Test
+	public void testEmitKeyComparatorSorts() throws IOException {
+		final EmitKey key = new EmitKey("[a]", "alpha", 0);
+		final EmitKey named = new EmitKey("[a]", "alpha");
+
+		// keys without sort values come first
+		TestEmitKey.assertSameOrder(key, key.sorted(new byte[] { 0 }));
+		TestEmitKey.assertSameOrder(named, named.sorted(new byte[] { 0 }));
+		TestEmitKey.assertSameOrder(key.sorted(new byte[] { 0 }), key.sorted(EmitKey.sortable((byte) 1, -5L)));
+		TestEmitKey.assertSameOrder(key.sorted(EmitKey.sortable((byte) 1, 7L)), new EmitKey("[b]", "alpha", 0));
+		TestEmitKey.assertSameOrder(key.sorted(EmitKey.sortable((byte) 1, 7L)), new EmitKey("[a]", "alpha", 1).sorted(new byte[] { 0 }));
+
+		// numbers sort in their own order
+		final long[] longs = { Long.MIN_VALUE, -300, -1, 0, 1, 256, Long.MAX_VALUE };
+		for (int i = 1; i < longs.length; i++)
+			Assert.assertTrue(TestEmitKey.compareSerialized(key.sorted(EmitKey.sortable((byte) 1, longs[i - 1])),
+					key.sorted(EmitKey.sortable((byte) 1, longs[i]))) < 0);
+		final double[] doubles = { Double.NEGATIVE_INFINITY, -1e10, -1.5, -0.25, 0, 0.25, 1.5, 1e10, Double.POSITIVE_INFINITY };
+		for (int i = 1; i < doubles.length; i++)
+			Assert.assertTrue(TestEmitKey.compareSerialized(key.sorted(EmitKey.sortable((byte) 1, doubles[i - 1])),
+					key.sorted(EmitKey.sortable((byte) 1, doubles[i]))) < 0);
+	}
+
+	@Test
+	public void testEmitKeyGroupingComparator() throws IOException {
+		final EmitKey key = new EmitKey("[a]", "alpha", 3);
+		final EmitKey sorted = key.sorted(EmitKey.sortable((byte) 1, 42L));
+
+		final DataOutputBuffer b1 = new DataOutputBuffer();
+		key.write(b1);
+		final DataOutputBuffer b2 = new DataOutputBuffer();
+		sorted.write(b2);
+
+		final WritableComparator grouping = new EmitKey.GroupingComparator();
+		Assert.assertEquals(0, grouping.compare(b1.getData(), 0, b1.getLength(), b2.getData(), 0, b2.getLength()));
+		Assert.assertEquals(0, grouping.compare(key, sorted));
+		Assert.assertTrue(grouping.compare(key, new EmitKey("[b]", "alpha", 3)) < 0);
+		Assert.assertEquals(key.hashCode(), sorted.hashCode());
+
+		// and the sort value survives the trip
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(b2.getData(), b2.getLength());
+		final EmitKey read = new EmitKey();
+		read.readFields(in);
+		Assert.assertEquals(3, read.getId());
+		Assert.assertEquals("[a]", read.getIndex());
+		Assert.assertArrayEquals(sorted.getSort(), read.getSort());
+	}
+}
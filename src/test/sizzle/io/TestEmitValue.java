@@ -0,0 +1,73 @@
+package sizzle.io;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEmitValue {
+	private static EmitValue roundTrip(final EmitValue value) throws IOException {
+		final DataOutputBuffer out = new DataOutputBuffer();
+		value.write(out);
+
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+
+		final EmitValue copy = new EmitValue();
+		copy.readFields(in);
+
+		return copy;
+	}
+
+	@Test
+	public void testEmitValueInt() throws IOException {
+		final EmitValue copy = TestEmitValue.roundTrip(new EmitValue(-12345L, "2"));
+
+		Assert.assertEquals(EmitValue.INT, copy.getType(0));
+		Assert.assertEquals(-12345L, copy.getLong(0));
+		Assert.assertEquals("2", copy.getMetadata());
+		Assert.assertEquals(new EmitValue("-12345", "2"), copy);
+	}
+
+	@Test
+	public void testEmitValueWeighted() throws IOException {
+		final EmitValue copy = TestEmitValue.roundTrip(new EmitValue(-12345L, 2L));
+
+		Assert.assertEquals(EmitValue.INT, copy.getType(0));
+		Assert.assertTrue(copy.isWeighted());
+		Assert.assertEquals(2L, copy.getWeight());
+		Assert.assertEquals("2", copy.getMetadata());
+		Assert.assertEquals(new EmitValue("-12345", "2"), copy);
+	}
+
+	@Test
+	public void testEmitValueFloat() throws IOException {
+		final EmitValue copy = TestEmitValue.roundTrip(new EmitValue(0.1));
+
+		Assert.assertEquals(EmitValue.FLOAT, copy.getType(0));
+		Assert.assertEquals(0.1, copy.getDouble(0), 0.0);
+		Assert.assertNull(copy.getMetadata());
+		Assert.assertEquals(new EmitValue("0.1"), copy);
+	}
+
+	@Test
+	public void testEmitValueFingerprint() throws IOException {
+		final EmitValue copy = TestEmitValue.roundTrip(new EmitValue(Long.MIN_VALUE).withType(EmitValue.FINGERPRINT));
+
+		Assert.assertEquals(EmitValue.FINGERPRINT, copy.getType(0));
+		Assert.assertEquals(Long.MIN_VALUE, copy.getLong(0));
+	}
+
+	@Test
+	public void testEmitValueTuple() throws IOException {
+		final EmitValue copy = TestEmitValue.roundTrip(new EmitValue(new Object[] { Long.valueOf(1), Double.valueOf(2.5), "three", new byte[] { 'f', 'o', 'u', 'r' } }));
+
+		Assert.assertEquals(EmitValue.INT, copy.getType(0));
+		Assert.assertEquals(EmitValue.FLOAT, copy.getType(1));
+		Assert.assertEquals(EmitValue.STRING, copy.getType(2));
+		Assert.assertEquals(EmitValue.BYTES, copy.getType(3));
+		Assert.assertArrayEquals(new String[] { "1", "2.5", "three", "four" }, copy.getData());
+	}
+}
@@ -0,0 +1,35 @@
+package sizzle.io;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.types.Querylog.QueryLogProto;
+
+public class TestProtoDecoder {
+	@Test
+	public void testProtoDecoderSelected() throws IOException {
+		final byte[] bs = QueryLogProto.newBuilder().setIp("127.0.0.1").setTimeUsec(1234).build().toByteArray();
+
+		final Object[] tuple = new ProtoDecoder(QueryLogProto.getDescriptor(), 2, new String[] { "time_usec" }, new int[] { 1 }).decode(bs);
+
+		// the ip is skipped, not decoded
+		Assert.assertNull(tuple[0]);
+		Assert.assertEquals(Long.valueOf(1234), tuple[1]);
+	}
+
+	@Test
+	public void testProtoDecoderRange() throws IOException {
+		final byte[] message = QueryLogProto.newBuilder().setIp("127.0.0.1").setTimeUsec(1234).build().toByteArray();
+
+		final byte[] bs = new byte[message.length + 4];
+		System.arraycopy(message, 0, bs, 2, message.length);
+
+		final Object[] tuple = new ProtoDecoder(QueryLogProto.getDescriptor(), 2, new String[] { "ip", "time_usec" }, new int[] { 0, 1 }).decode(bs, 2,
+				message.length);
+
+		Assert.assertEquals("127.0.0.1", tuple[0]);
+		Assert.assertEquals(Long.valueOf(1234), tuple[1]);
+	}
+}
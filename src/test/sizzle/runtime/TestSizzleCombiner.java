@@ -0,0 +1,90 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.aggregators.Aggregator;
+import sizzle.aggregators.IntSumAggregator;
+import sizzle.aggregators.SetAggregator;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+public class TestSizzleCombiner {
+	@Test
+	public void testSizzleCombinerAssociative() {
+		Assert.assertTrue(new MixedSizzleCombiner(true).isAssociative());
+		Assert.assertFalse(new MixedSizzleCombiner(false).isAssociative());
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleCombinerPassThrough() {
+		final MixedSizzleCombiner combiner = new MixedSizzleCombiner(true);
+		combiner.setConf(new Configuration());
+
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue("a"));
+		values.add(new EmitValue("b"));
+
+		// the values of non-associative tables are passed through untouched
+		new ReduceDriver(combiner).withInput(new EmitKey("[]", "last", 0), values).withOutput(new EmitKey("[]", "last", 0), new EmitValue("a"))
+				.withOutput(new EmitKey("[]", "last", 0), new EmitValue("b")).runTest();
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleCombinerFinished() {
+		final SetSizzleCombiner combiner = new SetSizzleCombiner();
+		combiner.setConf(new Configuration());
+
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue("a"));
+		values.add(new EmitValue("b"));
+		values.add(new EmitValue("c"));
+
+		// the reducer is told the set is finished, instead of getting part of it
+		new ReduceDriver(combiner).withInput(new EmitKey("[]", "set", 0), values).withOutput(new EmitKey("[]", "set", 0), EmitValue.finished()).runTest();
+	}
+}
+
+class SetSizzleCombiner extends SizzleCombiner {
+	public SetSizzleCombiner() {
+		super();
+
+		this.tables.put("set", new Table(new SetAggregator(2)));
+		this.names = new String[] { "set" };
+	}
+}
+
+class MixedSizzleCombiner extends SizzleCombiner {
+	public MixedSizzleCombiner(final boolean sum) {
+		super();
+
+		this.tables.put("last", new Table(new LastAggregator()));
+		if (sum)
+			this.tables.put("sum", new Table(new IntSumAggregator()));
+		this.names = new String[] { "last", "sum" };
+	}
+}
+
+// keeps only the last value it sees, so it cannot be combined
+class LastAggregator extends Aggregator {
+	private String last;
+
+	@Override
+	public void aggregate(final String data, final String metadata) throws IOException, InterruptedException {
+		this.last = data;
+	}
+
+	@Override
+	public void finish() throws IOException, InterruptedException {
+		this.collect(this.last);
+	}
+}
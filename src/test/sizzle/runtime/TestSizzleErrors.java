@@ -0,0 +1,121 @@
+package sizzle.runtime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.aggregators.IntSumAggregator;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+public class TestSizzleErrors {
+	@Test
+	public void testSizzleErrorsQuarantine() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-errors-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write((i % 10 == 0 ? "x" : "") + i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final ParsingSizzleRunner runner = new ParsingSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), true);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.getConfiguration().setInt("sizzle.runtime.robust.log", 2);
+			job.getConfiguration().setBoolean("sizzle.runtime.robust.quarantine", true);
+			job.setInputFormatClass(TextInputFormat.class);
+
+			final SizzleLocalRunner local = new SizzleLocalRunner(runner, job);
+			Assert.assertTrue(local.run());
+
+			// every bad record is counted under one kind
+			final CounterGroup group = local.getCounters().getGroup("Sizzle errors");
+			Assert.assertEquals(1, group.size());
+			for (final Counter counter : group) {
+				Assert.assertTrue(counter.getName(), counter.getName().startsWith("java.lang.NumberFormatException at sizzle.runtime.ParsingSizzleRunner"));
+				Assert.assertEquals(10, counter.getValue());
+			}
+
+			// and quarantined as it was read
+			int lines = 0;
+			for (final File f : new File(out, "_quarantine").listFiles())
+				if (f.getName().endsWith(".txt")) {
+					final BufferedReader r = new BufferedReader(new FileReader(f));
+					try {
+						String line;
+						while ((line = r.readLine()) != null) {
+							Assert.assertTrue(line, line.startsWith("x"));
+							lines++;
+						}
+					} finally {
+						r.close();
+					}
+				}
+			Assert.assertEquals(10, lines);
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
+
+class ParsingSizzleRunner extends SizzleRunner {
+	@Override
+	public SizzleMapper getMapper() {
+		return new SizzleMapper() {
+			@Override
+			protected Table newTable(final String name) {
+				return new Table(new IntSumAggregator());
+			}
+
+			@Override
+			protected void map(final LongWritable key, final Text value, final Context context) throws IOException, InterruptedException {
+				try {
+					this.emit(new EmitKey("sum"), new EmitValue(Long.parseLong(value.toString())));
+				} catch (final RuntimeException e) {
+					if (this.robust)
+						this.caught(e, key, value);
+					else
+						throw e;
+				}
+			}
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return null;
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		final SizzleReducer reducer = new SizzleReducer() {
+			// the one table is a sum
+		};
+
+		reducer.tables.put("sum", new Table(new IntSumAggregator()));
+
+		return reducer;
+	}
+}
@@ -0,0 +1,107 @@
+package sizzle.runtime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSizzleFusedMapper {
+	private static List<String> read(final File dir) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+
+		for (final File f : dir.listFiles())
+			if (!f.getName().startsWith("_") && !f.getName().startsWith(".")) {
+				final BufferedReader r = new BufferedReader(new FileReader(f));
+				try {
+					String line;
+					while ((line = r.readLine()) != null)
+						lines.add(line);
+				} finally {
+					r.close();
+				}
+			}
+
+		Collections.sort(lines);
+
+		return lines;
+	}
+
+	@Test
+	public void testSizzleFusedMapper() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-fused-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write(i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final FusedSizzleRunner runner = new FusedSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.setInputFormatClass(TextInputFormat.class);
+
+			Assert.assertTrue(new SizzleLocalRunner(runner, job).run());
+
+			// each program gets a directory of its own
+			final List<String> expected = new ArrayList<String>();
+			expected.add("a/even[] = 2550");
+			expected.add("a/odd[] = 2500");
+			Assert.assertEquals(expected, TestSizzleFusedMapper.read(new File(out, "a")));
+
+			expected.clear();
+			expected.add("b/even[] = 2550");
+			expected.add("b/odd[] = 2500");
+			Assert.assertEquals(expected, TestSizzleFusedMapper.read(new File(out, "b")));
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
+
+class FusedSizzleRunner extends SizzleRunner {
+	private static final String[] PROGRAMS = new String[] { "a", "b" };
+
+	private static SizzleRunner[] runners() {
+		return new SizzleRunner[] { new LocalSizzleRunner(), new LocalSizzleRunner() };
+	}
+
+	@Override
+	public SizzleFusedMapper getMapper() {
+		return new SizzleFusedMapper(FusedSizzleRunner.PROGRAMS, FusedSizzleRunner.runners()) {
+			// both programs over the same input
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return new SizzleFusedCombiner(FusedSizzleRunner.PROGRAMS, FusedSizzleRunner.runners()) {
+			// neither program combines
+		};
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		return new SizzleFusedReducer(FusedSizzleRunner.PROGRAMS, FusedSizzleRunner.runners()) {
+			// both programs' tables
+		};
+	}
+}
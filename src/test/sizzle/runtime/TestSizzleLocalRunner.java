@@ -0,0 +1,273 @@
+package sizzle.runtime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.aggregators.IntQuantileAggregator;
+import sizzle.aggregators.IntSumAggregator;
+import sizzle.aggregators.MrcounterAggregator;
+import sizzle.aggregators.Table;
+
+public class TestSizzleLocalRunner {
+	private static List<String> read(final File dir) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+
+		for (final File f : dir.listFiles())
+			if (!f.getName().startsWith("_") && !f.getName().startsWith(".")) {
+				final BufferedReader r = new BufferedReader(new FileReader(f));
+				try {
+					String line;
+					while ((line = r.readLine()) != null)
+						lines.add(line);
+				} finally {
+					r.close();
+				}
+			}
+
+		Collections.sort(lines);
+
+		return lines;
+	}
+
+	@Test
+	public void testSizzleLocalRunner() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-local-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write(i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final LocalSizzleRunner runner = new LocalSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.getConfiguration().setInt("sizzle.runtime.local.threads", 4);
+			job.setInputFormatClass(TextInputFormat.class);
+
+			Assert.assertTrue(new SizzleLocalRunner(runner, job).run());
+
+			final List<String> expected = new ArrayList<String>();
+			expected.add("even[] = 2550");
+			expected.add("odd[] = 2500");
+			Assert.assertEquals(expected, TestSizzleLocalRunner.read(out));
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+
+	@Test
+	public void testSizzleLocalRunnerSorted() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-local-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		// several files, so that several mappers announce their values
+		in.mkdirs();
+		for (int f = 0; f < 4; f++) {
+			final Writer w = new FileWriter(new File(in, "part-" + f));
+			try {
+				for (int i = 100 - f; i > 0; i -= 4)
+					w.write(i + "\n");
+			} finally {
+				w.close();
+			}
+		}
+
+		try {
+			final QuantileSizzleRunner runner = new QuantileSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.getConfiguration().setInt("sizzle.runtime.local.threads", 4);
+			job.getConfiguration().setBoolean("sizzle.runtime.sort", true);
+			job.getConfiguration().setBoolean("sizzle.runtime.metrics", false);
+			// and flush more than once each
+			job.getConfiguration().setLong("sizzle.runtime.combining.buffer", 1024);
+			job.setInputFormatClass(TextInputFormat.class);
+
+			Assert.assertTrue(new SizzleLocalRunner(runner, job).run());
+
+			final List<String> expected = new ArrayList<String>();
+			expected.add("test[] = [25, 50, 75, 100]");
+			Assert.assertEquals(expected, TestSizzleLocalRunner.read(out));
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+
+	@Test
+	public void testSizzleLocalRunnerCounters() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-local-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write(i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final CounterSizzleRunner runner = new CounterSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			// the mapper passes the counts through, for the combiner to count
+			job.getConfiguration().setBoolean("sizzle.runtime.combining", false);
+			job.setInputFormatClass(TextInputFormat.class);
+
+			final SizzleLocalRunner local = new SizzleLocalRunner(runner, job);
+			Assert.assertTrue(local.run());
+
+			Assert.assertEquals(50, local.getCounters().findCounter("Sizzle Counters", "even").getValue());
+			Assert.assertEquals(50, local.getCounters().findCounter("Sizzle Counters", "odd").getValue());
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
+
+class LocalSizzleRunner extends SizzleRunner {
+	@Override
+	public SizzleMapper getMapper() {
+		return new SizzleMapper() {
+			@Override
+			protected Table newTable(final String name) {
+				return new Table(new IntSumAggregator());
+			}
+
+			@Override
+			protected void map(final org.apache.hadoop.io.LongWritable key, final org.apache.hadoop.io.Text value, final Context context) throws IOException,
+					InterruptedException {
+				final long n = Long.parseLong(value.toString());
+
+				this.emit(new sizzle.io.EmitKey(n % 2 == 0 ? "even" : "odd"), new sizzle.io.EmitValue(n));
+			}
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return null;
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		final SizzleReducer reducer = new SizzleReducer() {
+			// every table is a sum
+		};
+
+		reducer.tables.put("even", new Table(new IntSumAggregator()));
+		reducer.tables.put("odd", new Table(new IntSumAggregator()));
+
+		return reducer;
+	}
+}
+
+class QuantileSizzleRunner extends SizzleRunner {
+	@Override
+	public SizzleMapper getMapper() {
+		return new SizzleMapper() {
+			@Override
+			protected Table newTable(final String name) {
+				return new Table(new IntQuantileAggregator(5));
+			}
+
+			@Override
+			protected void map(final org.apache.hadoop.io.LongWritable key, final org.apache.hadoop.io.Text value, final Context context) throws IOException,
+					InterruptedException {
+				this.emit(new sizzle.io.EmitKey("test"), new sizzle.io.EmitValue(Long.parseLong(value.toString())));
+			}
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return null;
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		final SizzleReducer reducer = new SizzleReducer() {
+			// a single quantile table
+		};
+
+		reducer.tables.put("test", new Table(new IntQuantileAggregator(5)));
+
+		return reducer;
+	}
+}
+
+class CounterSizzleRunner extends SizzleRunner {
+	@Override
+	public Job job(final Path[] ins, final Path out, final boolean robust) throws IOException {
+		final Job job = super.job(ins, out, robust);
+		job.setCombinerClass(CounterSizzleCombiner.class);
+
+		return job;
+	}
+
+	@Override
+	public SizzleMapper getMapper() {
+		return new SizzleMapper() {
+			@Override
+			protected Table newTable(final String name) {
+				return new Table(new MrcounterAggregator());
+			}
+
+			@Override
+			protected void map(final org.apache.hadoop.io.LongWritable key, final org.apache.hadoop.io.Text value, final Context context) throws IOException,
+					InterruptedException {
+				final long n = Long.parseLong(value.toString());
+
+				this.emit(new sizzle.io.EmitKey(n % 2 == 0 ? "[even]" : "[odd]", "counter"), new sizzle.io.EmitValue(1));
+			}
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return new CounterSizzleCombiner();
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		final SizzleReducer reducer = new SizzleReducer() {
+			// a single counter table
+		};
+
+		reducer.tables.put("counter", new Table(new MrcounterAggregator()));
+
+		return reducer;
+	}
+}
+
+class CounterSizzleCombiner extends SizzleCombiner {
+	public CounterSizzleCombiner() {
+		super();
+
+		this.tables.put("counter", new Table(new MrcounterAggregator()));
+	}
+}
@@ -0,0 +1,93 @@
+package sizzle.runtime;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.junit.Test;
+
+import sizzle.aggregators.CollectionAggregator;
+import sizzle.aggregators.IntSumAggregator;
+import sizzle.aggregators.SetAggregator;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+public class TestSizzleMapper {
+	@Test
+	public void testSizzleMapperCombining() {
+		new MapDriver<LongWritable, Text, EmitKey, EmitValue>(new CombiningSizzleMapper()).withInput(new LongWritable(0), new Text("1 2 3"))
+				.withOutput(new EmitKey("raw"), new EmitValue("1")).withOutput(new EmitKey("raw"), new EmitValue("2"))
+				.withOutput(new EmitKey("raw"), new EmitValue("3")).withOutput(new EmitKey("sum"), new EmitValue("6")).runTest();
+	}
+
+	@Test
+	public void testSizzleMapperFinished() {
+		// the set is finished on the third distinct value, and the rest of its
+		// values are dropped
+		new MapDriver<LongWritable, Text, EmitKey, EmitValue>(new FinishingSizzleMapper()).withInput(new LongWritable(0), new Text("a b c a d"))
+				.withOutput(new EmitKey("set"), EmitValue.finished()).runTest();
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleMapperMapOnly() {
+		final Configuration conf = new Configuration();
+		conf.setInt("mapred.reduce.tasks", 0);
+
+		final MapOnlySizzleMapper mapper = new MapOnlySizzleMapper();
+		mapper.setConf(conf);
+
+		// the final results are written by the mapper
+		final MapDriver driver = new MapDriver(mapper).withConfiguration(conf).withInput(new LongWritable(0), new Text("1 2"));
+		driver.withOutput(new Text("lines[1] = 1"), NullWritable.get()).withOutput(new Text("lines[2] = 2"), NullWritable.get()).runTest();
+	}
+}
+
+class MapOnlySizzleMapper extends SizzleMapper {
+	@Override
+	protected Table newTable(final String name) {
+		if (name.equals("lines"))
+			return new Table(new CollectionAggregator());
+		return null;
+	}
+
+	@Override
+	protected void map(final LongWritable key, final Text value, final Context context) throws IOException, InterruptedException {
+		for (final String s : value.toString().split(" "))
+			this.emit(new EmitKey("[" + s + "]", "lines"), new EmitValue(s));
+	}
+}
+
+class FinishingSizzleMapper extends SizzleMapper {
+	@Override
+	protected Table newTable(final String name) {
+		return new Table(new SetAggregator(2));
+	}
+
+	@Override
+	protected void map(final LongWritable key, final Text value, final Context context) throws IOException, InterruptedException {
+		for (final String s : value.toString().split(" "))
+			this.emit(new EmitKey("set"), new EmitValue(s));
+	}
+}
+
+class CombiningSizzleMapper extends SizzleMapper {
+	@Override
+	protected Table newTable(final String name) {
+		if (name.equals("sum"))
+			return new Table(new IntSumAggregator());
+		return null;
+	}
+
+	@Override
+	protected void map(final LongWritable key, final Text value, final Context context) throws IOException, InterruptedException {
+		for (final String s : value.toString().split(" ")) {
+			this.emit(new EmitKey("raw"), new EmitValue(s));
+			this.emit(new EmitKey("sum"), new EmitValue(Long.parseLong(s)));
+		}
+	}
+}
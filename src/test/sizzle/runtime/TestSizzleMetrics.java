@@ -0,0 +1,106 @@
+package sizzle.runtime;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSizzleMetrics {
+	@Test
+	public void testSizzleMetricsNamespace() {
+		final SizzleMetrics metrics = new SizzleMetrics("map");
+		metrics.record();
+		metrics.get("t").emitted(10);
+		metrics.namespace("p").get("t").emitted(20);
+		metrics.namespace("p").exception();
+
+		Assert.assertEquals("{\"task\": \"task\", \"phase\": \"map\", \"records\": 1, \"exceptions\": 1, \"tables\": {"
+				+ "\"p/t\": {\"emits\": 1, \"bytes\": 20, \"in\": 0, \"out\": 0, \"aggregate_ms\": 0, \"finish_ms\": 0}, "
+				+ "\"t\": {\"emits\": 1, \"bytes\": 10, \"in\": 0, \"out\": 0, \"aggregate_ms\": 0, \"finish_ms\": 0}}}\n", metrics.toJson("task"));
+	}
+
+	@Test
+	public void testSizzleMetricsLocalRunner() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-metrics-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write(i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final LocalSizzleRunner runner = new LocalSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.getConfiguration().setBoolean("sizzle.runtime.metrics.counters", true);
+			job.setInputFormatClass(TextInputFormat.class);
+
+			final SizzleLocalRunner local = new SizzleLocalRunner(runner, job);
+			Assert.assertTrue(local.run());
+
+			final Counters counters = local.getCounters();
+			Assert.assertEquals(100, counters.findCounter("Sizzle map", "records").getValue());
+			Assert.assertEquals(50, counters.findCounter("Sizzle map", "even emits").getValue());
+			Assert.assertEquals(50, counters.findCounter("Sizzle map", "odd emits").getValue());
+			// one partial result from the mapper for each
+			Assert.assertEquals(1, counters.findCounter("Sizzle reduce", "even in").getValue());
+			Assert.assertEquals(1, counters.findCounter("Sizzle reduce", "even out").getValue());
+
+			// a stats file for the map and reduce tasks
+			int stats = 0;
+			for (final String name : new File(out, "_stats").list())
+				if (name.endsWith(".json"))
+					stats++;
+			Assert.assertEquals(2, stats);
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+
+	@Test
+	public void testSizzleMetricsNoTableCounters() throws IOException, InterruptedException {
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "sizzle-metrics-" + System.nanoTime());
+		final File in = new File(dir, "in");
+		final File out = new File(dir, "out");
+
+		in.getParentFile().mkdirs();
+		final Writer w = new FileWriter(in);
+		try {
+			for (int i = 1; i <= 100; i++)
+				w.write(i + "\n");
+		} finally {
+			w.close();
+		}
+
+		try {
+			final LocalSizzleRunner runner = new LocalSizzleRunner();
+			final Job job = runner.job(new Path[] { new Path(in.getPath()) }, new Path(out.getPath()), false);
+			job.getConfiguration().set("fs.default.name", "file:///");
+			job.setInputFormatClass(TextInputFormat.class);
+
+			final SizzleLocalRunner local = new SizzleLocalRunner(runner, job);
+			Assert.assertTrue(local.run());
+
+			// only the records are counted, and the tables left to the stats
+			final Counters counters = local.getCounters();
+			Assert.assertEquals(100, counters.findCounter("Sizzle map", "records").getValue());
+			Assert.assertEquals(1, counters.getGroup("Sizzle map").size());
+		} finally {
+			FileUtil.fullyDelete(dir);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package sizzle.runtime;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+public class TestSizzlePartitioner {
+	@Test
+	public void testSizzlePartitionerReserved() {
+		final Configuration conf = new Configuration();
+		conf.setInt("sizzle.runtime.reducers.heavy", 2);
+
+		final SizzlePartitioner partitioner = new SizzlePartitioner();
+		partitioner.setConf(conf);
+
+		for (int i = 0; i < 100; i++) {
+			final int heavy = partitioner.getPartition(new EmitKey("[" + i + "]", "heavy", 0), new EmitValue(i), 5);
+			Assert.assertTrue(heavy >= 0 && heavy < 2);
+
+			final int light = partitioner.getPartition(new EmitKey("[" + i + "]", "light", 1), new EmitValue(i), 5);
+			Assert.assertTrue(light >= 2 && light < 5);
+		}
+	}
+
+	@Test
+	public void testSizzlePartitionerOverReserved() {
+		final Configuration conf = new Configuration();
+		conf.setInt("sizzle.runtime.reducers.heavy", 4);
+
+		final SizzlePartitioner partitioner = new SizzlePartitioner();
+		partitioner.setConf(conf);
+
+		// too few reducers to reserve any, so the light table may use them all
+		boolean low = false;
+		for (int i = 0; i < 100; i++)
+			if (partitioner.getPartition(new EmitKey("[" + i + "]", "light", 1), new EmitValue(i), 4) == 0)
+				low = true;
+		Assert.assertTrue(low);
+	}
+}
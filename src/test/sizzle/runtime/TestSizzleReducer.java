@@ -0,0 +1,86 @@
+package sizzle.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Test;
+
+import sizzle.aggregators.FloatMeanAggregator;
+import sizzle.aggregators.IntSumAggregator;
+import sizzle.aggregators.SetAggregator;
+import sizzle.aggregators.Table;
+import sizzle.io.EmitKey;
+import sizzle.io.EmitValue;
+
+public class TestSizzleReducer {
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleReducerSequenceOutput() {
+		final Configuration conf = new Configuration();
+		conf.set("sizzle.runtime.output", "sequence");
+
+		final BinarySizzleReducer reducer = new BinarySizzleReducer();
+		reducer.setConf(conf);
+
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue(1));
+		values.add(new EmitValue(2));
+		values.add(new EmitValue(3));
+
+		// the key is written with its name, not its id
+		new ReduceDriver(reducer).withInput(new EmitKey("[a]", "sum", 1), values).withOutput(new EmitKey("[a]", "sum"), new EmitValue(6)).runTest();
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleReducerSequenceOutputMean() {
+		final Configuration conf = new Configuration();
+		conf.set("sizzle.runtime.output", "sequence");
+
+		final BinarySizzleReducer reducer = new BinarySizzleReducer();
+		reducer.setConf(conf);
+
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue(1.0));
+		values.add(new EmitValue(2.0));
+
+		// the final mean, not the partial sum and count
+		new ReduceDriver(reducer).withInput(new EmitKey("[]", "mean", 0), values).withOutput(new EmitKey("mean"), new EmitValue(1.5)).runTest();
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSizzleReducerFinished() {
+		final SetSizzleReducer reducer = new SetSizzleReducer();
+		reducer.setConf(new Configuration());
+
+		final List<EmitValue> values = new ArrayList<EmitValue>();
+		values.add(new EmitValue("a"));
+		values.add(EmitValue.finished());
+		values.add(new EmitValue("b"));
+
+		// a set finished by a mapper or combiner is never written
+		new ReduceDriver(reducer).withInput(new EmitKey("[]", "set", 0), values).runTest();
+	}
+}
+
+class SetSizzleReducer extends SizzleReducer {
+	public SetSizzleReducer() {
+		super();
+
+		this.tables.put("set", new Table(new SetAggregator(2)));
+		this.names = new String[] { "set" };
+	}
+}
+
+class BinarySizzleReducer extends SizzleReducer {
+	public BinarySizzleReducer() {
+		super();
+
+		this.tables.put("mean", new Table(new FloatMeanAggregator()));
+		this.tables.put("sum", new Table(new IntSumAggregator()));
+		this.names = new String[] { "mean", "sum" };
+	}
+}
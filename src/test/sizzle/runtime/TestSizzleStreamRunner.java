@@ -0,0 +1,90 @@
+package sizzle.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import sizzle.aggregators.SetAggregator;
+import sizzle.aggregators.Table;
+
+public class TestSizzleStreamRunner {
+	private static String stream(final Configuration conf, final String in) throws IOException, InterruptedException {
+		return TestSizzleStreamRunner.stream(new LocalSizzleRunner(), conf, in);
+	}
+
+	private static String stream(final SizzleRunner runner, final Configuration conf, final String in) throws IOException, InterruptedException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		new SizzleStreamRunner(runner, conf).run(new ByteArrayInputStream(in.getBytes()), new PrintStream(out));
+
+		return out.toString();
+	}
+
+	@Test
+	public void testSizzleStreamRunner() throws IOException, InterruptedException {
+		Assert.assertEquals("even[] = 6\nodd[] = 4\n", TestSizzleStreamRunner.stream(new Configuration(), "1\n2\n3\n4\n"));
+	}
+
+	@Test
+	public void testSizzleStreamRunnerRecords() throws IOException, InterruptedException {
+		final Configuration conf = new Configuration();
+		conf.setLong("sizzle.runtime.stream.records", 2);
+
+		// the tables accumulate over the whole stream
+		Assert.assertEquals("even[] = 2\nodd[] = 1\neven[] = 6\nodd[] = 4\neven[] = 6\nodd[] = 4\n", TestSizzleStreamRunner.stream(conf, "1\n2\n3\n4\n"));
+	}
+
+	@Test
+	public void testSizzleStreamRunnerReset() throws IOException, InterruptedException {
+		final Configuration conf = new Configuration();
+		conf.setLong("sizzle.runtime.stream.records", 2);
+		conf.setBoolean("sizzle.runtime.stream.reset", true);
+
+		Assert.assertEquals("even[] = 2\nodd[] = 1\neven[] = 4\nodd[] = 3\n", TestSizzleStreamRunner.stream(conf, "1\n2\n3\n4\n"));
+	}
+
+	@Test
+	public void testSizzleStreamRunnerFinished() throws IOException, InterruptedException {
+		final Configuration conf = new Configuration();
+		conf.setLong("sizzle.runtime.stream.records", 2);
+
+		// the odd set is too big at the fifth line, and written no more
+		Assert.assertEquals("even[] = 2\nodd[] = 1\neven[] = 2\neven[] = 4\nodd[] = 1\nodd[] = 3\neven[] = 2\neven[] = 4\n",
+				TestSizzleStreamRunner.stream(new SetStreamRunner(), conf, "1\n2\n3\n4\n5\n"));
+	}
+}
+
+class SetStreamRunner extends SizzleRunner {
+	@Override
+	public SizzleMapper getMapper() {
+		return new SizzleMapper() {
+			@Override
+			protected Table newTable(final String name) {
+				return new Table(new SetAggregator(2));
+			}
+
+			@Override
+			protected void map(final org.apache.hadoop.io.LongWritable key, final org.apache.hadoop.io.Text value, final Context context) throws IOException,
+					InterruptedException {
+				final long n = Long.parseLong(value.toString());
+
+				this.emit(new sizzle.io.EmitKey(n % 2 == 0 ? "even" : "odd"), new sizzle.io.EmitValue(n));
+			}
+		};
+	}
+
+	@Override
+	public SizzleCombiner getCombiner() {
+		return null;
+	}
+
+	@Override
+	public SizzleReducer getReducer() {
+		return null;
+	}
+}
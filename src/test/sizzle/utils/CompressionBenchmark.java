@@ -0,0 +1,143 @@
+package sizzle.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javaxtools.compiler.CharSequenceCompiler;
+import javaxtools.compiler.CharSequenceCompilerException;
+
+import org.antlr.stringtemplate.PathGroupLoader;
+import org.antlr.stringtemplate.StringTemplateGroup;
+import org.antlr.tool.ErrorManager;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+
+import sizzle.compiler.CodeGeneratingVisitor;
+import sizzle.compiler.SymbolTable;
+import sizzle.compiler.TypeCheckingVisitor;
+import sizzle.parser.ParseException;
+import sizzle.parser.SizzleParser;
+import sizzle.runtime.SizzleRunner;
+
+/**
+ * Run Sizzle programs with the local job runner once for each map output
+ * codec, and report the bytes shuffled and the wall time of each run.
+ *
+ * Usage: CompressionBenchmark [-c codec,codec,...] [program.szl input]...
+ *
+ * With no programs, the bundled examples that shuffle data are run over the
+ * inputs they read: examples/quartiles.szl over test/doubles, which passes on
+ * nearly every value, and examples/value_counts.szl over test/ints, which the
+ * combiner cuts down to a record per distinct value.
+ *
+ * Run it from the top of the tree after ant compile-tests, with
+ * build/classes, build/testclasses and lib/*.jar on the classpath, as well as
+ * the Jackson 1.x jars (jackson-core-asl and jackson-mapper-asl, 1.8.8 in the
+ * lib directory of a Hadoop 1.0.4 installation) that the local job runner
+ * needs to submit a job and lib does not have.
+ */
+public class CompressionBenchmark {
+	private static final String COUNTERS = "org.apache.hadoop.mapred.Task$Counter";
+
+	// the bundled examples that shuffle data, and the inputs they read
+	private static final String[][] EXAMPLES = { { "examples/quartiles.szl", "test/doubles" }, { "examples/value_counts.szl", "test/ints" } };
+
+	public static void main(final String[] args) throws Exception {
+		List<String> codecs = Arrays.asList("none", "default", "gzip", "bzip2", "snappy");
+		final List<String> programs = new ArrayList<String>();
+		final List<String> inputs = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; i++)
+			if (args[i].equals("-c")) {
+				codecs = Arrays.asList(args[++i].split(","));
+			} else {
+				programs.add(args[i]);
+				inputs.add(args[++i]);
+			}
+
+		if (programs.isEmpty())
+			for (final String[] example : CompressionBenchmark.EXAMPLES) {
+				programs.add(example[0]);
+				inputs.add(example[1]);
+			}
+
+		// this is a JavaCC wtf, do not remove
+		try {
+			new SizzleParser(new StringReader(""));
+		} catch (final Error e) {
+			// eat it
+		}
+
+		StringTemplateGroup.registerGroupLoader(new PathGroupLoader("src/antlr/", ErrorManager.getStringTemplateErrorListener()));
+		final StringTemplateGroup stg = StringTemplateGroup.loadGroup("SizzleJavaHadoop");
+
+		System.out.println("program\tcodec\tmap output bytes\tshuffle bytes\tmillis");
+
+		for (int i = 0; i < programs.size(); i++) {
+			final SizzleRunner runner = CompressionBenchmark.compile(new File(programs.get(i)), stg);
+
+			for (final String codec : codecs) {
+				final File out = new File(System.getProperty("java.io.tmpdir"), "sizzle-benchmark-" + codec);
+				FileUtil.fullyDelete(out);
+
+				final Job job = runner.job(new Path[] { new Path(inputs.get(i)) }, new Path(out.getPath()), true);
+				job.getConfiguration().set("mapred.job.tracker", "local");
+				job.getConfiguration().set("fs.default.name", "file:///");
+				SizzleRunner.setCompression(job, codec);
+
+				final long start = System.currentTimeMillis();
+				if (!job.waitForCompletion(false))
+					throw new RuntimeException(programs.get(i) + " failed with " + codec);
+				final long millis = System.currentTimeMillis() - start;
+
+				final Counters counters = job.getCounters();
+				System.out.println(programs.get(i) + "\t" + codec + "\t" + counters.findCounter(CompressionBenchmark.COUNTERS, "MAP_OUTPUT_BYTES").getValue() + "\t"
+						+ counters.findCounter(CompressionBenchmark.COUNTERS, "MAP_OUTPUT_MATERIALIZED_BYTES").getValue() + "\t" + millis);
+
+				FileUtil.fullyDelete(out);
+			}
+		}
+	}
+
+	private static SizzleRunner compile(final File program, final StringTemplateGroup stg) throws IOException, ParseException, CharSequenceCompilerException,
+			InstantiationException, IllegalAccessException {
+		final String name = program.getName().substring(0, program.getName().lastIndexOf('.'));
+
+		final SymbolTable st = new SymbolTable();
+
+		Reader r = new FileReader(program);
+		try {
+			SizzleParser.ReInit(r);
+			new TypeCheckingVisitor().visit(SizzleParser.Start(), st);
+		} finally {
+			r.close();
+		}
+
+		String src;
+		r = new FileReader(program);
+		try {
+			SizzleParser.ReInit(r);
+			src = new CodeGeneratingVisitor(name, stg).visit(SizzleParser.Start(), st);
+		} finally {
+			r.close();
+		}
+
+		// look through to this class loader, so that the job's configuration
+		// can find Hadoop's defaults once it is the context class loader
+		final CharSequenceCompiler<SizzleRunner> compiler = new CharSequenceCompiler<SizzleRunner>(CompressionBenchmark.class.getClassLoader(), null);
+		final SizzleRunner runner = compiler.compile("sizzle." + name, src, null, new Class<?>[] { SizzleRunner.class }).newInstance();
+
+		// the local job runner loads the mapper and reducer by name
+		Thread.currentThread().setContextClassLoader(runner.getClass().getClassLoader());
+
+		return runner;
+	}
+}